@@ -42,7 +42,10 @@ import java.util.Date;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -60,6 +63,9 @@ import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
 import io.quarkus.ts.startstop.utils.Apps;
+import io.quarkus.ts.startstop.utils.Baseline;
+import io.quarkus.ts.startstop.utils.BuildStepMetrics;
+import io.quarkus.ts.startstop.utils.Calibration;
 import io.quarkus.ts.startstop.utils.Commands;
 import io.quarkus.ts.startstop.utils.LogBuilder;
 import io.quarkus.ts.startstop.utils.Logs;
@@ -294,7 +300,9 @@ public class ArtifactGeneratorTest {
         File appDir = new File(appBaseDir, Apps.GENERATED_SKELETON.dir);
         String logsDir = appBaseDir.getAbsolutePath() + File.separator + Apps.GENERATED_SKELETON.dir + "-logs";
         List<String> generatorCmd = getGeneratorCommand(MvnCmds.GENERATOR.mvnCmds[0], extensions);
-        List<String> runCmd = getRunCommand(MvnCmds.DEV.mvnCmds[0]);
+        List<String> runCmd = new ArrayList<>(getRunCommand(MvnCmds.DEV.mvnCmds[0]));
+        Optional<BuildStepMetrics> buildStepMetrics = BuildStepMetrics.create();
+        buildStepMetrics.ifPresent(metrics -> runCmd.addAll(metrics.getBuildOptions()));
         URLContent skeletonApp = Apps.GENERATED_SKELETON.urlContent;
         if (flags.contains(TestFlags.WARM_UP)) {
             LOGGER.info(mn + ": Warming up setup: " + String.join(" ", generatorCmd));
@@ -303,6 +311,9 @@ public class ArtifactGeneratorTest {
         }
         LOGGER.info("Running inside " + appDir.getAbsolutePath());
         try {
+            // Calibrate before the build, while the host is otherwise idle
+            double timeFactor = Calibration.get().map(c -> c.timeFactor(OptionalDouble.empty())).orElse(1d);
+
             // Cleanup
             cleanDirOrFile(appBaseDir.getAbsolutePath());
             Files.createDirectories(Paths.get(logsDir));
@@ -361,6 +372,14 @@ public class ArtifactGeneratorTest {
                 return;
             }
 
+            List<BuildStepMetrics.Step> buildSteps = new ArrayList<>();
+            Optional<Path> buildMetricsJson = BuildStepMetrics.findBuildMetrics(appDir);
+            if (buildStepMetrics.isPresent() && buildMetricsJson.isPresent()) {
+                // The reload dumps the metrics of its own build over them
+                buildSteps.addAll(BuildStepMetrics.readBuildSteps(buildMetricsJson.get()));
+                archiveLog(cn, mn, buildMetricsJson.get().toFile());
+            }
+
             LOGGER.info("Testing reload...");
             // modify existing class
             Path srcFile = Paths.get(appDir + File.separator + "src" + File.separator + "main" + File.separator + "java" + File.separator +
@@ -416,7 +435,15 @@ public class ArtifactGeneratorTest {
             Logs.logMeasurements(log, measurementsLog);
             appendln(whatIDidReport, "Measurements:");
             appendln(whatIDidReport, log.headerMarkdown + "\n" + log.lineMarkdown);
-            checkThreshold(Apps.GENERATED_SKELETON, MvnCmds.GENERATOR, SKIP, timeToFirstOKRequest, timeToReloadedOKRequest);
+            if (timeFactor != 1d) {
+                appendln(whatIDidReport, String.format(Locale.ROOT, "Calibration time factor %.3f, normalized time to first OK request %d ms, to reload %d ms",
+                        timeFactor, Math.round(timeToFirstOKRequest / timeFactor), Math.round(timeToReloadedOKRequest / timeFactor)));
+            }
+            if (buildStepMetrics.isPresent()) {
+                List<BuildStepMetrics.Step> startupSteps = BuildStepMetrics.parseStartupSteps(Files.readAllLines(runLogA.toPath()), buildSteps);
+                logBuildSteps(cn, mn, buildStepMetrics.get(), buildSteps, startupSteps, whatIDidReport);
+            }
+            checkThreshold(Apps.GENERATED_SKELETON, MvnCmds.GENERATOR, SKIP, timeToFirstOKRequest, timeToReloadedOKRequest, timeFactor);
         } finally {
             // Make sure processes are down even if there was an exception / failure
             if (pA != null) {
@@ -433,6 +460,33 @@ public class ArtifactGeneratorTest {
         }
     }
 
+    /**
+     * Ranks the steps of the dev mode start and compares the slowest ones to the baseline of the test method,
+     * a single start is not enough to tell a regression, so the changes are only reported
+     */
+    private static void logBuildSteps(String cn, String mn, BuildStepMetrics metrics, List<BuildStepMetrics.Step> buildSteps,
+                                      List<BuildStepMetrics.Step> startupSteps, StringBuilder whatIDidReport) throws IOException {
+        BuildStepMetrics.write(buildSteps, Paths.get(getLogsDir(cn, mn).toString(), "dev-build-steps.csv"));
+        BuildStepMetrics.write(startupSteps, Paths.get(getLogsDir(cn, mn).toString(), "dev-startup-steps.csv"));
+        appendln(whatIDidReport, "Slowest build steps:\n\n" + metrics.toMarkdown(buildSteps));
+        appendln(whatIDidReport, "Slowest startup steps:\n\n" + metrics.toMarkdown(startupSteps));
+        Optional<Baseline> baseline = Baseline.fromSystemProperties();
+        if (baseline.isEmpty()) {
+            return;
+        }
+        String baselineKey = Baseline.key(Apps.GENERATED_SKELETON, MvnCmds.DEV) + "-" + mn;
+        Map<String, Long> slowest = new LinkedHashMap<>(metrics.columns(buildSteps, BuildStepMetrics.BUILD_STEP_PREFIX));
+        slowest.putAll(metrics.columns(startupSteps, BuildStepMetrics.STARTUP_STEP_PREFIX));
+        Map<String, List<Long>> stored = baseline.get().load(baselineKey);
+        List<Baseline.Comparison> comparisons = baseline.get().compareSingle(stored, slowest);
+        appendln(whatIDidReport, "Comparison with the baseline in " + baseline.get().dir + ":");
+        appendln(whatIDidReport, Logs.logBaselineComparison(Apps.GENERATED_SKELETON, MvnCmds.DEV, comparisons,
+                Paths.get(getLogsDir(cn, mn).toString(), "baseline-comparison.csv")));
+        if (baseline.get().update) {
+            baseline.get().store(baselineKey, Baseline.history(stored, slowest));
+        }
+    }
+
     @Test
     public void manyExtensionsSetA(TestInfo testInfo) throws Exception {
         testRuntime(testInfo, supportedExtensionsSubsetSetA, EnumSet.of(TestFlags.WARM_UP));
@@ -0,0 +1,261 @@
+package io.quarkus.ts.startstop;
+
+import io.quarkus.ts.startstop.utils.AppRun;
+import io.quarkus.ts.startstop.utils.Apps;
+import io.quarkus.ts.startstop.utils.Commands;
+import io.quarkus.ts.startstop.utils.LogBuilder;
+import io.quarkus.ts.startstop.utils.Logs;
+import io.quarkus.ts.startstop.utils.MvnCmds;
+import io.quarkus.ts.startstop.utils.OpenTelemetryCollector;
+import io.quarkus.ts.startstop.utils.ReadinessProbe;
+import io.quarkus.ts.startstop.utils.Statistics;
+import io.quarkus.ts.startstop.utils.UnitTestResource;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import static io.quarkus.ts.startstop.utils.Commands.cleanTarget;
+import static io.quarkus.ts.startstop.utils.Commands.disableCleanup;
+import static io.quarkus.ts.startstop.utils.Commands.getBaseDir;
+import static io.quarkus.ts.startstop.utils.Commands.getBuildCommand;
+import static io.quarkus.ts.startstop.utils.Commands.getQuarkusGroupId;
+import static io.quarkus.ts.startstop.utils.Commands.getQuarkusVersion;
+import static io.quarkus.ts.startstop.utils.Commands.getRunCommand;
+import static io.quarkus.ts.startstop.utils.Logs.appendln;
+import static io.quarkus.ts.startstop.utils.Logs.appendlnSection;
+import static io.quarkus.ts.startstop.utils.Logs.archiveLog;
+import static io.quarkus.ts.startstop.utils.Logs.checkLog;
+import static io.quarkus.ts.startstop.utils.Logs.getLogsDir;
+import static io.quarkus.ts.startstop.utils.Logs.writeReport;
+import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setCpus;
+import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setMemoryLimits;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Time to first OK request, CPU time until then and RSS of the application pinned to 1, 2, 4 and all available CPUs,
+ * with the JVM or the native image told the same processor count, i.e. how startup scales with small CPU requests of pods.
+ * Details in https://github.com/quarkus-qe/quarkus-startstop#cpuscalingtest
+ */
+@Tag("cpu-scaling")
+@EnabledOnOs({OS.LINUX}) // taskset
+public class CpuScalingTest {
+
+    private static final Logger LOGGER = Logger.getLogger(CpuScalingTest.class.getName());
+
+    public static final String BASE_DIR = getBaseDir();
+    private static final int CHART_WIDTH = 50;
+
+    public void testRuntime(TestInfo testInfo, Apps app, MvnCmds mvnCmds) throws IOException, InterruptedException {
+        testRuntime(testInfo, app, mvnCmds, UnitTestResource.NOOP_SUPPLIER);
+    }
+
+    public void testRuntime(TestInfo testInfo, Apps app, MvnCmds mvnCmds, Supplier<UnitTestResource> testResourceSupplier) throws IOException, InterruptedException {
+        LOGGER.info("Testing app: " + app.toString() + ", mode: " + mvnCmds.toString());
+
+        File buildLogA = null;
+        List<File> runLogs = new ArrayList<>();
+        StringBuilder whatIDidReport = new StringBuilder();
+        File appDir = new File(BASE_DIR + File.separator + app.dir);
+        String cn = testInfo.getTestClass().get().getCanonicalName();
+        String mn = testInfo.getTestMethod().get().getName();
+        boolean isNative = mvnCmds == MvnCmds.NATIVE;
+        int iterations = Integer.getInteger("cpu-scaling.iterations", 3);
+        List<String> memory = Arrays.asList(isNative ? System.getProperty("start-stop.native.memory", "-Xmx96m").split(" ")
+                : System.getProperty("start-stop.jvm.memory", "-Xmx256m").split(" "));
+        Statistics.Estimator estimator = Statistics.Estimator.fromSystemProperty();
+        try (var testResource = testResourceSupplier.get(); var readinessProbe = ReadinessProbe.create()) {
+            List<Integer> appCpus = new ArrayList<>(readinessProbe.getAppCpus());
+            TreeSet<Integer> cpuCounts = getCpuCounts("cpu-scaling.cpus", appCpus.size());
+            LOGGER.info("CPU counts: " + cpuCounts + ", CPUs available to the app: " + appCpus);
+
+            // Cleanup
+            cleanTarget(app);
+            Files.createDirectories(Paths.get(appDir.getAbsolutePath() + File.separator + "logs"));
+
+            // Build
+            buildLogA = new File(appDir.getAbsolutePath() + File.separator + "logs" + File.separator + mvnCmds.name().toLowerCase() + "-build.log");
+            ExecutorService buildService = Executors.newFixedThreadPool(1);
+
+            List<String> baseBuildCmd = new ArrayList<>();
+            baseBuildCmd.addAll(Arrays.asList(mvnCmds.mvnCmds[0]));
+            baseBuildCmd.add("-Dquarkus.version=" + getQuarkusVersion());
+            baseBuildCmd.add("-Dquarkus.platform.group-id=" + getQuarkusGroupId());
+            final List<String> buildCommand = getBuildCommand(baseBuildCmd.toArray(new String[0]));
+            LOGGER.info("Running " + baseBuildCmd + " in the " + appDir.getAbsolutePath());
+
+            buildService.submit(new Commands.ProcessRunner(appDir, buildLogA, buildCommand, 20));
+            appendln(whatIDidReport, "# " + cn + ", " + mn);
+            appendln(whatIDidReport, (new Date()).toString());
+            appendln(whatIDidReport, appDir.getAbsolutePath());
+            appendlnSection(whatIDidReport, String.join(" ", buildCommand));
+            buildService.shutdown();
+            buildService.awaitTermination(30, TimeUnit.MINUTES);
+
+            assertTrue(buildLogA.exists());
+            checkLog(cn, mn, app, mvnCmds, buildLogA);
+
+            // Run, the counts take turns in every iteration so that a drift of the host does not favour any of them
+            Map<Integer, List<AppRun.Result>> results = new LinkedHashMap<>();
+            for (int i = 0; i < iterations; i++) {
+                for (int cpus : cpuCounts) {
+                    List<String> runCommand = getRunCommand(mvnCmds.mvnCmds[1]);
+                    runCommand = setMemoryLimits(runCommand, memory, isNative);
+                    runCommand = setCpus(runCommand, appCpus.subList(0, cpus), isNative);
+                    File runLog = new File(appDir.getAbsolutePath() + File.separator + "logs" + File.separator
+                            + mvnCmds.name().toLowerCase() + "-run-cpus" + cpus + "-" + i + ".log");
+                    runLogs.add(runLog);
+                    if (i == 0) {
+                        appendln(whatIDidReport, String.join(" ", runCommand));
+                    }
+                    results.computeIfAbsent(cpus, c -> new ArrayList<>())
+                            .add(AppRun.run(app, appDir, runCommand, runLog, readinessProbe, Optional.empty()));
+                    testResource.reset();
+                }
+            }
+
+            Path measurementsLog = Paths.get(getLogsDir(cn, mn).toString(), "measurements.csv");
+            Map<Integer, Long> timeToFirstOKRequest = new LinkedHashMap<>();
+            Map<Integer, Long> cpuToFirstOK = new LinkedHashMap<>();
+            Map<Integer, Long> rssKb = new LinkedHashMap<>();
+            List<String> failures = new ArrayList<>();
+            appendln(whatIDidReport, "\nMeasurements:");
+            for (Map.Entry<Integer, List<AppRun.Result>> entry : results.entrySet()) {
+                int cpus = entry.getKey();
+                List<AppRun.Result> ok = new ArrayList<>();
+                for (AppRun.Result result : entry.getValue()) {
+                    if (result.ok()) {
+                        ok.add(result);
+                    } else {
+                        failures.add(cpus + " CPUs: " + result.failure);
+                    }
+                }
+                LogBuilder logBuilder = new LogBuilder()
+                        .app(app)
+                        .mode(mvnCmds)
+                        .metric("cpus", cpus)
+                        .metric("failures", entry.getValue().size() - ok.size());
+                if (!ok.isEmpty()) {
+                    timeToFirstOKRequest.put(cpus, estimate("timeToFirstOKRequestMs", ok, r -> r.timeToFirstOKRequestMs, estimator));
+                    rssKb.put(cpus, estimate("RSSkB", ok, r -> r.rssKb, estimator));
+                    logBuilder.timeToFirstOKRequestMs(timeToFirstOKRequest.get(cpus))
+                            .rssKb(rssKb.get(cpus));
+                    if (ok.stream().allMatch(r -> r.cpuToFirstOKMs >= 0)) {
+                        cpuToFirstOK.put(cpus, estimate("cpuToFirstOKMs", ok, r -> r.cpuToFirstOKMs, estimator));
+                        logBuilder.cpuToFirstOKMs(cpuToFirstOK.get(cpus));
+                    }
+                }
+                LogBuilder.Log log = logBuilder.build();
+                Logs.logMeasurements(log, measurementsLog);
+                appendln(whatIDidReport, log.headerMarkdown + "\n" + log.lineMarkdown);
+            }
+            appendln(whatIDidReport, "Time to first OK request (ms):\n" + chart(timeToFirstOKRequest));
+            appendln(whatIDidReport, "CPU time until the first OK request (ms):\n" + chart(cpuToFirstOK));
+            appendln(whatIDidReport, "RSS (kB):\n" + chart(rssKb));
+            assertTrue(failures.isEmpty(), "Application " + app + " in " + mvnCmds + " mode did not serve: " + failures);
+        } finally {
+            // Archive logs no matter what
+            archiveLog(cn, mn, buildLogA);
+            for (File runLog : runLogs) {
+                archiveLog(cn, mn, runLog);
+            }
+            writeReport(cn, mn, whatIDidReport.toString());
+            if (!disableCleanup()) {
+                cleanTarget(app);
+            }
+        }
+    }
+
+    /**
+     * @param property e.g. {@code cpu-scaling.cpus}
+     * @return counts from the system property, 1,2,4 by default, up to and including all available
+     */
+    static TreeSet<Integer> getCpuCounts(String property, int available) {
+        if (available < 1) {
+            throw new IllegalStateException("Unable to find out which CPUs the application may use");
+        }
+        TreeSet<Integer> counts = new TreeSet<>();
+        for (String count : System.getProperty(property, "1,2,4").split(",")) {
+            int cpus = Integer.parseInt(count.trim());
+            if (cpus < 1) {
+                throw new IllegalArgumentException(property + " must be positive, was: " + count);
+            }
+            if (cpus <= available) {
+                counts.add(cpus);
+            } else {
+                LOGGER.warn("Only " + available + " CPUs available, skipping " + cpus);
+            }
+        }
+        counts.add(available);
+        return counts;
+    }
+
+    private static long estimate(String metric, List<AppRun.Result> results, ToLongFunction<AppRun.Result> value,
+                                 Statistics.Estimator estimator) {
+        List<Long> values = new ArrayList<>(results.size());
+        results.forEach(r -> values.add(value.applyAsLong(r)));
+        return Statistics.of(metric, values, estimator).estimateAsLong();
+    }
+
+    /**
+     * e.g. "   2 CPUs |##########              | 812 (0.54x)", relative to the value with the fewest CPUs
+     */
+    private static String chart(Map<Integer, Long> byCpus) {
+        if (byCpus.isEmpty()) {
+            return "(no data)\n";
+        }
+        long max = byCpus.values().stream().mapToLong(Long::longValue).max().getAsLong();
+        long first = byCpus.values().iterator().next();
+        StringBuilder sb = new StringBuilder("```\n");
+        byCpus.forEach((cpus, value) -> {
+            int width = max == 0 ? 0 : (int) Math.round(value * (double) CHART_WIDTH / max);
+            sb.append(String.format(Locale.ROOT, "%4d CPUs |%-" + CHART_WIDTH + "s| %d (%.2fx)%n",
+                    cpus, "#".repeat(width), value, first == 0 ? 0d : value / (double) first));
+        });
+        return sb.append("```\n").toString();
+    }
+
+    @Test
+    public void jakartaRESTMinimalJVM(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.JAKARTA_REST_MINIMAL, MvnCmds.JVM);
+    }
+
+    @Test
+    @Tag("native")
+    public void jakartaRESTMinimalNative(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.JAKARTA_REST_MINIMAL, MvnCmds.NATIVE);
+    }
+
+    @Test
+    public void fullMicroProfileJVM(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.FULL_MICROPROFILE, MvnCmds.JVM, OpenTelemetryCollector::new);
+    }
+
+    @Test
+    @Tag("native")
+    public void fullMicroProfileNative(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.FULL_MICROPROFILE, MvnCmds.NATIVE, OpenTelemetryCollector::new);
+    }
+}
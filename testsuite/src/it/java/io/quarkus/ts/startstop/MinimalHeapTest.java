@@ -0,0 +1,274 @@
+package io.quarkus.ts.startstop;
+
+import io.quarkus.ts.startstop.utils.AppRun;
+import io.quarkus.ts.startstop.utils.Apps;
+import io.quarkus.ts.startstop.utils.Commands;
+import io.quarkus.ts.startstop.utils.LoadGenerator;
+import io.quarkus.ts.startstop.utils.LogBuilder;
+import io.quarkus.ts.startstop.utils.Logs;
+import io.quarkus.ts.startstop.utils.MvnCmds;
+import io.quarkus.ts.startstop.utils.OpenTelemetryCollector;
+import io.quarkus.ts.startstop.utils.ReadinessProbe;
+import io.quarkus.ts.startstop.utils.Statistics;
+import io.quarkus.ts.startstop.utils.UnitTestResource;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static io.quarkus.ts.startstop.utils.Commands.cleanTarget;
+import static io.quarkus.ts.startstop.utils.Commands.disableCleanup;
+import static io.quarkus.ts.startstop.utils.Commands.getBaseDir;
+import static io.quarkus.ts.startstop.utils.Commands.getBuildCommand;
+import static io.quarkus.ts.startstop.utils.Commands.getQuarkusGroupId;
+import static io.quarkus.ts.startstop.utils.Commands.getQuarkusVersion;
+import static io.quarkus.ts.startstop.utils.Commands.getRunCommand;
+import static io.quarkus.ts.startstop.utils.Logs.appendln;
+import static io.quarkus.ts.startstop.utils.Logs.appendlnSection;
+import static io.quarkus.ts.startstop.utils.Logs.archiveLog;
+import static io.quarkus.ts.startstop.utils.Logs.checkLog;
+import static io.quarkus.ts.startstop.utils.Logs.getLogsDir;
+import static io.quarkus.ts.startstop.utils.Logs.writeReport;
+import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setCommandPrefix;
+import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setMemoryLimits;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Binary search of the smallest -Xmx the application still starts, passes all its checks and, with {@code start-stop.load},
+ * survives the load phase with. Then startup time and RSS at 1x, 1.5x and 2x that heap, to size pods by.
+ * Details in https://github.com/quarkus-qe/quarkus-startstop#minimalheaptest
+ */
+@Tag("minimal-heap")
+public class MinimalHeapTest {
+
+    private static final Logger LOGGER = Logger.getLogger(MinimalHeapTest.class.getName());
+
+    public static final String BASE_DIR = getBaseDir();
+    public static final int[] HEAP_FACTORS_PERCENT = {100, 150, 200};
+    /**
+     * How many times the upper bound is doubled when the application does not serve with it
+     */
+    private static final int MAX_HIGH_DOUBLINGS = 4;
+
+    public void testRuntime(TestInfo testInfo, Apps app, MvnCmds mvnCmds) throws IOException, InterruptedException {
+        testRuntime(testInfo, app, mvnCmds, UnitTestResource.NOOP_SUPPLIER);
+    }
+
+    public void testRuntime(TestInfo testInfo, Apps app, MvnCmds mvnCmds, Supplier<UnitTestResource> testResourceSupplier) throws IOException, InterruptedException {
+        LOGGER.info("Testing app: " + app.toString() + ", mode: " + mvnCmds.toString());
+
+        File buildLogA = null;
+        List<File> runLogs = new ArrayList<>();
+        StringBuilder whatIDidReport = new StringBuilder();
+        File appDir = new File(BASE_DIR + File.separator + app.dir);
+        String cn = testInfo.getTestClass().get().getCanonicalName();
+        String mn = testInfo.getTestMethod().get().getName();
+        boolean isNative = mvnCmds == MvnCmds.NATIVE;
+        int lowMb = Integer.getInteger("minimal-heap.low.mb", 1);
+        int highMb = Integer.getInteger("minimal-heap.high.mb", isNative ? 96 : 256);
+        int precisionMb = Integer.getInteger("minimal-heap.precision.mb", 2);
+        int attempts = Integer.getInteger("minimal-heap.attempts", 1);
+        int iterations = Integer.getInteger("minimal-heap.iterations", 3);
+        if (lowMb < 1 || highMb <= lowMb || precisionMb < 1 || attempts < 1 || iterations < 1) {
+            throw new IllegalArgumentException("minimal-heap.low.mb must be positive and less than minimal-heap.high.mb, minimal-heap.precision.mb, " +
+                    "minimal-heap.attempts and minimal-heap.iterations positive, were: " + lowMb + ", " + highMb + ", " + precisionMb + ", " + attempts + ", " + iterations);
+        }
+        Optional<LoadGenerator> loadGenerator = LoadGenerator.fromSystemProperties();
+        Statistics.Estimator estimator = Statistics.Estimator.fromSystemProperty();
+        try (var testResource = testResourceSupplier.get(); var readinessProbe = ReadinessProbe.create()) {
+            // Cleanup
+            cleanTarget(app);
+            Files.createDirectories(Paths.get(appDir.getAbsolutePath() + File.separator + "logs"));
+
+            // Build
+            buildLogA = new File(appDir.getAbsolutePath() + File.separator + "logs" + File.separator + mvnCmds.name().toLowerCase() + "-build.log");
+            ExecutorService buildService = Executors.newFixedThreadPool(1);
+
+            List<String> baseBuildCmd = new ArrayList<>();
+            baseBuildCmd.addAll(Arrays.asList(mvnCmds.mvnCmds[0]));
+            baseBuildCmd.add("-Dquarkus.version=" + getQuarkusVersion());
+            baseBuildCmd.add("-Dquarkus.platform.group-id=" + getQuarkusGroupId());
+            final List<String> buildCommand = getBuildCommand(baseBuildCmd.toArray(new String[0]));
+            LOGGER.info("Running " + baseBuildCmd + " in the " + appDir.getAbsolutePath());
+
+            buildService.submit(new Commands.ProcessRunner(appDir, buildLogA, buildCommand, 20));
+            appendln(whatIDidReport, "# " + cn + ", " + mn);
+            appendln(whatIDidReport, (new Date()).toString());
+            appendln(whatIDidReport, appDir.getAbsolutePath());
+            appendlnSection(whatIDidReport, String.join(" ", buildCommand));
+            buildService.shutdown();
+            buildService.awaitTermination(30, TimeUnit.MINUTES);
+
+            assertTrue(buildLogA.exists());
+            checkLog(cn, mn, app, mvnCmds, buildLogA);
+
+            // Search, the low bound is assumed to fail, the high bound must serve
+            Path searchLog = Paths.get(getLogsDir(cn, mn).toString(), "search.csv");
+            Heap heap = new Heap(app, mvnCmds, appDir, readinessProbe, loadGenerator, testResource, runLogs, searchLog);
+            int doublings = 0;
+            while (!heap.serves(highMb, attempts)) {
+                if (doublings++ == MAX_HIGH_DOUBLINGS) {
+                    fail("Application " + app + " in " + mvnCmds + " mode does not serve even with -Xmx" + highMb + "m, see " + searchLog);
+                }
+                lowMb = highMb;
+                highMb *= 2;
+            }
+            while (highMb - lowMb > precisionMb) {
+                int midMb = lowMb + (highMb - lowMb) / 2;
+                if (heap.serves(midMb, attempts)) {
+                    highMb = midMb;
+                } else {
+                    lowMb = midMb;
+                }
+            }
+            String minimal = "Minimal heap: -Xmx" + highMb + "m, -Xmx" + lowMb + "m does not serve or was not tried";
+            LOGGER.info(minimal);
+            appendln(whatIDidReport, "Search:");
+            appendln(whatIDidReport, heap.steps.toString());
+            appendlnSection(whatIDidReport, minimal);
+
+            // Sizing
+            Path measurementsLog = Paths.get(getLogsDir(cn, mn).toString(), "measurements.csv");
+            appendln(whatIDidReport, "Measurements:");
+            for (int factorPercent : HEAP_FACTORS_PERCENT) {
+                int heapMb = (int) Math.ceil(highMb * factorPercent / 100d);
+                List<Long> timeToFirstOKRequest = new ArrayList<>();
+                List<Long> rssKb = new ArrayList<>();
+                int failures = 0;
+                for (int i = 0; i < iterations; i++) {
+                    AppRun.Result result = heap.run(heapMb, "x" + factorPercent + "-" + i);
+                    if (result.ok()) {
+                        timeToFirstOKRequest.add(result.timeToFirstOKRequestMs);
+                        rssKb.add(result.rssKb);
+                    } else {
+                        failures++;
+                    }
+                }
+                LogBuilder logBuilder = new LogBuilder()
+                        .app(app)
+                        .mode(mvnCmds)
+                        .metric("heapMb", heapMb)
+                        .metric("heapFactorPercent", factorPercent)
+                        .metric("failures", failures);
+                if (!timeToFirstOKRequest.isEmpty()) {
+                    logBuilder.timeToFirstOKRequestMs(Statistics.of("timeToFirstOKRequestMs", timeToFirstOKRequest, estimator).estimateAsLong())
+                            .rssKb(Statistics.of("RSSkB", rssKb, estimator).estimateAsLong());
+                }
+                LogBuilder.Log log = logBuilder.build();
+                Logs.logMeasurements(log, measurementsLog);
+                appendln(whatIDidReport, log.headerMarkdown + "\n" + log.lineMarkdown);
+            }
+        } finally {
+            // Archive logs no matter what
+            archiveLog(cn, mn, buildLogA);
+            for (File runLog : runLogs) {
+                archiveLog(cn, mn, runLog);
+            }
+            writeReport(cn, mn, whatIDidReport.toString());
+            if (!disableCleanup()) {
+                cleanTarget(app);
+            }
+        }
+    }
+
+    /**
+     * Runs of the built application with a given max heap
+     */
+    private static class Heap {
+        private final Apps app;
+        private final MvnCmds mvnCmds;
+        private final File appDir;
+        private final ReadinessProbe readinessProbe;
+        private final Optional<LoadGenerator> loadGenerator;
+        private final UnitTestResource testResource;
+        private final List<File> runLogs;
+        private final Path searchLog;
+        private final StringBuilder steps = new StringBuilder("|-Xmx|Result|\n|---|---|\n");
+
+        Heap(Apps app, MvnCmds mvnCmds, File appDir, ReadinessProbe readinessProbe, Optional<LoadGenerator> loadGenerator,
+             UnitTestResource testResource, List<File> runLogs, Path searchLog) {
+            this.app = app;
+            this.mvnCmds = mvnCmds;
+            this.appDir = appDir;
+            this.readinessProbe = readinessProbe;
+            this.loadGenerator = loadGenerator;
+            this.testResource = testResource;
+            this.runLogs = runLogs;
+            this.searchLog = searchLog;
+        }
+
+        /**
+         * @param attempts all of them must serve, so that a heap on the edge is not taken for enough
+         */
+        boolean serves(int heapMb, int attempts) throws IOException, InterruptedException {
+            for (int i = 0; i < attempts; i++) {
+                AppRun.Result result = run(heapMb, "search-" + i);
+                LogBuilder.Log log = new LogBuilder()
+                        .app(app)
+                        .mode(mvnCmds)
+                        .metric("heapMb", heapMb)
+                        .metric("serves", result.ok() ? 1 : 0)
+                        .build();
+                Logs.logMeasurements(log, searchLog);
+                steps.append("|").append(heapMb).append("m|").append(result).append("|\n");
+                if (!result.ok()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        AppRun.Result run(int heapMb, String label) throws IOException, InterruptedException {
+            List<String> runCommand = getRunCommand(mvnCmds.mvnCmds[1]);
+            runCommand = setMemoryLimits(runCommand, List.of("-Xmx" + heapMb + "m"), mvnCmds == MvnCmds.NATIVE);
+            runCommand = setCommandPrefix(runCommand, readinessProbe.getAppCommandPrefix());
+            // One log per run, the failing ones are what the search is about
+            File runLog = new File(appDir.getAbsolutePath() + File.separator + "logs" + File.separator
+                    + mvnCmds.name().toLowerCase() + "-run-xmx" + heapMb + "m-" + label + ".log");
+            runLogs.add(runLog);
+            try {
+                return AppRun.run(app, appDir, runCommand, runLog, readinessProbe, loadGenerator);
+            } finally {
+                testResource.reset();
+            }
+        }
+    }
+
+    @Test
+    public void jakartaRESTMinimalJVM(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.JAKARTA_REST_MINIMAL, MvnCmds.JVM);
+    }
+
+    @Test
+    @Tag("native")
+    public void jakartaRESTMinimalNative(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.JAKARTA_REST_MINIMAL, MvnCmds.NATIVE);
+    }
+
+    @Test
+    public void fullMicroProfileJVM(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.FULL_MICROPROFILE, MvnCmds.JVM, OpenTelemetryCollector::new);
+    }
+
+    @Test
+    @Tag("native")
+    public void fullMicroProfileNative(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.FULL_MICROPROFILE, MvnCmds.NATIVE, OpenTelemetryCollector::new);
+    }
+}
@@ -1,6 +1,7 @@
 package io.quarkus.ts.startstop;
 
 import io.quarkus.ts.startstop.utils.Apps;
+import io.quarkus.ts.startstop.utils.BuildCache;
 import io.quarkus.ts.startstop.utils.MvnCmds;
 import io.quarkus.ts.startstop.utils.Commands;
 import org.jboss.logging.Logger;
@@ -17,6 +18,8 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -67,16 +70,31 @@ public class NativeDebugTest {
             baseBuildCmd.add("-Dquarkus.native.debug.enabled=true");
             List<String> cmd = getBuildCommand(baseBuildCmd.toArray(new String[0]));
 
-            LOGGER.info("Building (" + cmd + ")");
-            buildService.submit(new Commands.ProcessRunner(appDir, buildLogA, cmd, 20));
+            Optional<BuildCache> buildCache = BuildCache.fromSystemProperties();
+            String buildCacheKey = buildCache.isPresent() ? buildCache.get().key(appDir, cmd) : null;
+            boolean restored = buildCache.isPresent() && buildCache.get().restore(buildCacheKey, appDir, buildLogA).isPresent();
+            long buildStarts = System.currentTimeMillis();
+            if (!restored) {
+                LOGGER.info("Building (" + cmd + ")");
+                buildService.submit(new Commands.ProcessRunner(appDir, buildLogA, cmd, 20));
+            }
             buildService.shutdown();
             buildService.awaitTermination(30, TimeUnit.MINUTES);
+            long buildEnds = System.currentTimeMillis();
 
             for (File searchFile : searchFiles) {
                 assertTrue(searchFile.exists(), "File or directory: " + searchFile.getAbsolutePath() + " is missing.");
             }
             assertTrue(buildLogA.exists());
             checkLog(cn, mn, app, mvnCmds, buildLogA);
+            if (buildCache.isPresent() && !restored) {
+                // The debug info and the sources are what the test checks, on top of the binary
+                List<String> artifacts = new ArrayList<>(BuildCache.artifacts(mvnCmds));
+                for (File searchFile : searchFiles) {
+                    artifacts.add(appDir.toPath().relativize(searchFile.toPath()).toString());
+                }
+                buildCache.get().store(buildCacheKey, appDir, artifacts, buildLogA, buildEnds - buildStarts, Map.of());
+            }
         } finally {
             // Archive logs no matter what
             archiveLog(cn, mn, buildLogA);
@@ -9,11 +9,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import io.quarkus.ts.startstop.utils.Apps;
+import io.quarkus.ts.startstop.utils.BuildCache;
 import io.quarkus.ts.startstop.utils.Commands;
 import io.quarkus.ts.startstop.utils.MvnCmds;
 import io.quarkus.ts.startstop.utils.WebpageTester;
@@ -93,7 +96,6 @@ public class SpecialCharsTest {
             // Build
             if (mvnCmds != MvnCmds.DEV) {
                 buildLogA = new File(logsDir + File.separator + subdir + "-" + mvnCmds.name().toLowerCase() + "-build.log");
-                ExecutorService buildService = Executors.newFixedThreadPool(1);
                 List<String> baseBuildCmd = new ArrayList<>();
                 baseBuildCmd.addAll(Arrays.asList(mvnCmds.mvnCmds[0]));
                 baseBuildCmd.add("-Dquarkus.version=" + getQuarkusVersion());
@@ -105,14 +107,26 @@ public class SpecialCharsTest {
                 appendln(whatIDidReport, appDir.getAbsolutePath());
                 appendlnSection(whatIDidReport, String.join(" ", cmd));
 
-                LOGGER.info("Building (" + cmd + ")");
-                buildService.submit(new Commands.ProcessRunner(appDir, buildLogA, cmd, 20));
-
-                buildService.shutdown();
-                buildService.awaitTermination(30, TimeUnit.MINUTES);
-
-                assertTrue(buildLogA.exists());
-                checkLog(canonicalName, methodName, app, mvnCmds, buildLogA);
+                Optional<BuildCache> buildCache = BuildCache.fromSystemProperties();
+                String buildCacheKey = buildCache.isPresent() ? buildCache.get().key(appDir, cmd) : null;
+                if (buildCache.isPresent() && buildCache.get().restore(buildCacheKey, appDir, buildLogA).isPresent()) {
+                    appendlnSection(whatIDidReport, "Restored from the build cache " + buildCacheKey);
+                } else {
+                    LOGGER.info("Building (" + cmd + ")");
+                    ExecutorService buildService = Executors.newFixedThreadPool(1);
+                    long buildStarts = System.currentTimeMillis();
+                    buildService.submit(new Commands.ProcessRunner(appDir, buildLogA, cmd, 20));
+
+                    buildService.shutdown();
+                    buildService.awaitTermination(30, TimeUnit.MINUTES);
+                    long buildEnds = System.currentTimeMillis();
+
+                    assertTrue(buildLogA.exists());
+                    checkLog(canonicalName, methodName, app, mvnCmds, buildLogA);
+                    if (buildCache.isPresent()) {
+                        buildCache.get().store(buildCacheKey, appDir, BuildCache.artifacts(mvnCmds), buildLogA, buildEnds - buildStarts, Map.of());
+                    }
+                }
             }
 
             // Run
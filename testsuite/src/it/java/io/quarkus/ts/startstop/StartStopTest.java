@@ -2,15 +2,40 @@ package io.quarkus.ts.startstop;
 
 import io.quarkus.ts.startstop.utils.Apps;
 import io.quarkus.ts.startstop.utils.AsyncProfiler;
+import io.quarkus.ts.startstop.utils.Baseline;
+import io.quarkus.ts.startstop.utils.BuildCache;
+import io.quarkus.ts.startstop.utils.BuildPipeline;
+import io.quarkus.ts.startstop.utils.BuildStepMetrics;
+import io.quarkus.ts.startstop.utils.Calibration;
+import io.quarkus.ts.startstop.utils.CgroupLimits;
 import io.quarkus.ts.startstop.utils.Commands;
+import io.quarkus.ts.startstop.utils.FileDescriptors;
+import io.quarkus.ts.startstop.utils.IterationPolicy;
+import io.quarkus.ts.startstop.utils.JfrRecording;
+import io.quarkus.ts.startstop.utils.LoadGenerator;
 import io.quarkus.ts.startstop.utils.LogBuilder;
+import io.quarkus.ts.startstop.utils.LogStream;
+import io.quarkus.ts.startstop.utils.MavenGoals;
 import io.quarkus.ts.startstop.utils.Logs;
 import io.quarkus.ts.startstop.utils.MvnCmds;
+import io.quarkus.ts.startstop.utils.NativeBuildReport;
+import io.quarkus.ts.startstop.utils.MemoryMaps;
+import io.quarkus.ts.startstop.utils.NativeMemoryTracking;
 import io.quarkus.ts.startstop.utils.OpenTelemetryCollector;
+import io.quarkus.ts.startstop.utils.PerfStat;
+import io.quarkus.ts.startstop.utils.ProcSampler;
+import io.quarkus.ts.startstop.utils.ProcStat;
+import io.quarkus.ts.startstop.utils.ReadinessProbe;
+import io.quarkus.ts.startstop.utils.StartupTimeline;
+import io.quarkus.ts.startstop.utils.Statistics;
+import io.quarkus.ts.startstop.utils.TcpListenWatcher;
 import io.quarkus.ts.startstop.utils.UnitTestResource;
+import io.quarkus.ts.startstop.utils.WarmupCurve;
 import io.quarkus.ts.startstop.utils.WebpageTester;
 import org.apache.commons.io.FileUtils;
 import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
@@ -22,14 +47,20 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static io.quarkus.ts.startstop.utils.Commands.cleanTarget;
 import static io.quarkus.ts.startstop.utils.Commands.dropCaches;
@@ -45,10 +76,10 @@ import static io.quarkus.ts.startstop.utils.Commands.processStopper;
 import static io.quarkus.ts.startstop.utils.Commands.runCommand;
 import static io.quarkus.ts.startstop.utils.Commands.waitForTcpClosed;
 import static io.quarkus.ts.startstop.utils.Commands.disableCleanup;
-import static io.quarkus.ts.startstop.utils.Logs.SKIP;
 import static io.quarkus.ts.startstop.utils.Logs.appendln;
 import static io.quarkus.ts.startstop.utils.Logs.appendlnSection;
 import static io.quarkus.ts.startstop.utils.Logs.archiveLog;
+import static io.quarkus.ts.startstop.utils.Logs.checkBaseline;
 import static io.quarkus.ts.startstop.utils.Logs.checkListeningHost;
 import static io.quarkus.ts.startstop.utils.Logs.checkLog;
 import static io.quarkus.ts.startstop.utils.Logs.checkThreshold;
@@ -56,8 +87,10 @@ import static io.quarkus.ts.startstop.utils.Logs.getLogsDir;
 import static io.quarkus.ts.startstop.utils.Logs.parseStartStopTimestamps;
 import static io.quarkus.ts.startstop.utils.Logs.writeReport;
 import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setCommandPrefix;
+import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setJvmOptions;
 import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setMemoryLimits;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Tests for build and start of applications with some real source code
@@ -70,6 +103,28 @@ public class StartStopTest {
 
     public static final String BASE_DIR = getBaseDir();
 
+    private static Optional<BuildPipeline> buildPipeline = Optional.empty();
+
+    @BeforeAll
+    public static void startBuildPipeline() {
+        buildPipeline = BuildPipeline.fromSystemProperties().map(pipeline -> pipeline.start(StartStopTest::buildCommand));
+    }
+
+    @AfterAll
+    public static void closeBuildPipeline() {
+        buildPipeline.ifPresent(BuildPipeline::close);
+        buildPipeline = Optional.empty();
+    }
+
+    private static List<String> buildCommand(MvnCmds mvnCmds) {
+        List<String> baseBuildCmd = new ArrayList<>();
+        baseBuildCmd.addAll(Arrays.asList(mvnCmds.mvnCmds[0]));
+        baseBuildCmd.add("-Dquarkus.version=" + getQuarkusVersion());
+        baseBuildCmd.add("-Dquarkus.platform.group-id=" + getQuarkusGroupId());
+        BuildStepMetrics.create().ifPresent(metrics -> baseBuildCmd.addAll(metrics.getBuildOptions()));
+        return getBuildCommand(baseBuildCmd.toArray(new String[0]));
+    }
+
     public void testRuntime(TestInfo testInfo, Apps app, MvnCmds mvnCmds) throws IOException, InterruptedException {
         testRuntime(testInfo, app, mvnCmds, UnitTestResource.NOOP_SUPPLIER);
     }
@@ -79,14 +134,21 @@ public class StartStopTest {
         LOGGER.info("Cleanup Enabled: " + !disableCleanup());
 
         Process pA = null;
+        Optional<ProcSampler> procSampler = Optional.empty();
+        Optional<TcpListenWatcher> listenWatcher = Optional.empty();
         File buildLogA = null;
         File runLogA = null;
         StringBuilder whatIDidReport = new StringBuilder();
         File appDir = new File(BASE_DIR + File.separator + app.dir);
         Optional<AsyncProfiler> asyncProfiler = mvnCmds == MvnCmds.JVM ? AsyncProfiler.create() : Optional.empty();
+        Optional<CgroupLimits> cgroupLimits = CgroupLimits.fromSystemProperties();
         String canonicalName = testInfo.getTestClass().get().getCanonicalName();
         String methodName = testInfo.getTestMethod().get().getName();
-        try (var testResource = testResourceSupplier.get()) {
+        try (var testResource = testResourceSupplier.get(); var readinessProbe = ReadinessProbe.create()) {
+            // Skip before the build if the limits cannot be applied
+            cgroupLimits.ifPresent(limits -> assumeTrue(limits.isAvailable(), "start-stop.cgroup: " + limits.unavailable));
+            // Calibrate before the build, while the host is otherwise idle
+            Optional<Calibration> calibration = Calibration.get();
             // Cleanup
             asyncProfiler.ifPresent(ignore -> AsyncProfiler.cleanProfilingResults(app));
             cleanTarget(app);
@@ -94,30 +156,21 @@ public class StartStopTest {
 
             // Build
             buildLogA = new File(appDir.getAbsolutePath() + File.separator + "logs" + File.separator + mvnCmds.name().toLowerCase() + "-build.log");
-            ExecutorService buildService = Executors.newFixedThreadPool(1);
 
-            List<String> baseBuildCmd = new ArrayList<>();
-            baseBuildCmd.addAll(Arrays.asList(mvnCmds.mvnCmds[0]));
-            baseBuildCmd.add("-Dquarkus.version=" + getQuarkusVersion());
-            baseBuildCmd.add("-Dquarkus.platform.group-id=" + getQuarkusGroupId());
-            final List<String> buildCommand = getBuildCommand(baseBuildCmd.toArray(new String[0]));
-            LOGGER.info("Running " + baseBuildCmd + " in the " + appDir.getAbsolutePath());
+            Optional<BuildStepMetrics> buildStepMetrics = BuildStepMetrics.create();
+            final List<String> buildCommand = buildCommand(mvnCmds);
+            LOGGER.info("Running " + buildCommand + " in the " + appDir.getAbsolutePath());
 
-            buildService.submit(new Commands.ProcessRunner(appDir, buildLogA, buildCommand, 20));
             appendln(whatIDidReport, "# " + canonicalName + ", " + methodName);
             appendln(whatIDidReport, (new Date()).toString());
             appendln(whatIDidReport, appDir.getAbsolutePath());
             appendlnSection(whatIDidReport, String.join(" ", buildCommand));
-            long buildStarts = System.currentTimeMillis();
-            buildService.shutdown();
-            buildService.awaitTermination(30, TimeUnit.MINUTES);
-            long buildEnds = System.currentTimeMillis();
-
-            assertTrue(buildLogA.exists());
             boolean skipLogCheck = Boolean.getBoolean("start-stop.skip.log-check");
-            if (!skipLogCheck) {
-                checkLog(canonicalName, methodName, app, mvnCmds, buildLogA);
-            }
+            // JVM_READY and PORT_BOUND phases cost a JVM option and a polling thread, both opt-in
+            boolean startupPhases = Boolean.getBoolean("start-stop.startup-phases");
+            AppBuild appBuild = AppBuild.build(canonicalName, methodName, app, mvnCmds, appDir, buildLogA, buildCommand, skipLogCheck, whatIDidReport);
+            long buildTimeMs = appBuild.buildTimeMs;
+            Map<String, Long> buildPhases = appBuild.phases;
 
             boolean isNative = mvnCmds == MvnCmds.NATIVE;
             if (isNative) {
@@ -129,16 +182,75 @@ public class StartStopTest {
                 LOGGER.info("Native binary SIZE: " + prettySize);
                 appendlnSection(whatIDidReport, "   SIZE: " + prettySize);
             }
+            List<BuildStepMetrics.Step> buildSteps = new ArrayList<>();
+            Optional<Path> buildMetricsJson = BuildStepMetrics.findBuildMetrics(appDir);
+            if (buildStepMetrics.isPresent() && buildMetricsJson.isPresent()) {
+                buildSteps.addAll(BuildStepMetrics.readBuildSteps(buildMetricsJson.get()));
+                BuildStepMetrics.write(buildSteps, Paths.get(getLogsDir(canonicalName, methodName).toString(), mvnCmds.name().toLowerCase() + "-build-steps.csv"));
+                archiveLog(canonicalName, methodName, buildMetricsJson.get().toFile());
+                appendln(whatIDidReport, "Slowest build steps:\n\n" + buildStepMetrics.get().toMarkdown(buildSteps));
+            }
+            Optional<NativeBuildReport> nativeBuildReport = isNative ? NativeBuildReport.read(appDir, buildLogA) : Optional.empty();
+            if (nativeBuildReport.isPresent()) {
+                LOGGER.info("Native build: " + nativeBuildReport.get());
+                LogBuilder nativeBuildLogBuilder = new LogBuilder()
+                        .app(app)
+                        .mode(mvnCmds)
+                        .buildTimeMs(buildTimeMs)
+                        .metrics(nativeBuildReport.get().columns());
+                if (buildPipeline.isPresent()) {
+                    nativeBuildLogBuilder.metric("builtAhead", appBuild.builtAhead ? 1 : 0);
+                }
+                LogBuilder.Log nativeBuildLog = nativeBuildLogBuilder.build();
+                Logs.logMeasurements(nativeBuildLog, Paths.get(getLogsDir(canonicalName, methodName).toString(), "native-build.csv"));
+                appendln(whatIDidReport, "Native build:");
+                appendlnSection(whatIDidReport, nativeBuildLog.headerMarkdown + "\n" + nativeBuildLog.lineMarkdown);
+                Optional<Path> buildOutput = NativeBuildReport.findBuildOutput(appDir);
+                if (buildOutput.isPresent()) {
+                    archiveLog(canonicalName, methodName, buildOutput.get().toFile());
+                }
+            }
+
+            OptionalDouble artifactsReadMBps = OptionalDouble.empty();
+            double timeFactor = 1d;
+            if (calibration.isPresent()) {
+                Path artifacts = isNative ? Paths.get(appDir.getAbsolutePath(), mvnCmds.mvnCmds[1][0])
+                        : Paths.get(appDir.getAbsolutePath(), "target", "quarkus-app");
+                artifactsReadMBps = calibration.get().readMBps(artifacts);
+                timeFactor = calibration.get().timeFactor(artifactsReadMBps);
+                String artifactsRead = artifactsReadMBps.isPresent() ? String.format(Locale.ROOT, "%.0f MB/s", artifactsReadMBps.getAsDouble()) : "not measured";
+                LOGGER.info(String.format(Locale.ROOT, "Artifacts read %s, time thresholds scaled by %.3f", artifactsRead, timeFactor));
+                appendlnSection(whatIDidReport, calibration.get() +
+                        String.format(Locale.ROOT, ", artifacts read %s, time factor %.3f", artifactsRead, timeFactor));
+            }
 
             List<Long> rssKbList = new ArrayList<>(10);
             List<Long> timeToFirstOKRequestList = new ArrayList<>(10);
-            int iterations = Integer.getInteger("start-stop.iterations", 10);
+            List<LogBuilder.Log> measurements = new ArrayList<>(10);
             boolean coldStart = Boolean.getBoolean("start-stop.cold-start");
             boolean skipThresholdCheck = Boolean.getBoolean("start-stop.skip.threshold-check");
             List<String> commandPrefix = getSystemPropertyAsList("start-stop.command.prefix", "");
             List<String> jvmMemory = getSystemPropertyAsList("start-stop.jvm.memory", "-Xmx256m");
             List<String> nativeMemory = getSystemPropertyAsList("start-stop.native.memory", "-Xmx96m");
-            for (int i = 0; i < iterations; i++) {
+            Statistics.Estimator estimator = Statistics.Estimator.fromSystemProperty();
+            Map<String, List<Long>> gated = new LinkedHashMap<>();
+            gated.put("RSSkB", rssKbList);
+            gated.put("timeToFirstOKRequestMs", timeToFirstOKRequestList);
+            IterationPolicy iterationPolicy = IterationPolicy.fromSystemProperties(estimator);
+            Optional<LoadGenerator> loadGenerator = LoadGenerator.fromSystemProperties();
+            Optional<WarmupCurve> warmupCurve = WarmupCurve.fromSystemProperties();
+            if (warmupCurve.isPresent()) {
+                warmupCurve.get().warmUpClient();
+            }
+            Optional<JfrRecording> jfrRecording = JfrRecording.create(isNative, getLogsDir(canonicalName, methodName));
+            Optional<NativeMemoryTracking> nativeMemoryTracking = NativeMemoryTracking.create(isNative);
+            Optional<MemoryMaps> memoryMaps = MemoryMaps.create();
+            List<WarmupCurve.Result> warmupResults = new ArrayList<>();
+            Map<String, List<Long>> startupStepSamples = new LinkedHashMap<>();
+            // Only of the iterations with no build ahead, the others ran on fewer CPUs
+            Map<String, List<Long>> comparableStartupStepSamples = new LinkedHashMap<>();
+            Map<String, String> startupStepExtensions = new LinkedHashMap<>();
+            for (int i = 0; iterationPolicy.hasNext(i, gated); i++) {
                 // Run
                 LOGGER.info("Running... round " + i);
                 runLogA = new File(appDir.getAbsolutePath() + File.separator + "logs" + File.separator + mvnCmds.name().toLowerCase() + "-run.log");
@@ -148,18 +260,93 @@ public class StartStopTest {
 
                 runCommand = setCommandPrefix(runCommand, commandPrefix);
                 runCommand = setMemoryLimits(runCommand, isNative ? nativeMemory:jvmMemory, isNative);
+                if (buildStepMetrics.isPresent()) {
+                    runCommand = setMemoryLimits(runCommand, buildStepMetrics.get().getRunOptions(), isNative);
+                }
+                // The app is kept off the CPUs building ahead, but should see as many as it would without them
+                Set<Integer> buildAheadCpus = BuildPipeline.getBuildCpus();
+                runCommand = setMemoryLimits(runCommand, BuildPipeline.getAppRunOptions(), isNative);
+                if (startupPhases) {
+                    // Prints "Create VM" once the JVM is initialized, see StartupTimeline.Phase.JVM_READY
+                    runCommand = setJvmOptions(runCommand, List.of("-Xlog:startuptime"));
+                }
+                if (jfrRecording.isPresent()) {
+                    runCommand = setJvmOptions(runCommand, jfrRecording.get().getJvmOptions());
+                }
+                if (nativeMemoryTracking.isPresent()) {
+                    runCommand = setJvmOptions(runCommand, nativeMemoryTracking.get().getJvmOptions());
+                }
+                Optional<PerfStat> perfStat = PerfStat.create(Paths.get(getLogsDir(canonicalName, methodName).toString(),
+                        mvnCmds.name().toLowerCase() + "-run-" + i + "-perf.csv"));
+                if (perfStat.isPresent()) {
+                    runCommand = setCommandPrefix(runCommand, perfStat.get().getCommandPrefix());
+                }
+                if (cgroupLimits.isPresent()) {
+                    runCommand = setCommandPrefix(runCommand, cgroupLimits.get().getCommandPrefix());
+                }
+                runCommand = setCommandPrefix(runCommand, readinessProbe.getAppCommandPrefix());
 
                 appendlnSection(whatIDidReport, String.join(" ", runCommand));
+                if (!buildAheadCpus.isEmpty()) {
+                    appendln(whatIDidReport, "App on CPUs " + readinessProbe.getAppCpus() + ", building ahead on CPUs " + buildAheadCpus);
+                }
                 if (coldStart) {
                     LOGGER.info("Using COLD start");
                     dropCaches();
                 }
-                pA = runCommand(runCommand, appDir, runLogA);
+                long spawnNs = System.nanoTime();
+                StartupTimeline timeline = new StartupTimeline(spawnNs);
+                if (startupPhases) {
+                    listenWatcher = TcpListenWatcher.start(parsePort(app.urlContent.urlContent[0][0]), readinessProbe.getProbeCpu(),
+                            listeningNs -> timeline.record(StartupTimeline.Phase.PORT_BOUND, listeningNs));
+                }
+                pA = runCommand(runCommand, appDir, null);
+                // With perf, the app is its child
+                long appPid = perfStat.isPresent() ? perfStat.get().awaitWorkloadPid(pA) : pA.pid();
+                Optional<ProcStat> spawnStat = ProcStat.read(appPid);
+                LogStream runLogStream = new LogStream(runLogA)
+                        .on(LogStream.Event.JVM_READY, l -> timeline.record(StartupTimeline.Phase.JVM_READY, l.timestampNs))
+                        .on(LogStream.Event.STARTED, l -> timeline.record(StartupTimeline.Phase.QUARKUS_STARTED, l.timestampNs))
+                        .tee(pA);
+                procSampler = ProcSampler.start(appPid);
 
                 // Test web pages
-                long timeToFirstOKRequest = WebpageTester.testWeb(app.urlContent.urlContent[0][0], 10, app.urlContent.urlContent[0][1], true);
+                ReadinessProbe.Result firstOK = readinessProbe.probe(app.urlContent.urlContent[0][0], 10, app.urlContent.urlContent[0][1], spawnNs);
+                long timeToFirstOKRequest = firstOK.timeToFirstOKRequestMs();
+                Optional<ProcStat> firstOKStat = ProcStat.read(appPid);
+                timeline.record(firstOK);
+                ProcSampler.MemorySample firstOKSample = procSampler.map(ProcSampler::sample).orElse(null);
+
+                // Before jcmd of the flight recording attaches and starts its own threads
+                Optional<CgroupLimits.Stats> cgroupFirstOK = cgroupLimits.flatMap(limits -> limits.read(appPid));
+                Optional<MemoryMaps.Breakdown> memoryMapsFirstOK = Optional.empty();
+                if (memoryMaps.isPresent()) {
+                    memoryMapsFirstOK = Optional.of(memoryMaps.get().read(appPid));
+                    LOGGER.info("Memory maps at the first OK request: " + memoryMapsFirstOK.get());
+                }
+                Map<String, Long> nmtFirstOK = nativeMemoryTracking.isPresent() ? nativeMemoryTracking.get().summary(appPid) : Map.of();
+                Optional<JfrRecording.Summary> jfrSummary = Optional.empty();
+                if (jfrRecording.isPresent()) {
+                    Path recording = Paths.get(getLogsDir(canonicalName, methodName).toString(), mvnCmds.name().toLowerCase() + "-run-" + i + ".jfr");
+                    jfrRecording.get().dump(appPid, recording);
+                    jfrSummary = Optional.of(JfrRecording.analyze(recording));
+                    LOGGER.info("Flight recording until the first OK request: " + jfrSummary.get());
+                }
 
-                final Process currentProcess = pA;
+                // Right after the first OK request, before anything else warms the app up; RSS and FDs are taken before it,
+                // so that the thousands of warm-up requests do not count towards their thresholds
+                Footprint footprint = null;
+                Optional<WarmupCurve.Result> warmupResult = Optional.empty();
+                if (warmupCurve.isPresent()) {
+                    footprint = Footprint.measure(appPid, procSampler, nativeMemoryTracking);
+                    WarmupCurve.Result result = warmupCurve.get().run(app.urlContent.urlContent[0][0], app.loadMix.sequence());
+                    result.writeRequests(Paths.get(getLogsDir(canonicalName, methodName).toString(),
+                            mvnCmds.name().toLowerCase() + "-run-" + i + "-warmup.csv"));
+                    warmupResults.add(result);
+                    warmupResult = Optional.of(result);
+                }
+
+                final ProcessHandle currentProcess = ProcessHandle.of(appPid).orElse(pA.toHandle());
                 final int runId = i;
                 asyncProfiler.ifPresent(control -> control.stopProfing(appDir, mvnCmds, currentProcess, runId));
 
@@ -169,61 +356,226 @@ public class StartStopTest {
                 }
 
                 LOGGER.info("Terminate and scan logs...");
-                pA.getInputStream().available();
-
-                long rssKb = getRSSkB(pA.pid());
-                long openedFiles = getOpenedFDs(pA.pid());
+                if (footprint == null) {
+                    footprint = Footprint.measure(appPid, procSampler, nativeMemoryTracking);
+                }
+                long rssKb = footprint.rssKb;
+                Optional<FileDescriptors> fileDescriptors = footprint.fileDescriptors;
+                long openedFiles = footprint.openedFiles;
+                Map<String, Long> nmtChecked = footprint.nmt;
+
+                // After RSS and FDs were measured, so that the load does not affect the thresholds
+                Optional<LoadGenerator.Result> loadResult = Optional.empty();
+                if (loadGenerator.isPresent()) {
+                    LoadGenerator.Result result = loadGenerator.get().run(app.urlContent.urlContent[0][0], app.loadMix.sequence());
+                    result.writeHistogram(Paths.get(getLogsDir(canonicalName, methodName).toString(),
+                            mvnCmds.name().toLowerCase() + "-run-" + i + "-load.hgrm"));
+                    loadResult = Optional.of(result);
+                }
 
+                Optional<ProcStat> beforeStopStat = ProcStat.read(appPid);
+                Optional<Path> appCgroup = cgroupLimits.flatMap(limits -> limits.find(appPid));
+                Optional<CgroupLimits.Stats> cgroupBeforeStop = cgroupLimits.flatMap(limits -> appCgroup.flatMap(limits::read));
+                // The app adds its whole CPU time to them once it is reaped, perf would add its own
+                Optional<ProcStat> reapedBeforeStop = perfStat.isPresent() ? Optional.empty() : ProcStat.readReapedChildren();
+                if (perfStat.isPresent()) {
+                    // perf writes the rest of its counters once the app exits, perf itself terminated would lose them
+                    ProcessHandle.of(appPid).ifPresent(ProcessHandle::destroy);
+                    pA.waitFor(3, TimeUnit.MINUTES);
+                }
                 processStopper(pA, false);
+                Optional<ProcStat> reapedAfterStop = reapedBeforeStop.isPresent() ? ProcStat.readReapedChildren() : Optional.empty();
+                // Everything the app consumed until its exit, read before the cgroup is removed
+                Optional<CgroupLimits.Stats> cgroupAfterStop = cgroupLimits.flatMap(limits -> appCgroup.flatMap(limits::read));
+                cgroupLimits.ifPresent(CgroupLimits::release);
+                listenWatcher.ifPresent(TcpListenWatcher::close);
+                if (procSampler.isPresent()) {
+                    procSampler.get().close();
+                    procSampler.get().writeTimeline(Paths.get(getLogsDir(canonicalName, methodName).toString(),
+                            mvnCmds.name().toLowerCase() + "-run-" + i + "-memory.csv"));
+                }
 
                 LOGGER.info("Gonna wait for ports closed...");
                 // Release ports
                 assertTrue(waitForTcpClosed("localhost", parsePort(app.urlContent.urlContent[0][0]), 60),
                         "Main port is still open");
+                // Everything the app printed, including the stop message, is in the log once its output is closed
+                if (!runLogStream.awaitEnd(30, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Output of the app is still open, " + runLogA.getName() + " might be incomplete");
+                }
                 if (!skipLogCheck) {
-                    checkLog(canonicalName, methodName, app, mvnCmds, runLogA);
+                    checkLog(canonicalName, methodName, app, mvnCmds, runLogStream);
                 }
-                checkListeningHost(canonicalName, methodName, mvnCmds, runLogA);
-
-                if (commandPrefix.size() > 0) {
-                    // unfortunately some active wait is needed to get stop message into logs
-                    Thread.sleep(1000l);
+                checkListeningHost(canonicalName, methodName, mvnCmds, runLogStream);
+                float[] startedStopped = parseStartStopTimestamps(runLogStream);
+                if (buildStepMetrics.isPresent()) {
+                    for (BuildStepMetrics.Step step : BuildStepMetrics.parseStartupSteps(Files.readAllLines(runLogA.toPath()), buildSteps)) {
+                        startupStepSamples.computeIfAbsent(step.name, name -> new ArrayList<>()).add(step.ms);
+                        if (buildAheadCpus.isEmpty()) {
+                            comparableStartupStepSamples.computeIfAbsent(step.name, name -> new ArrayList<>()).add(step.ms);
+                        }
+                        startupStepExtensions.put(step.name, step.extension);
+                    }
                 }
-                float[] startedStopped = parseStartStopTimestamps(runLogA);
 
                 Path measurementsLog = Paths.get(getLogsDir(canonicalName, methodName).toString(), "measurements.csv");
-                LogBuilder.Log log = new LogBuilder()
+                LogBuilder logBuilder = new LogBuilder()
                         .app(app)
                         .mode(mvnCmds)
-                        .buildTimeMs(buildEnds - buildStarts)
+                        .buildTimeMs(buildTimeMs)
+                        .metrics(buildPhases)
                         .timeToFirstOKRequestMs(timeToFirstOKRequest)
                         .startedInMs((long) (startedStopped[0] * 1000))
                         .stoppedInMs((long) (startedStopped[1] * 1000))
                         .rssKb(rssKb)
                         .openedFiles(openedFiles)
-                        .build();
+                        .metric("firstConnectUs", TimeUnit.NANOSECONDS.toMicros(firstOK.connectedNs))
+                        .metric("firstByteUs", TimeUnit.NANOSECONDS.toMicros(firstOK.firstByteNs))
+                        .metric("firstOKUs", TimeUnit.NANOSECONDS.toMicros(firstOK.okNs));
+                if (buildPipeline.isPresent()) {
+                    logBuilder.metric("buildAheadCpus", buildAheadCpus.size());
+                    logBuilder.metric("builtAhead", appBuild.builtAhead ? 1 : 0);
+                }
+                if (firstOKSample != null) {
+                    LOGGER.info("RSS at first OK request (kB): " + firstOKSample.rssKb +
+                            ", peak RSS during startup (kB): " + firstOKSample.hwmKb +
+                            ", RSS checked (kB): " + rssKb);
+                    logBuilder.rssFirstOKKb(firstOKSample.rssKb)
+                            .peakStartupRssKb(firstOKSample.hwmKb);
+                }
+                fileDescriptors.ifPresent(fds -> logBuilder.metrics(fds.columns()));
+                if (spawnStat.isPresent() && firstOKStat.isPresent()) {
+                    ProcStat toFirstOK = firstOKStat.get().minus(spawnStat.get());
+                    LOGGER.info("CPU until the first OK request: " + toFirstOK);
+                    logBuilder.cpuToFirstOKMs(toFirstOK.cpuMs())
+                            .metrics(toFirstOK.columns("ToFirstOK"));
+                }
+                shutdownCpuMs(cgroupBeforeStop, cgroupAfterStop, beforeStopStat, procSampler, reapedBeforeStop, reapedAfterStop, buildAheadCpus)
+                        .ifPresent(logBuilder::cpuShutdownMs);
+                if (perfStat.isPresent()) {
+                    Map<String, Long> counters = perfStat.get().columns(spawnNs + firstOK.okNs);
+                    LOGGER.info("perf counters: " + counters);
+                    logBuilder.metrics(counters);
+                }
+                jfrSummary.ifPresent(summary -> logBuilder.metrics(summary.columns()));
+                memoryMapsFirstOK.ifPresent(breakdown -> logBuilder.metrics(breakdown.columns("FirstOK")));
+                cgroupFirstOK.ifPresent(stats -> logBuilder.metrics(stats.columns("FirstOK")));
+                cgroupBeforeStop.ifPresent(stats -> logBuilder.metrics(stats.columns("BeforeStop")));
+                logBuilder.metrics(NativeMemoryTracking.columns(nmtFirstOK, "FirstOK"))
+                        .metrics(NativeMemoryTracking.columns(nmtChecked, "Checked"));
+                warmupResult.ifPresent(result -> logBuilder.metrics(result.columns(warmupCurve.get().tolerance)));
+                loadResult.ifPresent(result -> logBuilder.metrics(result.columns()));
+                LogBuilder.Log log = logBuilder.build();
                 Logs.logMeasurements(log, measurementsLog);
+                measurements.add(log);
                 appendln(whatIDidReport, "Measurements:");
                 appendln(whatIDidReport, log.headerMarkdown + "\n" + log.lineMarkdown);
+                loadResult.ifPresent(result -> appendln(whatIDidReport, "Load: " + result));
+                jfrSummary.ifPresent(summary -> appendln(whatIDidReport, "Flight recording until the first OK request: " + summary + "\n\n" + summary.toMarkdown()));
+                cgroupFirstOK.ifPresent(stats -> appendln(whatIDidReport, "cgroup at the first OK request: " + stats));
+                cgroupBeforeStop.ifPresent(stats -> appendln(whatIDidReport, "cgroup before stop: " + stats));
+                memoryMapsFirstOK.ifPresent(breakdown -> appendln(whatIDidReport, "Memory maps at the first OK request:\n\n" + breakdown.toMarkdown()));
+                if (nativeMemoryTracking.isPresent()) {
+                    appendln(whatIDidReport, "Native memory committed (kB):\n\n" + NativeMemoryTracking.toMarkdown(nmtFirstOK, nmtChecked));
+                }
+
+                LOGGER.info("Startup phases: " + timeline);
+                LogBuilder.Log phasesLog = new LogBuilder()
+                        .app(app)
+                        .mode(mvnCmds)
+                        .metric("iteration", i)
+                        .metrics(timeline.columns())
+                        .build();
+                Logs.logMeasurements(phasesLog, Paths.get(getLogsDir(canonicalName, methodName).toString(), "phases.csv"));
+                appendln(whatIDidReport, "Startup phases (microseconds since spawn):");
+                appendln(whatIDidReport, phasesLog.headerMarkdown + "\n" + phasesLog.lineMarkdown);
 
                 rssKbList.add(rssKb);
                 timeToFirstOKRequestList.add(timeToFirstOKRequest);
 
                 testResource.reset();
             }
+            if (iterationPolicy.adaptive) {
+                appendln(whatIDidReport, "Adaptive iterations " + iterationPolicy.getStopReason());
+            }
+            if (!warmupResults.isEmpty()) {
+                WarmupCurve.Curve curve = WarmupCurve.Curve.median(warmupResults);
+                curve.write(Paths.get(getLogsDir(canonicalName, methodName).toString(), "warmup-curve.csv"));
+                String warmupSummary = curve.hasSteadyState()
+                        ? "Warm-up: steady-state median latency " + curve.steadyStateUs() + " us after "
+                        + curve.steadyStateRequests(warmupCurve.get().tolerance) + " requests"
+                        : "Warm-up: no steady state, every request of the last window failed";
+                LOGGER.info(warmupSummary);
+                appendln(whatIDidReport, warmupSummary);
+                // The JVM and native mode tests of the app meet in the directory of the test class
+                if (mvnCmds == MvnCmds.JVM || mvnCmds == MvnCmds.NATIVE) {
+                    Path classDir = getLogsDir(canonicalName);
+                    curve.write(classDir.resolve("warmup-curve-" + Baseline.key(app, mvnCmds) + ".csv"));
+                    MvnCmds otherMode = mvnCmds == MvnCmds.JVM ? MvnCmds.NATIVE : MvnCmds.JVM;
+                    Optional<WarmupCurve.Curve> otherCurve = WarmupCurve.Curve.read(classDir.resolve("warmup-curve-" + Baseline.key(app, otherMode) + ".csv"));
+                    if (otherCurve.isPresent()) {
+                        String crossover = app.name() + " " + (mvnCmds == MvnCmds.JVM
+                                ? WarmupCurve.describeCrossover(curve, otherCurve.get())
+                                : WarmupCurve.describeCrossover(otherCurve.get(), curve));
+                        LOGGER.info(crossover);
+                        appendln(whatIDidReport, crossover);
+                    }
+                }
+            }
+            List<BuildStepMetrics.Step> startupSteps = BuildStepMetrics.medians(startupStepSamples, startupStepExtensions);
+            if (buildStepMetrics.isPresent()) {
+                BuildStepMetrics.write(startupSteps, Paths.get(getLogsDir(canonicalName, methodName).toString(), mvnCmds.name().toLowerCase() + "-startup-steps.csv"));
+                appendln(whatIDidReport, "Slowest startup steps, median of the iterations:\n\n" + buildStepMetrics.get().toMarkdown(startupSteps));
+            }
             LOGGER.info("Calculating the stats");
-            long rssKbAvgWithoutMinMax = getAvgWithoutMinMax(rssKbList);
-            long timeToFirstOKRequestAvgWithoutMinMax = getAvgWithoutMinMax(timeToFirstOKRequestList);
-            LOGGER.info("AVG timeToFirstOKRequest (ms) without min and max values: " + timeToFirstOKRequestAvgWithoutMinMax);
-            LOGGER.info("AVG RSS (kB) without min and max values: " + rssKbAvgWithoutMinMax);
+            Path summaryLog = Paths.get(getLogsDir(canonicalName, methodName).toString(), "summary.csv");
+            appendln(whatIDidReport, "Summary:");
+            appendln(whatIDidReport, Logs.logSummary(app, mvnCmds, Statistics.of(measurements, estimator), summaryLog));
+            Statistics rssKbStats = Statistics.of("RSSkB", rssKbList, estimator);
+            Statistics timeToFirstOKRequestStats = Statistics.of("timeToFirstOKRequestMs", timeToFirstOKRequestList, estimator);
+            LOGGER.info("timeToFirstOKRequest (ms): " + timeToFirstOKRequestStats);
+            LOGGER.info("RSS (kB): " + rssKbStats);
+            Optional<Baseline> baseline = Baseline.fromSystemProperties();
+            List<Baseline.Comparison> comparisons = List.of();
+            if (baseline.isPresent()) {
+                // With the warm-up, RSS and FDs are measured before the functional checks, see Footprint, so not comparable with the runs without it
+                String baselineKey = Baseline.key(app, mvnCmds) + (warmupCurve.isPresent() ? "-warmup" : "");
+                Path comparisonLog = Paths.get(getLogsDir(canonicalName, methodName).toString(), "baseline-comparison.csv");
+                comparisons = compareWithBaseline(baseline.get(), baselineKey, app, mvnCmds, measurements, comparableStartupStepSamples,
+                        appBuild, nativeBuildReport, buildStepMetrics, buildSteps, startupSteps, comparisonLog, whatIDidReport);
+            }
+            // Static thresholds are the absolute backstop, the baseline catches smaller regressions
+            if (calibration.isPresent()) {
+                LogBuilder calibrationLogBuilder = new LogBuilder()
+                        .app(app)
+                        .mode(mvnCmds)
+                        .metrics(calibration.get().columns());
+                if (artifactsReadMBps.isPresent()) {
+                    calibrationLogBuilder.metric("artifactsReadMBps", Math.round(artifactsReadMBps.getAsDouble()));
+                }
+                LogBuilder.Log calibrationLog = calibrationLogBuilder
+                        .metric("timeFactorPermille", Math.round(timeFactor * 1000))
+                        .metric("timeToFirstOKRequestMs", timeToFirstOKRequestStats.estimateAsLong())
+                        .metric("normalizedTimeToFirstOKRequestMs", Math.round(timeToFirstOKRequestStats.estimate / timeFactor))
+                        .build();
+                Logs.logMeasurements(calibrationLog, Paths.get(getLogsDir(canonicalName, methodName).toString(), "calibration.csv"));
+                appendln(whatIDidReport, "Calibration, raw and normalized to the reference host:");
+                appendln(whatIDidReport, calibrationLog.headerMarkdown + "\n" + calibrationLog.lineMarkdown);
+            }
             if (!skipThresholdCheck) {
-                checkThreshold(app, mvnCmds, rssKbAvgWithoutMinMax, timeToFirstOKRequestAvgWithoutMinMax, SKIP);
+                checkThreshold(app, mvnCmds, rssKbStats, timeToFirstOKRequestStats, timeFactor);
+            }
+            if (baseline.isPresent() && !baseline.get().update) {
+                checkBaseline(app, mvnCmds, baseline.get(), comparisons);
             }
         } finally {
             // Make sure processes are down even if there was an exception / failure
             if (pA != null) {
                 processStopper(pA, true);
             }
+            cgroupLimits.ifPresent(CgroupLimits::release);
+            procSampler.ifPresent(ProcSampler::close);
+            listenWatcher.ifPresent(TcpListenWatcher::close);
             asyncProfiler.ifPresent(profiler -> profiler.archiveProfilingResults(canonicalName, methodName, appDir));
             archiveLog(canonicalName, methodName, buildLogA);
             archiveLog(canonicalName, methodName, runLogA);
@@ -234,17 +586,204 @@ public class StartStopTest {
         }
     }
 
+    /**
+     * @return CPU time the app consumed from the read before stop until its exit, the most precise of what was read, empty if none was
+     */
+    private static OptionalLong shutdownCpuMs(Optional<CgroupLimits.Stats> cgroupBeforeStop, Optional<CgroupLimits.Stats> cgroupAfterStop,
+                                              Optional<ProcStat> beforeStopStat, Optional<ProcSampler> procSampler,
+                                              Optional<ProcStat> reapedBeforeStop, Optional<ProcStat> reapedAfterStop, Set<Integer> buildAheadCpus) {
+        if (cgroupBeforeStop.isPresent() && cgroupAfterStop.isPresent()) {
+            long cpuShutdownMs = cgroupAfterStop.get().cpuUsageMs - cgroupBeforeStop.get().cpuUsageMs;
+            LOGGER.info("CPU during shutdown: " + cpuShutdownMs + " ms, accounted by the cgroup");
+            return OptionalLong.of(cpuShutdownMs);
+        }
+        // The sampler kept reading until the process exited, the last sample is up to an interval before the exit
+        Optional<ProcStat> lastStat = procSampler.flatMap(ProcSampler::getLastStat);
+        if (beforeStopStat.isPresent() && lastStat.isPresent()) {
+            ProcStat shutdown = lastStat.get().minus(beforeStopStat.get());
+            LOGGER.info("CPU during shutdown, until the last sample: " + shutdown);
+            return OptionalLong.of(Math.max(0L, shutdown.cpuMs()));
+        }
+        if (beforeStopStat.isPresent() && reapedAfterStop.isPresent() && buildAheadCpus.isEmpty()) {
+            // Without the sampler: the children reaped since the read before stop are the app, but also any kill
+            // command processStopper forked that exited meanwhile, which may add its few milliseconds
+            long cpuShutdownMs = reapedAfterStop.get().minus(reapedBeforeStop.get()).cpuMs() - beforeStopStat.get().cpuMs();
+            LOGGER.info("CPU during shutdown: " + cpuShutdownMs + " ms, accounted when the app was reaped");
+            // Both reads have the resolution of the clock tick, the difference might be one tick below zero
+            return OptionalLong.of(Math.max(0L, cpuShutdownMs));
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Compares the samples of this run with the baseline, and replaces the stored ones with them if the baseline is being updated
+     *
+     * @return comparisons of {@link Baseline#START_STOP_METRICS}, the ones a regression fails the test on
+     */
+    private static List<Baseline.Comparison> compareWithBaseline(Baseline baseline, String baselineKey, Apps app, MvnCmds mvnCmds,
+                                                                 List<LogBuilder.Log> measurements, Map<String, List<Long>> comparableStartupStepSamples,
+                                                                 AppBuild appBuild, Optional<NativeBuildReport> nativeBuildReport,
+                                                                 Optional<BuildStepMetrics> buildStepMetrics, List<BuildStepMetrics.Step> buildSteps,
+                                                                 List<BuildStepMetrics.Step> startupSteps, Path comparisonLog,
+                                                                 StringBuilder whatIDidReport) throws IOException {
+        // Iterations measured while building ahead ran on fewer CPUs next to a build, they are neither compared nor stored
+        List<LogBuilder.Log> comparableMeasurements = measurements.stream()
+                .filter(log -> log.values.getOrDefault("buildAheadCpus", 0L) == 0L)
+                .collect(Collectors.toList());
+        if (comparableMeasurements.size() < measurements.size()) {
+            appendln(whatIDidReport, (measurements.size() - comparableMeasurements.size()) + " of " + measurements.size()
+                    + " iterations ran while building ahead, they are not comparable and are left out of the baseline");
+        }
+        Map<String, List<Long>> samples = Baseline.samples(comparableMeasurements, Baseline.START_STOP_METRICS);
+        Map<String, List<Long>> stored = baseline.load(baselineKey);
+        List<Baseline.Comparison> comparisons = baseline.compare(stored, samples);
+        // Native memory categories are nearly deterministic, any shift would be significant, so they only show where RSS went
+        Map<String, List<Long>> nmtSamples = Baseline.samples(comparableMeasurements, NativeMemoryTracking.metrics(comparableMeasurements));
+        List<Baseline.Comparison> nmtComparisons = baseline.compare(stored, nmtSamples);
+        // A build is a single sample, its change is only reported; a build made ahead competed for the CPUs
+        // and a build restored from the cache was already stored when it was built, neither is compared nor stored
+        Map<String, Long> nativeBuild = nativeBuildReport.filter(report -> appBuild.isNewSample()).map(NativeBuildReport::columns).orElse(Map.of());
+        List<Baseline.Comparison> nativeBuildComparisons = baseline.compareSingle(stored, nativeBuild);
+        // So are the build steps, the startup steps are sampled every iteration; they only show where the time went
+        Map<String, Long> slowestBuildSteps = buildStepMetrics.filter(metrics -> appBuild.isNewSample()).map(metrics -> metrics.columns(buildSteps, BuildStepMetrics.BUILD_STEP_PREFIX)).orElse(Map.of());
+        List<Baseline.Comparison> buildStepComparisons = baseline.compareSingle(stored, slowestBuildSteps);
+        Map<String, List<Long>> startupStepSamplesByMetric = new LinkedHashMap<>();
+        buildStepMetrics.ifPresent(metrics -> metrics.columns(startupSteps, "").keySet()
+                .forEach(name -> startupStepSamplesByMetric.put(BuildStepMetrics.STARTUP_STEP_PREFIX + name,
+                        comparableStartupStepSamples.getOrDefault(name, List.of()))));
+        List<Baseline.Comparison> startupStepComparisons = baseline.compare(stored, startupStepSamplesByMetric);
+        List<Baseline.Comparison> allComparisons = new ArrayList<>(comparisons);
+        allComparisons.addAll(nmtComparisons);
+        allComparisons.addAll(nativeBuildComparisons);
+        allComparisons.addAll(buildStepComparisons);
+        allComparisons.addAll(startupStepComparisons);
+        appendln(whatIDidReport, "Comparison with the baseline " + baselineKey + " in " + baseline.dir + ":");
+        appendln(whatIDidReport, Logs.logBaselineComparison(app, mvnCmds, allComparisons, comparisonLog));
+        if (baseline.update) {
+            Map<String, List<Long>> allSamples = new LinkedHashMap<>(samples);
+            allSamples.putAll(nmtSamples);
+            allSamples.putAll(Baseline.history(stored, nativeBuild));
+            allSamples.putAll(Baseline.history(stored, slowestBuildSteps));
+            allSamples.putAll(startupStepSamplesByMetric);
+            baseline.store(baselineKey, allSamples);
+        }
+        return comparisons;
+    }
+
+    /**
+     * Artifacts of the app in place, restored from the build cache, taken over from the build ahead or built right here
+     */
+    private static final class AppBuild {
+        final long buildTimeMs;
+        final Map<String, Long> phases;
+        /**
+         * Built concurrently with the measurements of the previous tests, on fewer CPUs
+         */
+        final boolean builtAhead;
+        /**
+         * Neither built nor measured, the times are those of the build that stored the cache entry
+         */
+        final boolean restored;
+
+        private AppBuild(long buildTimeMs, Map<String, Long> phases, boolean builtAhead, boolean restored) {
+            this.buildTimeMs = buildTimeMs;
+            this.phases = phases;
+            this.builtAhead = builtAhead;
+            this.restored = restored;
+        }
+
+        /**
+         * A build ahead competed for the CPUs and a restored build was already sampled when it was built
+         */
+        boolean isNewSample() {
+            return !builtAhead && !restored;
+        }
+
+        static AppBuild build(String canonicalName, String methodName, Apps app, MvnCmds mvnCmds, File appDir, File buildLog,
+                              List<String> buildCommand, boolean skipLogCheck, StringBuilder whatIDidReport) throws IOException, InterruptedException {
+            Optional<BuildCache> buildCache = BuildCache.fromSystemProperties();
+            String buildCacheKey = buildCache.isPresent() ? buildCache.get().key(appDir, buildCommand) : null;
+            Optional<BuildCache.Entry> cachedBuild = buildCache.isPresent() ? buildCache.get().restore(buildCacheKey, appDir, buildLog) : Optional.empty();
+            long buildTimeMs;
+            Map<String, Long> phases;
+            boolean builtAhead = false;
+            if (cachedBuild.isPresent()) {
+                buildTimeMs = cachedBuild.get().buildTimeMs;
+                phases = cachedBuild.get().metrics;
+                appendlnSection(whatIDidReport, "Restored from the build cache " + cachedBuild.get().dir + ", originally built in " + buildTimeMs + " ms");
+            } else {
+                Optional<BuildPipeline.Build> ahead = buildPipeline.isPresent()
+                        ? buildPipeline.get().take(app, mvnCmds, buildCommand, appDir, buildLog) : Optional.empty();
+                MavenGoals mavenGoals;
+                if (ahead.isPresent()) {
+                    builtAhead = true;
+                    mavenGoals = ahead.get().mavenGoals;
+                    buildTimeMs = ahead.get().buildTimeMs;
+                    appendlnSection(whatIDidReport, "Built ahead in " + ahead.get().dir + " on CPUs " + buildPipeline.get().cpus
+                            + " while the previous tests were measured");
+                } else {
+                    ExecutorService buildService = Executors.newFixedThreadPool(1);
+                    mavenGoals = MavenGoals.start();
+                    LogStream buildLogStream = new LogStream(buildLog).on(LogStream.Event.LINE, mavenGoals);
+                    buildService.submit(new Commands.ProcessRunner(appDir, buildLogStream, buildCommand, 20));
+                    long buildStarts = System.currentTimeMillis();
+                    buildService.shutdown();
+                    buildService.awaitTermination(30, TimeUnit.MINUTES);
+                    long buildEnds = System.currentTimeMillis();
+                    buildTimeMs = buildEnds - buildStarts;
+                }
+                LOGGER.info("Maven build: " + mavenGoals);
+                mavenGoals.write(Paths.get(getLogsDir(canonicalName, methodName).toString(), mvnCmds.name().toLowerCase() + "-build-goals.csv"));
+                appendln(whatIDidReport, "Maven build: " + mavenGoals);
+                phases = mavenGoals.columns();
+
+                assertTrue(buildLog.exists());
+                if (!skipLogCheck) {
+                    checkLog(canonicalName, methodName, app, mvnCmds, buildLog);
+                }
+                if (buildCache.isPresent()) {
+                    buildCache.get().store(buildCacheKey, appDir, BuildCache.artifacts(mvnCmds), buildLog, buildTimeMs, phases);
+                }
+            }
+            if (Boolean.getBoolean("start-stop.build.exclude-diagnostics")) {
+                buildTimeMs -= phases.getOrDefault(MavenGoals.Phase.DIAGNOSTICS.column, 0L);
+            }
+            return new AppBuild(buildTimeMs, phases, builtAhead, cachedBuild.isPresent());
+        }
+    }
+
+    /**
+     * RSS, file descriptors and native memory the thresholds and the baseline are checked against
+     */
+    private static final class Footprint {
+        final long rssKb;
+        final Optional<FileDescriptors> fileDescriptors;
+        final long openedFiles;
+        final Map<String, Long> nmt;
+
+        private Footprint(long rssKb, Optional<FileDescriptors> fileDescriptors, long openedFiles, Map<String, Long> nmt) {
+            this.rssKb = rssKb;
+            this.fileDescriptors = fileDescriptors;
+            this.openedFiles = openedFiles;
+            this.nmt = nmt;
+        }
+
+        static Footprint measure(long appPid, Optional<ProcSampler> procSampler, Optional<NativeMemoryTracking> nativeMemoryTracking)
+                throws IOException, InterruptedException {
+            ProcSampler.MemorySample sample = procSampler.map(ProcSampler::sample).orElse(null);
+            long rssKb = sample != null ? sample.rssKb : getRSSkB(appPid);
+            Optional<FileDescriptors> fileDescriptors = FileDescriptors.collect(appPid);
+            long openedFiles = fileDescriptors.isPresent() ? fileDescriptors.get().total : getOpenedFDs(appPid);
+            Map<String, Long> nmt = nativeMemoryTracking.isPresent() ? nativeMemoryTracking.get().summary(appPid) : Map.of();
+            return new Footprint(rssKb, fileDescriptors, openedFiles, nmt);
+        }
+    }
+
     private static List<String> getSystemPropertyAsList(String key, String def) {
         String memoryString = System.getProperty(key, def);
         return Arrays.asList(memoryString.split(" "));
     }
 
-    private long getAvgWithoutMinMax(List<Long> listOfValues) {
-        listOfValues.remove(Collections.min(listOfValues));
-        listOfValues.remove(Collections.max(listOfValues));
-        return (long) listOfValues.stream().mapToLong(val -> val).average().orElse(Long.MAX_VALUE);
-    }
-
     @Test
     public void jakartaRESTMinimalJVM(TestInfo testInfo) throws IOException, InterruptedException {
         testRuntime(testInfo, Apps.JAKARTA_REST_MINIMAL, MvnCmds.JVM);
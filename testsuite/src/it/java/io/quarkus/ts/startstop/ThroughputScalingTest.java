@@ -0,0 +1,275 @@
+package io.quarkus.ts.startstop;
+
+import io.quarkus.ts.startstop.utils.AppRun;
+import io.quarkus.ts.startstop.utils.Apps;
+import io.quarkus.ts.startstop.utils.Commands;
+import io.quarkus.ts.startstop.utils.LoadGenerator;
+import io.quarkus.ts.startstop.utils.LogBuilder;
+import io.quarkus.ts.startstop.utils.Logs;
+import io.quarkus.ts.startstop.utils.MvnCmds;
+import io.quarkus.ts.startstop.utils.OpenTelemetryCollector;
+import io.quarkus.ts.startstop.utils.ReadinessProbe;
+import io.quarkus.ts.startstop.utils.UnitTestResource;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static io.quarkus.ts.startstop.CpuScalingTest.getCpuCounts;
+import static io.quarkus.ts.startstop.utils.Commands.cleanTarget;
+import static io.quarkus.ts.startstop.utils.Commands.disableCleanup;
+import static io.quarkus.ts.startstop.utils.Commands.getBaseDir;
+import static io.quarkus.ts.startstop.utils.Commands.getBuildCommand;
+import static io.quarkus.ts.startstop.utils.Commands.getQuarkusGroupId;
+import static io.quarkus.ts.startstop.utils.Commands.getQuarkusVersion;
+import static io.quarkus.ts.startstop.utils.Commands.getRunCommand;
+import static io.quarkus.ts.startstop.utils.Logs.appendln;
+import static io.quarkus.ts.startstop.utils.Logs.appendlnSection;
+import static io.quarkus.ts.startstop.utils.Logs.archiveLog;
+import static io.quarkus.ts.startstop.utils.Logs.checkLog;
+import static io.quarkus.ts.startstop.utils.Logs.getLogsDir;
+import static io.quarkus.ts.startstop.utils.Logs.writeReport;
+import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setCpus;
+import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setMemoryLimits;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Steady-state throughput and p99 latency of the application pinned to 1..N CPUs, for each combination of the event loop
+ * and the worker pool sizes, separately for endpoints served on worker threads and on the event loop.
+ * Details in https://github.com/quarkus-qe/quarkus-startstop#throughputscalingtest
+ */
+@Tag("throughput-scaling")
+@EnabledOnOs({OS.LINUX}) // taskset
+public class ThroughputScalingTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ThroughputScalingTest.class.getName());
+
+    public static final String BASE_DIR = getBaseDir();
+    public static final int DEFAULT_CONNECTIONS = 256;
+    public static final String EVENT_LOOPS_PROPERTY = "quarkus.vertx.event-loops-pool-size";
+    public static final String WORKERS_PROPERTY = "quarkus.thread-pool.max-threads";
+    /**
+     * Sleeping in a JAX-RS resource method, MetricController.timedRequest and ResilienceController.checkTimeout
+     */
+    public static final String BLOCKING_MIX = "/data/metric/timed,/data/resilience";
+    /**
+     * Static index page, served by Vert.x right on the event loop
+     */
+    public static final String NON_BLOCKING_MIX = "/";
+
+    public void testRuntime(TestInfo testInfo, Apps app, MvnCmds mvnCmds, Supplier<UnitTestResource> testResourceSupplier) throws IOException, InterruptedException {
+        LOGGER.info("Testing app: " + app.toString() + ", mode: " + mvnCmds.toString());
+
+        File buildLogA = null;
+        List<File> runLogs = new ArrayList<>();
+        StringBuilder whatIDidReport = new StringBuilder();
+        File appDir = new File(BASE_DIR + File.separator + app.dir);
+        String cn = testInfo.getTestClass().get().getCanonicalName();
+        String mn = testInfo.getTestMethod().get().getName();
+        boolean isNative = mvnCmds == MvnCmds.NATIVE;
+        List<String> memory = Arrays.asList(isNative ? System.getProperty("start-stop.native.memory", "-Xmx96m").split(" ")
+                : System.getProperty("start-stop.jvm.memory", "-Xmx256m").split(" "));
+        List<String> eventLoops = getSystemPropertyAsList("throughput-scaling.event-loops", "1x,2x");
+        List<String> workers = getSystemPropertyAsList("throughput-scaling.workers", "8x,default");
+        Map<String, List<String>> mixes = new LinkedHashMap<>();
+        mixes.put("blocking", getSystemPropertyAsList("throughput-scaling.mix.blocking", BLOCKING_MIX));
+        mixes.put("nonBlocking", getSystemPropertyAsList("throughput-scaling.mix.non-blocking", NON_BLOCKING_MIX));
+        try (var testResource = testResourceSupplier.get(); var readinessProbe = ReadinessProbe.create()) {
+            List<Integer> appCpus = new ArrayList<>(readinessProbe.getAppCpus());
+            // The load generator gets CPUs of its own, the upper ones, so that it competes with the app at no CPU count
+            int generatorCpuCount = Integer.getInteger("throughput-scaling.generator.cpus", appCpus.size() / 2);
+            Set<Integer> generatorCpus = new TreeSet<>();
+            if (generatorCpuCount > 0 && generatorCpuCount < appCpus.size()) {
+                List<Integer> upperCpus = appCpus.subList(appCpus.size() - generatorCpuCount, appCpus.size());
+                generatorCpus.addAll(upperCpus);
+                upperCpus.clear();
+            } else {
+                LOGGER.warn("The load generator shares the CPUs " + appCpus + " with the application");
+            }
+            LoadGenerator loadGenerator = LoadGenerator.fromSystemProperties(Integer.getInteger("throughput-scaling.connections", DEFAULT_CONNECTIONS))
+                    .pinnedTo(generatorCpus);
+            TreeSet<Integer> cpuCounts = getCpuCounts("throughput-scaling.cpus", appCpus.size());
+
+            // Cleanup
+            cleanTarget(app);
+            Files.createDirectories(Paths.get(appDir.getAbsolutePath() + File.separator + "logs"));
+
+            // Build
+            buildLogA = new File(appDir.getAbsolutePath() + File.separator + "logs" + File.separator + mvnCmds.name().toLowerCase() + "-build.log");
+            ExecutorService buildService = Executors.newFixedThreadPool(1);
+
+            List<String> baseBuildCmd = new ArrayList<>();
+            baseBuildCmd.addAll(Arrays.asList(mvnCmds.mvnCmds[0]));
+            baseBuildCmd.add("-Dquarkus.version=" + getQuarkusVersion());
+            baseBuildCmd.add("-Dquarkus.platform.group-id=" + getQuarkusGroupId());
+            final List<String> buildCommand = getBuildCommand(baseBuildCmd.toArray(new String[0]));
+            LOGGER.info("Running " + baseBuildCmd + " in the " + appDir.getAbsolutePath());
+
+            buildService.submit(new Commands.ProcessRunner(appDir, buildLogA, buildCommand, 20));
+            appendln(whatIDidReport, "# " + cn + ", " + mn);
+            appendln(whatIDidReport, (new Date()).toString());
+            appendln(whatIDidReport, appDir.getAbsolutePath());
+            appendlnSection(whatIDidReport, String.join(" ", buildCommand));
+            appendln(whatIDidReport, "Application on CPUs " + appCpus + ", load generator "
+                    + (loadGenerator.cpus.isEmpty() ? "sharing them" : "on CPUs " + loadGenerator.cpus));
+            buildService.shutdown();
+            buildService.awaitTermination(30, TimeUnit.MINUTES);
+
+            assertTrue(buildLogA.exists());
+            checkLog(cn, mn, app, mvnCmds, buildLogA);
+
+            // Measure every point of the matrix, the app is restarted for each, the mixes share a run
+            Path measurementsLog = Paths.get(getLogsDir(cn, mn).toString(), "measurements.csv");
+            Map<String, Map<String, LoadGenerator.Result>> byMix = new LinkedHashMap<>();
+            mixes.keySet().forEach(mix -> byMix.put(mix, new LinkedHashMap<>()));
+            Set<String> pools = new LinkedHashSet<>();
+            List<String> failures = new ArrayList<>();
+            for (int cpus : cpuCounts) {
+                for (String eventLoopsSize : eventLoops) {
+                    for (String workersSize : workers) {
+                        Integer eventLoopsCount = poolSize(eventLoopsSize, cpus);
+                        Integer workersCount = poolSize(workersSize, cpus);
+                        List<String> options = new ArrayList<>(memory);
+                        if (eventLoopsCount != null) {
+                            options.add("-D" + EVENT_LOOPS_PROPERTY + "=" + eventLoopsCount);
+                        }
+                        if (workersCount != null) {
+                            options.add("-D" + WORKERS_PROPERTY + "=" + workersCount);
+                        }
+                        List<String> runCommand = getRunCommand(mvnCmds.mvnCmds[1]);
+                        runCommand = setMemoryLimits(runCommand, options, isNative);
+                        runCommand = setCpus(runCommand, appCpus.subList(0, cpus), isNative);
+                        String pool = "event loops " + eventLoopsSize + ", workers " + workersSize;
+                        pools.add(pool);
+                        String point = cpus + " CPUs, " + pool;
+                        File runLog = new File(appDir.getAbsolutePath() + File.separator + "logs" + File.separator + mvnCmds.name().toLowerCase()
+                                + "-run-cpus" + cpus + "-el" + eventLoopsSize + "-w" + workersSize + ".log");
+                        runLogs.add(runLog);
+                        appendln(whatIDidReport, point + ": " + String.join(" ", runCommand));
+
+                        Map<String, LoadGenerator.Result> loads = new LinkedHashMap<>();
+                        AppRun.Result result = AppRun.run(app, appDir, runCommand, runLog, readinessProbe, Optional.empty(), pid -> {
+                            for (Map.Entry<String, List<String>> mix : mixes.entrySet()) {
+                                loads.put(mix.getKey(), loadGenerator.run(app.urlContent.urlContent[0][0], mix.getValue()));
+                            }
+                        });
+                        testResource.reset();
+                        if (!result.ok()) {
+                            failures.add(point + ": " + result.failure);
+                            continue;
+                        }
+                        LogBuilder logBuilder = new LogBuilder()
+                                .app(app)
+                                .mode(mvnCmds)
+                                .metric("cpus", cpus)
+                                .metric("generatorCpus", loadGenerator.cpus.size())
+                                .metric("eventLoops", eventLoopsCount != null ? eventLoopsCount : 2 * cpus)
+                                .metric("workers", workersCount != null ? workersCount : Math.max(8 * cpus, 200))
+                                .timeToFirstOKRequestMs(result.timeToFirstOKRequestMs)
+                                .rssKb(result.rssKb);
+                        loads.forEach((mix, load) -> {
+                            byMix.get(mix).put(cpus + "|" + pool, load);
+                            logBuilder.metric(mix + "Rps", Math.round(load.throughput()))
+                                    .metric(mix + "P99Us", load.histogram.getValueAtPercentile(99d))
+                                    .metric(mix + "Errors", load.errors);
+                        });
+                        LogBuilder.Log log = logBuilder.build();
+                        Logs.logMeasurements(log, measurementsLog);
+                        loads.forEach((mix, load) -> LOGGER.info(point + ", " + mix + ": " + load));
+                    }
+                }
+            }
+
+            byMix.forEach((mix, loads) -> {
+                appendln(whatIDidReport, "\n" + mix + " " + mixes.get(mix) + ", req/s:\n");
+                appendln(whatIDidReport, matrix(cpuCounts, pools, loads, load -> String.format(Locale.ROOT, "%.0f", load.throughput())));
+                appendln(whatIDidReport, mix + " " + mixes.get(mix) + ", p99 us:\n");
+                appendln(whatIDidReport, matrix(cpuCounts, pools, loads, load -> Long.toString(load.histogram.getValueAtPercentile(99d))));
+            });
+            assertTrue(failures.isEmpty(), "Application " + app + " in " + mvnCmds + " mode did not serve: " + failures);
+        } finally {
+            // Archive logs no matter what
+            archiveLog(cn, mn, buildLogA);
+            for (File runLog : runLogs) {
+                archiveLog(cn, mn, runLog);
+            }
+            writeReport(cn, mn, whatIDidReport.toString());
+            if (!disableCleanup()) {
+                cleanTarget(app);
+            }
+        }
+    }
+
+    /**
+     * @param size e.g. "16", "2x" for twice the CPUs or "default"
+     * @return the pool size, null for the Quarkus default
+     */
+    private static Integer poolSize(String size, int cpus) {
+        if (size.equals("default")) {
+            return null;
+        }
+        int count = size.endsWith("x") ? Integer.parseInt(size.substring(0, size.length() - 1)) * cpus : Integer.parseInt(size);
+        if (count < 1) {
+            throw new IllegalArgumentException("Pool size must be positive, \"<n>x\" of the CPUs or \"default\", was: " + size);
+        }
+        return count;
+    }
+
+    /**
+     * @return markdown table, a row per CPU count, a column per pool setting as configured, e.g. relative to the CPUs
+     */
+    private static String matrix(Set<Integer> cpuCounts, Set<String> pools, Map<String, LoadGenerator.Result> loads,
+                                 Function<LoadGenerator.Result, String> value) {
+        StringBuilder sb = new StringBuilder("|CPUs|").append(String.join("|", pools)).append("|\n|---|")
+                .append(pools.stream().map(p -> "---|").collect(Collectors.joining())).append('\n');
+        for (int cpus : cpuCounts) {
+            sb.append('|').append(cpus).append('|');
+            for (String pool : pools) {
+                LoadGenerator.Result load = loads.get(cpus + "|" + pool);
+                sb.append(load == null ? "-" : value.apply(load)).append('|');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static List<String> getSystemPropertyAsList(String key, String def) {
+        return Arrays.stream(System.getProperty(key, def).split(",")).map(String::trim).collect(Collectors.toList());
+    }
+
+    @Test
+    public void fullMicroProfileJVM(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.FULL_MICROPROFILE, MvnCmds.JVM, OpenTelemetryCollector::new);
+    }
+
+    @Test
+    @Tag("native")
+    public void fullMicroProfileNative(TestInfo testInfo) throws IOException, InterruptedException {
+        testRuntime(testInfo, Apps.FULL_MICROPROFILE, MvnCmds.NATIVE, OpenTelemetryCollector::new);
+    }
+}
@@ -0,0 +1,147 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+
+import static io.quarkus.ts.startstop.utils.Commands.getRSSkB;
+import static io.quarkus.ts.startstop.utils.Commands.parsePort;
+import static io.quarkus.ts.startstop.utils.Commands.processStopper;
+import static io.quarkus.ts.startstop.utils.Commands.runCommand;
+import static io.quarkus.ts.startstop.utils.Commands.waitForTcpClosed;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A single run of an already built application that is allowed to fail: start, first OK request, functional checks,
+ * RSS, an optional load phase and stop. For tests that run the same application many times with different settings
+ * and need to know whether it still serves, rather than to assert it does.
+ */
+public final class AppRun {
+
+    private static final Logger LOGGER = Logger.getLogger(AppRun.class.getName());
+
+    public static final long FIRST_OK_TIMEOUT_S = 60L;
+
+    public static class Result {
+        /**
+         * Null if the application served, otherwise why it did not
+         */
+        public final String failure;
+        public final long timeToFirstOKRequestMs;
+        public final long rssKb;
+        public final long cpuToFirstOKMs;
+        public final Optional<LoadGenerator.Result> load;
+
+        public Result(String failure, long timeToFirstOKRequestMs, long rssKb, long cpuToFirstOKMs, Optional<LoadGenerator.Result> load) {
+            this.failure = failure;
+            this.timeToFirstOKRequestMs = timeToFirstOKRequestMs;
+            this.rssKb = rssKb;
+            this.cpuToFirstOKMs = cpuToFirstOKMs;
+            this.load = load;
+        }
+
+        public static Result failed(String failure) {
+            return new Result(failure, -1L, -1L, -1L, Optional.empty());
+        }
+
+        public boolean ok() {
+            return failure == null;
+        }
+
+        @Override
+        public String toString() {
+            return ok() ? "time to first OK request " + timeToFirstOKRequestMs + " ms, RSS " + rssKb + " kB, CPU to first OK request "
+                    + cpuToFirstOKMs + " ms" + load.map(l -> ", load " + l).orElse("") : "failed: " + failure;
+        }
+    }
+
+    /**
+     * Something to do with the application after its checks passed, e.g. to measure it under load
+     */
+    @FunctionalInterface
+    public interface Phase {
+        void run(long pid) throws IOException, InterruptedException;
+    }
+
+    private AppRun() {
+    }
+
+    /**
+     * Runs the command, checks all {@link URLContent} of the app, then stops it and waits for its port to close.
+     * It fails when there is no first OK request, a check fails, the load phase has errors or the log reports an OutOfMemoryError.
+     *
+     * @param load phase after the checks, to see the app also survives a while under load, if present
+     */
+    public static Result run(Apps app, File appDir, List<String> command, File runLog, ReadinessProbe readinessProbe,
+                             Optional<LoadGenerator> load) throws IOException, InterruptedException {
+        return run(app, appDir, command, runLog, readinessProbe, load, pid -> {
+        });
+    }
+
+    /**
+     * @param whileUp runs after the checks and the load phase, unless the application failed already
+     */
+    public static Result run(Apps app, File appDir, List<String> command, File runLog, ReadinessProbe readinessProbe,
+                             Optional<LoadGenerator> load, Phase whileUp) throws IOException, InterruptedException {
+        String url = app.urlContent.urlContent[0][0];
+        Process process = null;
+        Result result;
+        try {
+            long spawnNs = System.nanoTime();
+            process = runCommand(command, appDir, runLog);
+            result = serve(app, process, spawnNs, readinessProbe, load);
+            if (result.ok()) {
+                whileUp.run(process.pid());
+            }
+        } finally {
+            if (process != null) {
+                processStopper(process, false);
+            }
+        }
+        if (!waitForTcpClosed("localhost", parsePort(url), 60)) {
+            throw new IOException("Main port " + parsePort(url) + " is still open");
+        }
+        if (result.ok() && Files.readString(runLog.toPath(), UTF_8).contains("OutOfMemoryError")) {
+            result = Result.failed("OutOfMemoryError in " + runLog.getName());
+        }
+        LOGGER.info(String.join(" ", command) + ": " + result);
+        return result;
+    }
+
+    private static Result serve(Apps app, Process process, long spawnNs, ReadinessProbe readinessProbe,
+                                Optional<LoadGenerator> load) throws IOException, InterruptedException {
+        long pid = process.pid();
+        Optional<ProcStat> spawnStat = ProcStat.read(pid);
+        ReadinessProbe.Result firstOK;
+        try {
+            firstOK = readinessProbe.probe(app.urlContent.urlContent[0][0], FIRST_OK_TIMEOUT_S, app.urlContent.urlContent[0][1], spawnNs, process.toHandle());
+        } catch (AssertionError e) {
+            return Result.failed("no first OK request, " + e.getMessage());
+        }
+        Optional<ProcStat> firstOKStat = ProcStat.read(pid);
+        for (String[] urlContent : app.urlContent.urlContent) {
+            try {
+                WebpageTester.testWeb(urlContent[0], 5, urlContent[1], false);
+            } catch (AssertionError e) {
+                return Result.failed("check of " + urlContent[0] + " failed, " + e.getMessage());
+            }
+        }
+        long rssKb = getRSSkB(pid);
+        long cpuToFirstOKMs = spawnStat.isPresent() && firstOKStat.isPresent() ? firstOKStat.get().minus(spawnStat.get()).cpuMs() : -1L;
+        Optional<LoadGenerator.Result> loadResult = Optional.empty();
+        if (load.isPresent()) {
+            loadResult = Optional.of(load.get().run(app.urlContent.urlContent[0][0], app.loadMix.sequence()));
+            if (loadResult.get().errors > 0) {
+                return new Result(loadResult.get().errors + " errors under load", firstOK.timeToFirstOKRequestMs(), rssKb, cpuToFirstOKMs, loadResult);
+            }
+        }
+        if (!process.isAlive()) {
+            return Result.failed("exited with " + process.exitValue());
+        }
+        return new Result(null, firstOK.timeToFirstOKRequestMs(), rssKb, cpuToFirstOKMs, loadResult);
+    }
+}
@@ -14,19 +14,21 @@ import static io.quarkus.ts.startstop.StartStopTest.BASE_DIR;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public enum Apps {
-    JAKARTA_REST_MINIMAL("app-jakarta-rest-minimal", URLContent.JAKARTA_REST_MINIMAL, WhitelistLogLines.JAKARTA_REST_MINIMAL),
-    FULL_MICROPROFILE("app-full-microprofile", URLContent.FULL_MICROPROFILE, WhitelistLogLines.FULL_MICROPROFILE),
-    GENERATED_SKELETON("app-generated-skeleton", URLContent.GENERATED_SKELETON, WhitelistLogLines.GENERATED_SKELETON);
+    JAKARTA_REST_MINIMAL("app-jakarta-rest-minimal", URLContent.JAKARTA_REST_MINIMAL, WhitelistLogLines.JAKARTA_REST_MINIMAL, LoadMix.JAKARTA_REST_MINIMAL),
+    FULL_MICROPROFILE("app-full-microprofile", URLContent.FULL_MICROPROFILE, WhitelistLogLines.FULL_MICROPROFILE, LoadMix.FULL_MICROPROFILE),
+    GENERATED_SKELETON("app-generated-skeleton", URLContent.GENERATED_SKELETON, WhitelistLogLines.GENERATED_SKELETON, LoadMix.GENERATED_SKELETON);
 
     public final String dir;
     public final URLContent urlContent;
     public final WhitelistLogLines whitelistLogLines;
+    public final LoadMix loadMix;
     public final Map<String, Long> thresholdProperties = new HashMap<>();
 
-    Apps(String dir, URLContent urlContent, WhitelistLogLines whitelistLogLines) {
+    Apps(String dir, URLContent urlContent, WhitelistLogLines whitelistLogLines, LoadMix loadMix) {
         this.dir = dir;
         this.urlContent = urlContent;
         this.whitelistLogLines = whitelistLogLines;
+        this.loadMix = loadMix;
         File tpFile = new File(BASE_DIR + File.separator + dir + File.separator + "threshold.properties");
         String appDirNormalized = dir.toUpperCase().replace('-', '_') + "_";
         try (InputStream input = new FileInputStream(tpFile)) {
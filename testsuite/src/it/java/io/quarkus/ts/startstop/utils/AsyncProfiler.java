@@ -46,7 +46,7 @@ public final class AsyncProfiler {
         return Collections.unmodifiableList(runCmd);
     }
 
-    public void stopProfing(File appDir, MvnCmds mvnCmds, Process app, int id) {
+    public void stopProfing(File appDir, MvnCmds mvnCmds, ProcessHandle app, int id) {
         try {
             File profilingOutputDir = getProfilingOutputDir(appDir);
             if (!Files.exists(profilingOutputDir.toPath())) {
@@ -0,0 +1,252 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Samples of previous runs, one file per app and mode, e.g. {@code <start-stop.baseline.dir>/JAKARTA_REST_MINIMAL-JVM.csv}
+ * with a {@code metric,value,value,...} line per metric. Current samples are compared to them with the one-sided
+ * Mann-Whitney U test and Cliff's delta, see {@link Statistics#mannWhitneyGreaterPValue} and {@link Statistics#cliffsDelta}.
+ * <p>
+ * For all the metrics compared, lower is better.
+ */
+public final class Baseline {
+
+    private static final Logger LOGGER = Logger.getLogger(Baseline.class.getName());
+
+    public static final double DEFAULT_ALPHA = 0.01;
+    public static final double DEFAULT_MIN_EFFECT = 0.33;
+    /**
+     * Fewer samples than this on either side cannot give a significant result with the default alpha
+     */
+    public static final int MIN_SAMPLES = 5;
+
+    /**
+     * Columns of {@link LogBuilder.Log} compared by StartStopTest
+     */
+    public static final List<String> START_STOP_METRICS = List.of("timeToFirstOKRequestMs", "startedInMs", "RSSkB", "FDs");
+
+    /**
+     * Values kept of metrics measured once per test, e.g. of the build, see {@link #history}
+     */
+    public static final int HISTORY_SIZE = 10;
+
+    public static final String HEADER_CSV = "metric,baselineN,n,baselineMedian,median,changePercent,pValue,cliffsDelta,regression";
+
+    public static class Comparison {
+        public final String metric;
+        public final int baselineN;
+        public final int n;
+        public final double baselineMedian;
+        public final double median;
+        public final double pValue;
+        public final double cliffsDelta;
+        public final boolean regression;
+
+        public Comparison(String metric, int baselineN, int n, double baselineMedian, double median, double pValue, double cliffsDelta, boolean regression) {
+            this.metric = metric;
+            this.baselineN = baselineN;
+            this.n = n;
+            this.baselineMedian = baselineMedian;
+            this.median = median;
+            this.pValue = pValue;
+            this.cliffsDelta = cliffsDelta;
+            this.regression = regression;
+        }
+
+        public double changePercent() {
+            return baselineMedian == 0d ? 0d : (median - baselineMedian) / baselineMedian * 100d;
+        }
+
+        public String lineCSV() {
+            return String.format(Locale.ROOT, "%s,%d,%d,%.2f,%.2f,%.2f,%.5f,%.3f,%b",
+                    metric, baselineN, n, baselineMedian, median, changePercent(), pValue, cliffsDelta, regression);
+        }
+
+        /**
+         * e.g. "RSSkB median 151234.0 -> 160022.0 (+5.81 %), p=0.00012, Cliff's delta 0.880"
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s median %.1f -> %.1f (%+.2f %%), p=%.5f, Cliff's delta %.3f",
+                    metric, baselineMedian, median, changePercent(), pValue, cliffsDelta);
+        }
+    }
+
+    public final Path dir;
+    public final boolean update;
+    /**
+     * Significance level of the Mann-Whitney U test
+     */
+    public final double alpha;
+    /**
+     * Minimal Cliff's delta of a regression, so that significant but negligible shifts do not fail the test
+     */
+    public final double minEffect;
+
+    private Baseline(Path dir, boolean update, double alpha, double minEffect) {
+        this.dir = dir;
+        this.update = update;
+        this.alpha = alpha;
+        this.minEffect = minEffect;
+    }
+
+    /**
+     * @return baseline from {@code start-stop.baseline.dir}, {@code start-stop.baseline.update},
+     * {@code start-stop.baseline.alpha} and {@code start-stop.baseline.min.effect} system properties,
+     * empty if the directory is not set
+     */
+    public static Optional<Baseline> fromSystemProperties() {
+        String dir = System.getProperty("start-stop.baseline.dir");
+        if (dir == null || dir.isBlank()) {
+            return Optional.empty();
+        }
+        double alpha = Double.parseDouble(System.getProperty("start-stop.baseline.alpha", Double.toString(DEFAULT_ALPHA)));
+        double minEffect = Double.parseDouble(System.getProperty("start-stop.baseline.min.effect", Double.toString(DEFAULT_MIN_EFFECT)));
+        if (alpha <= 0d || alpha >= 1d || minEffect < 0d || minEffect > 1d) {
+            throw new IllegalArgumentException("start-stop.baseline.alpha must be in (0, 1) and start-stop.baseline.min.effect in [0, 1], were: "
+                    + alpha + ", " + minEffect);
+        }
+        return Optional.of(new Baseline(Paths.get(dir), Boolean.getBoolean("start-stop.baseline.update"), alpha, minEffect));
+    }
+
+    public static String key(Apps app, MvnCmds cmd) {
+        return app.name() + "-" + cmd.name();
+    }
+
+    /**
+     * @return values of the given columns of the measurements, one per iteration
+     */
+    public static Map<String, List<Long>> samples(List<LogBuilder.Log> measurements, List<String> metrics) {
+        Map<String, List<Long>> samples = new LinkedHashMap<>();
+        for (String metric : metrics) {
+            List<Long> values = new ArrayList<>(measurements.size());
+            for (LogBuilder.Log log : measurements) {
+                Long value = log.values.get(metric);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            samples.put(metric, values);
+        }
+        return samples;
+    }
+
+    /**
+     * @return samples by metric, empty if there is no baseline for the key yet
+     */
+    public Map<String, List<Long>> load(String key) throws IOException {
+        Map<String, List<Long>> samples = new LinkedHashMap<>();
+        Path file = dir.resolve(key + ".csv");
+        if (Files.notExists(file)) {
+            return samples;
+        }
+        for (String line : Files.readAllLines(file, UTF_8)) {
+            String[] columns = line.trim().split(",");
+            if (columns.length < 2 || columns[0].startsWith("#")) {
+                continue;
+            }
+            List<Long> values = new ArrayList<>(columns.length - 1);
+            for (int i = 1; i < columns.length; i++) {
+                values.add(Long.parseLong(columns[i].trim()));
+            }
+            samples.put(columns[0].trim(), values);
+        }
+        return samples;
+    }
+
+    /**
+     * Replaces the stored samples of the given metrics, the samples of metrics this run did not produce are kept,
+     * e.g. native memory categories of a run without {@code start-stop.nmt} or a build step no longer among the slowest
+     */
+    public void store(String key, Map<String, List<Long>> samples) throws IOException {
+        Files.createDirectories(dir);
+        Map<String, List<Long>> merged = load(key);
+        samples.forEach((metric, values) -> {
+            if (!values.isEmpty()) {
+                merged.put(metric, values);
+            }
+        });
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, List<Long>> e : merged.entrySet()) {
+            if (e.getValue().isEmpty()) {
+                continue;
+            }
+            sb.append(e.getKey());
+            for (Long value : e.getValue()) {
+                sb.append(',').append(value);
+            }
+            sb.append('\n');
+        }
+        Path file = dir.resolve(key + ".csv");
+        Files.write(file, sb.toString().getBytes(UTF_8));
+        LOGGER.info("Baseline " + file + " updated");
+    }
+
+    /**
+     * @return comparison of every metric present in both, metrics with fewer than {@link #MIN_SAMPLES} on either side are skipped
+     */
+    public List<Comparison> compare(Map<String, List<Long>> baseline, Map<String, List<Long>> current) {
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Map.Entry<String, List<Long>> e : current.entrySet()) {
+            List<Long> before = baseline.get(e.getKey());
+            List<Long> now = e.getValue();
+            if (before == null || before.size() < MIN_SAMPLES || now.size() < MIN_SAMPLES) {
+                LOGGER.info("Not enough samples to compare " + e.getKey() + " with the baseline");
+                continue;
+            }
+            double pValue = Statistics.mannWhitneyGreaterPValue(before, now);
+            double delta = Statistics.cliffsDelta(before, now);
+            comparisons.add(new Comparison(e.getKey(), before.size(), now.size(),
+                    Statistics.of(e.getKey(), before, Statistics.Estimator.MEDIAN).median,
+                    Statistics.of(e.getKey(), now, Statistics.Estimator.MEDIAN).median,
+                    pValue, delta, pValue < alpha && delta >= minEffect));
+        }
+        return comparisons;
+    }
+
+    /**
+     * A single value, e.g. of the native build, cannot be tested for significance, its change against the median
+     * of the baseline is only reported and never a regression
+     *
+     * @return comparison of every metric present in both
+     */
+    public List<Comparison> compareSingle(Map<String, List<Long>> baseline, Map<String, Long> current) {
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Map.Entry<String, Long> e : current.entrySet()) {
+            List<Long> before = baseline.get(e.getKey());
+            if (before == null || before.isEmpty()) {
+                continue;
+            }
+            comparisons.add(new Comparison(e.getKey(), before.size(), 1,
+                    Statistics.of(e.getKey(), before, Statistics.Estimator.MEDIAN).median, e.getValue(),
+                    Double.NaN, Double.NaN, false));
+        }
+        return comparisons;
+    }
+
+    /**
+     * @return the stored values with the current one appended, at most {@link #HISTORY_SIZE} most recent ones
+     */
+    public static Map<String, List<Long>> history(Map<String, List<Long>> baseline, Map<String, Long> current) {
+        Map<String, List<Long>> history = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> e : current.entrySet()) {
+            List<Long> values = new ArrayList<>(baseline.getOrDefault(e.getKey(), List.of()));
+            values.add(e.getValue());
+            history.put(e.getKey(), new ArrayList<>(values.subList(Math.max(0, values.size() - HISTORY_SIZE), values.size())));
+        }
+        return history;
+    }
+}
@@ -0,0 +1,230 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.jboss.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.quarkus.ts.startstop.utils.Commands.getBaseDir;
+import static io.quarkus.ts.startstop.utils.Commands.getQuarkusGroupId;
+import static io.quarkus.ts.startstop.utils.Commands.getQuarkusVersion;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Local cache of built applications, keyed by a hash of everything the build depends on: the sources and POMs of the app,
+ * the path it is built in, Quarkus version and group id, the build command, {@code quarkus.*} system properties,
+ * the JDK and GraalVM used and the platform. A hit restores the artifacts and the build log of the original build
+ * into the app, so that the test reports the build time measured back then.
+ * <p>
+ * Restored artifacts are only good for measuring the runtime, tests measuring the build should force a miss,
+ * see {@code start-stop.build-cache.force-miss} system property.
+ */
+public final class BuildCache {
+
+    private static final Logger LOGGER = Logger.getLogger(BuildCache.class.getName());
+
+    public static final Path DEFAULT_DIR = Paths.get(System.getProperty("user.home"), ".cache", "quarkus-startstop", "builds");
+    public static final String ENTRY_PROPERTIES = "build.properties";
+    public static final String ENTRY_LOG = "build.log";
+    public static final String BUILD_TIME_MS = "buildTimeMs";
+    /**
+     * Directories of the app which are not inputs of the build
+     */
+    private static final List<String> EXCLUDED_DIRS = List.of("target", "logs", "special-chars-logs");
+
+    public static class Entry {
+        public final String key;
+        public final Path dir;
+        /**
+         * As measured by the build that stored the entry
+         */
+        public final long buildTimeMs;
+        /**
+         * Other measurements of the build that stored the entry, e.g. {@link MavenGoals#columns()}
+         */
+        public final Map<String, Long> metrics;
+
+        public Entry(String key, Path dir, long buildTimeMs, Map<String, Long> metrics) {
+            this.key = key;
+            this.dir = dir;
+            this.buildTimeMs = buildTimeMs;
+            this.metrics = metrics;
+        }
+    }
+
+    public final Path dir;
+    /**
+     * Build anyway and replace the entry
+     */
+    public final boolean forceMiss;
+
+    private BuildCache(Path dir, boolean forceMiss) {
+        this.dir = dir;
+        this.forceMiss = forceMiss;
+    }
+
+    /**
+     * @return cache if enabled by {@code start-stop.build-cache} system property, in {@code start-stop.build-cache.dir},
+     * {@link #DEFAULT_DIR} by default; empty for a SNAPSHOT Quarkus version, see {@link #key(File, List)}
+     */
+    public static Optional<BuildCache> fromSystemProperties() {
+        if (!Boolean.getBoolean("start-stop.build-cache")) {
+            return Optional.empty();
+        }
+        if (getQuarkusVersion().endsWith("-SNAPSHOT")) {
+            LOGGER.warn("Build cache disabled, Quarkus " + getQuarkusVersion() + " might have been rebuilt since an entry was stored");
+            return Optional.empty();
+        }
+        String dir = System.getProperty("start-stop.build-cache.dir");
+        return Optional.of(new BuildCache(dir == null || dir.isBlank() ? DEFAULT_DIR : Paths.get(dir),
+                Boolean.getBoolean("start-stop.build-cache.force-miss")));
+    }
+
+    /**
+     * @return paths relative to the app dir, which the tests of the mode need from the build
+     */
+    public static List<String> artifacts(MvnCmds mvnCmds) {
+        String target = "target" + File.separator;
+        if (mvnCmds == MvnCmds.NATIVE) {
+            return List.of(mvnCmds.mvnCmds[1][0].replaceFirst("^\\./", ""),
+                    target + "quarkus-native-image-source-jar" + File.separator + "quarkus-runner" + NativeBuildReport.BUILD_OUTPUT_SUFFIX,
+                    target + BuildStepMetrics.BUILD_METRICS_JSON);
+        }
+        return List.of(target + "quarkus-app", target + BuildStepMetrics.BUILD_METRICS_JSON);
+    }
+
+    /**
+     * The resolved dependencies are not hashed, only their versions in the POMs, so a SNAPSHOT version is never cached
+     */
+    public String key(File appDir, List<String> buildCommand) throws IOException {
+        MessageDigest digest = sha256();
+        Map<String, String> inputs = new TreeMap<>();
+        inputs.put("appDir", appDir.getAbsolutePath());
+        inputs.put("quarkus.version", getQuarkusVersion());
+        inputs.put("quarkus.platform.group-id", getQuarkusGroupId());
+        inputs.put("command", String.join(" ", buildCommand));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("quarkus."))
+                .forEach(name -> inputs.put(name, System.getProperty(name)));
+        for (String name : new String[]{"java.home", "java.version", "os.name", "os.arch"}) {
+            inputs.put(name, System.getProperty(name));
+        }
+        for (String name : new String[]{"JAVA_HOME", "GRAALVM_HOME"}) {
+            inputs.put(name, String.valueOf(System.getenv(name)));
+        }
+        inputs.forEach((name, value) -> digest.update((name + "=" + value + "\n").getBytes(UTF_8)));
+        // The parent POM of all the apps
+        update(digest, Paths.get(getBaseDir(), "pom.xml"), "parent/pom.xml");
+        Path app = appDir.toPath();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(app)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !EXCLUDED_DIRS.contains(app.relativize(file).getName(0).toString()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            update(digest, file, app.relativize(file).toString().replace(File.separatorChar, '/'));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Path file, String name) throws IOException {
+        if (Files.notExists(file)) {
+            return;
+        }
+        digest.update((name + "\n").getBytes(UTF_8));
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies the artifacts of the entry into the app dir and the log of the original build to the build log
+     *
+     * @return the entry, empty on a miss, or if forced to miss
+     */
+    public Optional<Entry> restore(String key, File appDir, File buildLog) throws IOException {
+        Path entry = dir.resolve(key);
+        Path properties = entry.resolve(ENTRY_PROPERTIES);
+        if (forceMiss || Files.notExists(properties)) {
+            LOGGER.info("Build cache miss " + key + (forceMiss ? ", forced" : ""));
+            return Optional.empty();
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(properties)) {
+            props.load(in);
+        }
+        Path artifacts = entry.resolve("artifacts");
+        if (Files.exists(artifacts)) {
+            FileUtils.copyDirectory(artifacts.toFile(), appDir);
+        }
+        Files.copy(entry.resolve(ENTRY_LOG), buildLog.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        for (String name : props.stringPropertyNames()) {
+            if (!name.equals(BUILD_TIME_MS)) {
+                metrics.put(name, Long.parseLong(props.getProperty(name)));
+            }
+        }
+        long buildTimeMs = Long.parseLong(props.getProperty(BUILD_TIME_MS));
+        LOGGER.info("Build cache hit " + key + ", originally built in " + buildTimeMs + " ms");
+        return Optional.of(new Entry(key, entry, buildTimeMs, new TreeMap<>(metrics)));
+    }
+
+    /**
+     * Replaces the entry with the artifacts of the app that exist, the build log and the measurements of the build
+     */
+    public void store(String key, File appDir, List<String> artifacts, File buildLog, long buildTimeMs, Map<String, Long> metrics) throws IOException {
+        Path entry = dir.resolve(key);
+        if (Files.exists(entry)) {
+            FileUtils.deleteDirectory(entry.toFile());
+        }
+        Path stored = entry.resolve("artifacts");
+        Files.createDirectories(stored);
+        for (String artifact : artifacts) {
+            File source = new File(appDir, artifact);
+            if (source.isDirectory()) {
+                FileUtils.copyDirectory(source, stored.resolve(artifact).toFile());
+            } else if (source.isFile()) {
+                // Keeps the executable bit of native binaries
+                FileUtils.copyFile(source, stored.resolve(artifact).toFile());
+            }
+        }
+        Files.copy(buildLog.toPath(), entry.resolve(ENTRY_LOG));
+        Properties props = new Properties();
+        props.setProperty(BUILD_TIME_MS, Long.toString(buildTimeMs));
+        metrics.forEach((name, value) -> props.setProperty(name, Long.toString(value)));
+        // Written last, an entry without it is incomplete and misses
+        try (OutputStream out = Files.newOutputStream(entry.resolve(ENTRY_PROPERTIES))) {
+            props.store(out, String.join(" ", artifacts));
+        }
+        LOGGER.info("Build cache " + key + " stored in " + entry);
+    }
+}
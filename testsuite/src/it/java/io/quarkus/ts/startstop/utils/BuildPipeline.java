@@ -0,0 +1,346 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.jboss.logging.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static io.quarkus.ts.startstop.utils.Commands.cleanDirOrFile;
+import static io.quarkus.ts.startstop.utils.Commands.getBaseDir;
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static io.quarkus.ts.startstop.utils.RunCommandAugmentor.setCommandPrefix;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Builds the apps of the upcoming tests ahead, while the current one is measured. Every app and mode is built one after
+ * another in its own copy of the app directory, with Maven and the native image builder pinned by taskset to CPUs which
+ * the measured application does not get until the last build finished, see {@link ReadinessProbe#getAppCpus()}.
+ * A test then takes the artifacts and the build log of its build over into the app directory instead of building there.
+ * <p>
+ * A build ahead shares the host with the measurement and has fewer CPUs than a build of its own,
+ * so its build time and Maven phases are longer than they would be otherwise.
+ */
+public final class BuildPipeline implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(BuildPipeline.class.getName());
+
+    /**
+     * Build CPUs of the pipeline while it still has builds to run, the application must stay off them
+     */
+    private static volatile Set<Integer> buildCpus = Set.of();
+    /**
+     * CPUs the application would have without the pipeline
+     */
+    private static volatile int appProcessorCount = 0;
+
+    public static class Combo {
+        public final Apps app;
+        public final MvnCmds mvnCmds;
+
+        public Combo(Apps app, MvnCmds mvnCmds) {
+            this.app = app;
+            this.mvnCmds = mvnCmds;
+        }
+
+        /**
+         * @param combo e.g. JAKARTA_REST_MINIMAL:NATIVE
+         */
+        static Combo parse(String combo) {
+            String[] parts = combo.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected app:mode, e.g. JAKARTA_REST_MINIMAL:JVM, got " + combo);
+            }
+            return new Combo(Apps.valueOf(parts[0].trim()), MvnCmds.valueOf(parts[1].trim()));
+        }
+
+        @Override
+        public String toString() {
+            return app + ":" + mvnCmds;
+        }
+    }
+
+    public static class Build {
+        /**
+         * Copy of the app directory the build ran in
+         */
+        public final File dir;
+        public final File buildLog;
+        public final List<String> command;
+        public final long buildTimeMs;
+        public final MavenGoals mavenGoals;
+        /**
+         * Maven reported success and the artifact the test runs exists
+         */
+        public final boolean succeeded;
+
+        public Build(File dir, File buildLog, List<String> command, long buildTimeMs, MavenGoals mavenGoals, boolean succeeded) {
+            this.dir = dir;
+            this.buildLog = buildLog;
+            this.command = command;
+            this.buildTimeMs = buildTimeMs;
+            this.mavenGoals = mavenGoals;
+            this.succeeded = succeeded;
+        }
+    }
+
+    public final List<Combo> plan;
+    public final TreeSet<Integer> cpus;
+    private final int processorCount;
+    private final File baseDir;
+    private final ExecutorService executor;
+    private final Map<String, Future<Build>> builds = new LinkedHashMap<>();
+    private final Map<String, List<String>> commands = new LinkedHashMap<>();
+    private final Set<String> started = new HashSet<>();
+    private int pending;
+
+    private BuildPipeline(List<Combo> plan, TreeSet<Integer> cpus, int processorCount) {
+        this.plan = plan;
+        this.cpus = cpus;
+        this.processorCount = processorCount;
+        this.baseDir = new File(getBaseDir(), "target" + File.separator + "pipeline");
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "build-pipeline");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return pipeline building the app:mode combinations listed in {@code start-stop.pipeline} system property,
+     * e.g. {@code JAKARTA_REST_MINIMAL:NATIVE,FULL_MICROPROFILE:NATIVE}, on the CPUs from {@code start-stop.pipeline.cpus},
+     * by default on the upper half of the CPUs available; empty if not set or not supported
+     */
+    public static Optional<BuildPipeline> fromSystemProperties() {
+        String planProperty = System.getProperty("start-stop.pipeline");
+        if (planProperty == null || planProperty.isBlank()) {
+            return Optional.empty();
+        }
+        if (planProperty.equals("true")) {
+            LOGGER.warn("start-stop.pipeline lists the app:mode combinations to build ahead, e.g. JAKARTA_REST_MINIMAL:JVM, nothing is built ahead");
+            return Optional.empty();
+        }
+        TreeSet<Integer> allowed = isThisLinux ? ReadinessProbe.getAllowedCpus() : new TreeSet<>();
+        Integer probeCpu = Integer.getInteger("start-stop.probe.cpu");
+        if (probeCpu != null) {
+            allowed.remove(probeCpu);
+        }
+        String cpusProperty = System.getProperty("start-stop.pipeline.cpus");
+        TreeSet<Integer> cpus;
+        if (cpusProperty == null || cpusProperty.isBlank()) {
+            List<Integer> allowedList = new ArrayList<>(allowed);
+            cpus = new TreeSet<>(allowedList.subList(allowedList.size() / 2, allowedList.size()));
+        } else {
+            cpus = ReadinessProbe.parseCpuList(cpusProperty);
+            cpus.retainAll(allowed);
+        }
+        if (allowed.size() < 2 || cpus.isEmpty() || cpus.size() == allowed.size()) {
+            LOGGER.warn("start-stop.pipeline is supported only on Linux with at least 1 CPU to build on and 1 for the application left, "
+                    + "CPUs available " + allowed + ", nothing is built ahead");
+            return Optional.empty();
+        }
+        List<Combo> plan = new ArrayList<>();
+        for (String combo : planProperty.split(",")) {
+            if (!combo.isBlank()) {
+                plan.add(Combo.parse(combo));
+            }
+        }
+        return Optional.of(new BuildPipeline(Collections.unmodifiableList(plan), cpus, allowed.size()));
+    }
+
+    /**
+     * @return CPUs the pipeline builds on, empty if there is none or its last build finished
+     */
+    public static Set<Integer> getBuildCpus() {
+        return buildCpus;
+    }
+
+    /**
+     * The application gets fewer CPUs while building ahead, this keeps the JVM or the native image sizing its GC and thread pools
+     * as it would without the pipeline, see {@link RunCommandAugmentor#setMemoryLimits}
+     *
+     * @return {@code -XX:ActiveProcessorCount} with the CPUs available without the pipeline, empty if nothing is being built
+     */
+    public static List<String> getAppRunOptions() {
+        return buildCpus.isEmpty() ? List.of() : List.of("-XX:ActiveProcessorCount=" + appProcessorCount);
+    }
+
+    /**
+     * Queues the builds of the plan in its order
+     *
+     * @param buildCommand the command a test builds the mode with, it must be the same as the test would run
+     */
+    public synchronized BuildPipeline start(Function<MvnCmds, List<String>> buildCommand) {
+        appProcessorCount = processorCount;
+        buildCpus = Collections.unmodifiableSet(cpus);
+        pending = plan.size();
+        LOGGER.info("Building " + plan + " ahead on CPUs " + cpus);
+        for (Combo combo : plan) {
+            List<String> command = buildCommand.apply(combo.mvnCmds);
+            commands.put(combo.toString(), command);
+            builds.put(combo.toString(), executor.submit(() -> build(combo, command)));
+        }
+        return this;
+    }
+
+    private Build build(Combo combo, List<String> command) throws IOException {
+        synchronized (this) {
+            // Taken before it started, the test builds it by itself
+            if (!builds.containsKey(combo.toString())) {
+                return null;
+            }
+            started.add(combo.toString());
+        }
+        try {
+            return buildCopy(combo, command);
+        } finally {
+            done();
+        }
+    }
+
+    /**
+     * Gives the CPUs back to the application once the last build of the plan ran or was taken over
+     */
+    private synchronized void done() {
+        if (--pending == 0) {
+            buildCpus = Set.of();
+            LOGGER.info("Nothing left to build ahead, CPUs " + cpus + " released");
+        }
+    }
+
+    private Build buildCopy(Combo combo, List<String> command) throws IOException {
+        File appBaseDir = new File(getBaseDir(), combo.app.dir);
+        File copyDir = new File(baseDir, combo.mvnCmds.name().toLowerCase());
+        File appDir = new File(copyDir, combo.app.dir);
+        if (appDir.exists()) {
+            cleanDirOrFile(appDir.getAbsolutePath());
+        }
+        Files.createDirectories(copyDir.toPath());
+        FileUtils.copyDirectory(appBaseDir, appDir, file -> !file.getParentFile().equals(appBaseDir)
+                || !(file.getName().equals("target") || file.getName().equals("logs")));
+        // The parent POM is no longer right above the copy
+        String parentPath = appDir.toPath().relativize(Paths.get(getBaseDir())).toString().replace(File.separatorChar, '/');
+        Path pom = appDir.toPath().resolve("pom.xml");
+        Files.writeString(pom, Files.readString(pom, UTF_8)
+                .replace("<relativePath>..</relativePath>", "<relativePath>" + parentPath + "</relativePath>"), UTF_8);
+        Files.createDirectories(appDir.toPath().resolve("logs"));
+        File buildLog = new File(appDir, "logs" + File.separator + combo.mvnCmds.name().toLowerCase() + "-build.log");
+
+        List<String> pinnedCommand = setCommandPrefix(command,
+                List.of("taskset", "-c", cpus.stream().map(String::valueOf).collect(Collectors.joining(","))));
+        LOGGER.info("Building " + combo + " ahead in " + appDir);
+        MavenGoals mavenGoals = MavenGoals.start();
+        long buildStarts = System.currentTimeMillis();
+        new Commands.ProcessRunner(appDir, new LogStream(buildLog).on(LogStream.Event.LINE, mavenGoals), pinnedCommand, 20).run();
+        long buildEnds = System.currentTimeMillis();
+        // The runner does not tell the exit status of Maven
+        boolean succeeded = buildLog.exists()
+                && Files.readAllLines(buildLog.toPath(), UTF_8).stream().anyMatch(line -> line.contains("BUILD SUCCESS"))
+                && new File(appDir, BuildCache.artifacts(combo.mvnCmds).get(0)).exists();
+        LOGGER.info((succeeded ? "Built " : "Failed to build ") + combo + " ahead in " + (buildEnds - buildStarts) + " ms");
+        return new Build(appDir, buildLog, command, buildEnds - buildStarts, mavenGoals, succeeded);
+    }
+
+    /**
+     * Waits for the build of the app and mode and copies its artifacts and build log into the app directory
+     *
+     * @return the build, empty if it is not planned, has not started yet, was made with another command, or failed;
+     * the test should build by itself then
+     */
+    public Optional<Build> take(Apps app, MvnCmds mvnCmds, List<String> buildCommand, File appDir, File buildLog) throws IOException, InterruptedException {
+        Combo combo = new Combo(app, mvnCmds);
+        Future<Build> future;
+        synchronized (this) {
+            future = builds.remove(combo.toString());
+            if (future == null) {
+                return Optional.empty();
+            }
+            if (!started.contains(combo.toString())) {
+                // It will not run, a started one is done when it stops
+                done();
+            }
+            if (!buildCommand.equals(commands.get(combo.toString()))) {
+                LOGGER.warn("Build of " + combo + " ahead ran " + commands.get(combo.toString()) + ", not " + buildCommand);
+                future.cancel(true);
+                return Optional.empty();
+            }
+            if (!started.contains(combo.toString())) {
+                LOGGER.info("Build of " + combo + " ahead has not started yet, building in place");
+                future.cancel(false);
+                return Optional.empty();
+            }
+        }
+        Build build;
+        try {
+            build = future.get(30, TimeUnit.MINUTES);
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.warn("Build of " + combo + " ahead failed, building in place", e);
+            future.cancel(true);
+            return Optional.empty();
+        }
+        if (!build.succeeded) {
+            LOGGER.warn("Build of " + combo + " ahead failed, building in place");
+            cleanDirOrFile(build.dir.getAbsolutePath());
+            return Optional.empty();
+        }
+        for (String artifact : BuildCache.artifacts(mvnCmds)) {
+            File source = new File(build.dir, artifact);
+            if (source.isDirectory()) {
+                FileUtils.copyDirectory(source, new File(appDir, artifact));
+            } else if (source.isFile()) {
+                FileUtils.copyFile(source, new File(appDir, artifact));
+            }
+        }
+        Files.copy(build.buildLog.toPath(), buildLog.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        cleanDirOrFile(build.dir.getAbsolutePath());
+        return Optional.of(build);
+    }
+
+    /**
+     * Cancels the builds not taken, kills the running one and removes the copies
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            builds.values().forEach(future -> future.cancel(true));
+            builds.clear();
+            executor.shutdownNow();
+        }
+        // Without the lock, the build being stopped needs it to finish
+        boolean terminated = false;
+        try {
+            terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!terminated) {
+            LOGGER.warn("Build ahead did not stop in time, " + baseDir + " is left in place");
+        } else if (baseDir.exists()) {
+            cleanDirOrFile(baseDir.getAbsolutePath());
+        }
+        buildCpus = Set.of();
+        appProcessorCount = 0;
+    }
+}
@@ -0,0 +1,228 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Which Quarkus build steps and which recorded startup steps took the longest, and of which extension they are.
+ * The build steps come from {@code target/build-metrics.json} Quarkus writes with {@code quarkus.debug.dump-build-metrics},
+ * the startup steps from the lines the application prints with {@code quarkus.debug.print-startup-times}, e.g.
+ * {@code 2024-05-02 10:11:12,345 Build step ArcProcessor.initializeContainer completed in: 12ms}.
+ * Timing the startup steps costs a little of the startup itself, so it is opt-in.
+ * <p>
+ * Build steps run in parallel, so their times add up to more than the build took.
+ */
+public final class BuildStepMetrics {
+
+    public static final String BUILD_METRICS_JSON = "build-metrics.json";
+    public static final String BUILD_STEP_PREFIX = "buildStep:";
+    public static final String STARTUP_STEP_PREFIX = "startupStep:";
+    public static final String UNKNOWN_EXTENSION = "?";
+    public static final int DEFAULT_TOP = 10;
+
+    private static final Pattern startupStepPattern = Pattern.compile("Build step (\\S+) completed in: (\\d+)ms");
+
+    public static class Step {
+        /**
+         * e.g. io.quarkus.arc.deployment.ArcProcessor#initializeContainer for a build step,
+         * ArcProcessor.initializeContainer for a startup step
+         */
+        public final String name;
+        /**
+         * e.g. arc or resteasy-reactive-server, {@link #UNKNOWN_EXTENSION} if the step cannot be attributed
+         */
+        public final String extension;
+        public final long ms;
+
+        public Step(String name, String extension, long ms) {
+            this.name = name;
+            this.extension = extension;
+            this.ms = ms;
+        }
+    }
+
+    /**
+     * How many of the slowest steps are ranked and compared to the baseline
+     */
+    public final int top;
+
+    private BuildStepMetrics(int top) {
+        this.top = top;
+    }
+
+    /**
+     * @return metrics if enabled by {@code start-stop.build-metrics} system property, ranking as many steps as
+     * {@code start-stop.build-metrics.top} says
+     */
+    public static Optional<BuildStepMetrics> create() {
+        if (!Boolean.getBoolean("start-stop.build-metrics")) {
+            return Optional.empty();
+        }
+        return Optional.of(new BuildStepMetrics(Integer.getInteger("start-stop.build-metrics.top", DEFAULT_TOP)));
+    }
+
+    /**
+     * For the Maven command, which passes them on to the dev mode application too
+     */
+    public List<String> getBuildOptions() {
+        return List.of("-Dquarkus.debug.dump-build-metrics=true", "-Dquarkus.debug.print-startup-times=true");
+    }
+
+    /**
+     * For the run command of both JVM and native mode, see {@link RunCommandAugmentor#setMemoryLimits}
+     */
+    public List<String> getRunOptions() {
+        return List.of("-Dquarkus.debug.print-startup-times=true");
+    }
+
+    public static Optional<Path> findBuildMetrics(File appDir) {
+        Path json = appDir.toPath().resolve("target").resolve(BUILD_METRICS_JSON);
+        return Files.exists(json) ? Optional.of(json) : Optional.empty();
+    }
+
+    /**
+     * @return build steps, the slowest first
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Step> readBuildSteps(Path json) throws IOException {
+        // JSON is YAML too
+        Map<String, Object> root = new Yaml().load(Files.readString(json, UTF_8));
+        List<Step> steps = new ArrayList<>();
+        for (Map<String, Object> record : (List<Map<String, Object>>) root.getOrDefault("records", List.of())) {
+            String stepId = String.valueOf(record.get("stepId"));
+            steps.add(new Step(stepId, extension(stepId), ((Number) record.get("duration")).longValue()));
+        }
+        steps.sort(Comparator.comparingLong((Step s) -> s.ms).reversed());
+        return steps;
+    }
+
+    /**
+     * A restart in dev mode times the steps again, so only the lines until the first start are read
+     *
+     * @param buildSteps to attribute the startup steps to extensions by, might be empty
+     * @return startup steps, the slowest first
+     */
+    public static List<Step> parseStartupSteps(List<String> lines, List<Step> buildSteps) {
+        Map<String, String> extensions = new HashMap<>();
+        for (Step step : buildSteps) {
+            // io.quarkus.arc.deployment.ArcProcessor#initializeContainer to ArcProcessor.initializeContainer
+            String simpleName = step.name.substring(step.name.lastIndexOf('.', step.name.indexOf('#')) + 1).replace('#', '.');
+            extensions.putIfAbsent(simpleName, step.extension);
+        }
+        List<Step> steps = new ArrayList<>();
+        for (String line : lines) {
+            if (Logs.parseStartedIn(line) != -1f) {
+                break;
+            }
+            Matcher m = startupStepPattern.matcher(line);
+            if (m.find()) {
+                steps.add(new Step(m.group(1), extensions.getOrDefault(m.group(1), UNKNOWN_EXTENSION), Long.parseLong(m.group(2))));
+            }
+        }
+        steps.sort(Comparator.comparingLong((Step s) -> s.ms).reversed());
+        return steps;
+    }
+
+    static boolean isStartupStepLine(String line) {
+        return startupStepPattern.matcher(line).find();
+    }
+
+    /**
+     * @param samples milliseconds of the steps by name, one per run
+     * @return steps with the median of their samples, the slowest first
+     */
+    public static List<Step> medians(Map<String, List<Long>> samples, Map<String, String> extensions) {
+        List<Step> steps = new ArrayList<>();
+        samples.forEach((name, ms) -> steps.add(new Step(name, extensions.getOrDefault(name, UNKNOWN_EXTENSION),
+                Math.round(Statistics.of(name, ms, Statistics.Estimator.MEDIAN).median))));
+        steps.sort(Comparator.comparingLong((Step s) -> s.ms).reversed());
+        return steps;
+    }
+
+    /**
+     * e.g. io.quarkus.resteasy.reactive.server.deployment.ResteasyReactiveProcessor#setupEndpoints to resteasy-reactive-server,
+     * steps of the core in io.quarkus.deployment to core
+     */
+    static String extension(String stepId) {
+        int method = stepId.indexOf('#');
+        String className = method == -1 ? stepId : stepId.substring(0, method);
+        int simpleName = className.lastIndexOf('.');
+        if (simpleName == -1) {
+            return UNKNOWN_EXTENSION;
+        }
+        String pkg = className.substring(0, simpleName);
+        int deployment = pkg.indexOf(".deployment");
+        String base = deployment == -1 ? pkg : pkg.substring(0, deployment);
+        if (base.equals("io.quarkus")) {
+            return "core";
+        }
+        if (base.startsWith("io.quarkus.") || base.startsWith("io.quarkiverse.")) {
+            base = base.substring(base.indexOf('.', 3) + 1);
+        }
+        return base.replace('.', '-');
+    }
+
+    /**
+     * @return milliseconds by extension, the slowest first
+     */
+    public static Map<String, Long> byExtension(List<Step> steps) {
+        Map<String, Long> sums = new HashMap<>();
+        for (Step step : steps) {
+            sums.merge(step.extension, step.ms, Long::sum);
+        }
+        return sums.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * @return the slowest steps by name with the prefix, e.g. {@code buildStep:io.quarkus.arc.deployment.ArcProcessor#generateResources},
+     * as metrics of the {@link Baseline}
+     */
+    public Map<String, Long> columns(List<Step> steps, String prefix) {
+        Map<String, Long> columns = new LinkedHashMap<>();
+        for (Step step : steps.subList(0, Math.min(top, steps.size()))) {
+            columns.merge(prefix + step.name, step.ms, Long::sum);
+        }
+        return columns;
+    }
+
+    public static void write(List<Step> steps, Path file) throws IOException {
+        StringBuilder sb = new StringBuilder("rank,step,extension,ms\n");
+        for (int i = 0; i < steps.size(); i++) {
+            sb.append(i + 1).append(',').append(steps.get(i).name).append(',').append(steps.get(i).extension).append(',')
+                    .append(steps.get(i).ms).append('\n');
+        }
+        Files.write(file, sb.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * @return tables of the slowest steps and of the slowest extensions
+     */
+    public String toMarkdown(List<Step> steps) {
+        StringBuilder sb = new StringBuilder("| Step | Extension | ms |\n| --- | --- | ---: |\n");
+        for (Step step : steps.subList(0, Math.min(top, steps.size()))) {
+            sb.append("| ").append(step.name).append(" | ").append(step.extension).append(" | ").append(step.ms).append(" |\n");
+        }
+        sb.append("\n| Extension | ms |\n| --- | ---: |\n");
+        byExtension(steps).entrySet().stream().limit(top)
+                .forEach(e -> sb.append("| ").append(e.getKey()).append(" | ").append(e.getValue()).append(" |\n"));
+        return sb.toString();
+    }
+}
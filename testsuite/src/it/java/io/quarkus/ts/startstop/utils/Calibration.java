@@ -0,0 +1,287 @@
+package io.quarkus.ts.startstop.utils;
+
+import com.sun.nio.file.ExtendedOpenOption;
+import org.jboss.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisWindows;
+
+/**
+ * Measures how fast the host is compared to the one the thresholds were tuned on, so that time thresholds
+ * can be scaled instead of being hand-tuned for every runner. Measured once per JVM, before the first test needs it:
+ * <ul>
+ *     <li>process spawn overhead, i.e. start and exit of a no-op command</li>
+ *     <li>startup of {@code java -version}</li>
+ *     <li>single thread CPU speed, a fixed integer loop</li>
+ *     <li>read throughput of the application artifacts, per application, see {@link #readMBps(Path)}</li>
+ * </ul>
+ * Each measured value is divided by its reference from {@code start-stop.calibration.reference.*} system properties,
+ * i.e. the same measured on the host named by {@code start-stop.calibration.reference.host}, and the time factor is the geometric mean
+ * of these ratios. There are no default references, without the host the factor is 1. Memory thresholds are not scaled.
+ */
+public final class Calibration {
+
+    private static final Logger LOGGER = Logger.getLogger(Calibration.class.getName());
+
+    /**
+     * The factor is kept in these bounds, a broken measurement must not disable the thresholds; a faster host than the reference
+     * one does not tighten them, they were not tuned with that much margin
+     */
+    public static final double MIN_FACTOR = 1.0;
+    public static final double MAX_FACTOR = 4.0;
+
+    private static final int SPAWN_RUNS = 11;
+    private static final int JAVA_VERSION_RUNS = 5;
+    private static final int CPU_RUNS = 5;
+    private static final long CPU_LOOP_ITERATIONS = 100_000_000L;
+
+    private static Calibration instance;
+    private static volatile long cpuLoopSink;
+
+    public final double spawnMs;
+    public final double javaVersionMs;
+    public final double cpuMs;
+    /**
+     * Host the references were measured on, empty if there are none to scale by
+     */
+    public final Optional<String> referenceHost;
+    private final OptionalDouble referenceSpawnMs;
+    private final OptionalDouble referenceJavaVersionMs;
+    private final OptionalDouble referenceCpuMs;
+    private final OptionalDouble referenceReadMBps;
+
+    private Calibration(double spawnMs, double javaVersionMs, double cpuMs) {
+        this.spawnMs = spawnMs;
+        this.javaVersionMs = javaVersionMs;
+        this.cpuMs = cpuMs;
+        String host = System.getProperty("start-stop.calibration.reference.host");
+        this.referenceHost = host == null || host.isBlank() ? Optional.empty() : Optional.of(host.trim());
+        this.referenceSpawnMs = getReference("spawn.ms");
+        this.referenceJavaVersionMs = getReference("java.version.ms");
+        this.referenceCpuMs = getReference("cpu.ms");
+        this.referenceReadMBps = getReference("read.mbps");
+        if (referenceHost.isEmpty()) {
+            LOGGER.warn("No start-stop.calibration.reference.host, the host is measured but time thresholds are not scaled");
+        }
+    }
+
+    /**
+     * @return calibration of this host if enabled by {@code start-stop.calibration} system property, measured on the first call
+     */
+    public static synchronized Optional<Calibration> get() {
+        if (!Boolean.getBoolean("start-stop.calibration")) {
+            return Optional.empty();
+        }
+        if (instance == null) {
+            try {
+                LOGGER.info("Calibrating the host...");
+                instance = new Calibration(measureSpawnMs(), measureJavaVersionMs(), measureCpuMs());
+                LOGGER.info(instance);
+            } catch (IOException e) {
+                throw new RuntimeException("Host calibration failed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Host calibration interrupted", e);
+            }
+        }
+        return Optional.of(instance);
+    }
+
+    /**
+     * Reads the storage, not the page cache the artifacts are in right after the build: with O_DIRECT, or where the filesystem
+     * does not support it after dropping the caches, see {@link Commands#dropCaches()}. Dropping them is host-wide, so it is done
+     * only in the cold start mode, {@code start-stop.cold-start}, which drops them before every start anyway.
+     *
+     * @param artifacts a file, e.g. native executable, or a directory, e.g. target/quarkus-app, to read all regular files of
+     * @return read throughput in MB/s, empty if the page cache can be neither bypassed nor dropped
+     */
+    public OptionalDouble readMBps(Path artifacts) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(artifacts)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        try {
+            return OptionalDouble.of(readMBps(files, true));
+        } catch (IOException | UnsupportedOperationException e) {
+            if (!Boolean.getBoolean("start-stop.cold-start")) {
+                LOGGER.warn("Artifacts read throughput not measured, unable to read " + artifacts + " with O_DIRECT: " + e.getMessage());
+                return OptionalDouble.empty();
+            }
+            LOGGER.info("Unable to read " + artifacts + " with O_DIRECT, dropping caches instead: " + e.getMessage());
+        }
+        try {
+            Commands.dropCaches();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.warn("Artifacts read throughput not measured, it would be that of the page cache: " + e.getMessage());
+            return OptionalDouble.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return OptionalDouble.empty();
+        }
+        return OptionalDouble.of(readMBps(files, false));
+    }
+
+    private static double readMBps(List<Path> files, boolean direct) throws IOException {
+        // O_DIRECT needs the buffer, and so the size of each read, aligned to the block size
+        int blockSize = files.isEmpty() ? 4096 : (int) Math.max(4096L, Files.getFileStore(files.get(0)).getBlockSize());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024 + blockSize).alignedSlice(blockSize);
+        Set<OpenOption> options = direct ? Set.of(StandardOpenOption.READ, ExtendedOpenOption.DIRECT) : Set.of(StandardOpenOption.READ);
+        long bytes = 0L;
+        long start = System.nanoTime();
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, options)) {
+                int read;
+                while ((read = channel.read(buffer)) > 0) {
+                    bytes += read;
+                    buffer.clear();
+                    // The end of the file, another read would start off the block boundary
+                    if (read < buffer.capacity()) {
+                        break;
+                    }
+                }
+            }
+        }
+        long elapsedNs = Math.max(1L, System.nanoTime() - start);
+        return bytes / 1_000_000d / (elapsedNs / 1_000_000_000d);
+    }
+
+    /**
+     * @param readMBps read throughput of the application artifacts, if measured
+     * @return factor to multiply time thresholds with, more than 1 on a slower host than the reference one, 1 without references
+     */
+    public double timeFactor(OptionalDouble readMBps) {
+        if (referenceHost.isEmpty()) {
+            return 1d;
+        }
+        List<Double> ratios = new ArrayList<>();
+        referenceSpawnMs.ifPresent(reference -> ratios.add(spawnMs / reference));
+        referenceJavaVersionMs.ifPresent(reference -> ratios.add(javaVersionMs / reference));
+        referenceCpuMs.ifPresent(reference -> ratios.add(cpuMs / reference));
+        if (referenceReadMBps.isPresent() && readMBps.isPresent() && readMBps.getAsDouble() > 0d) {
+            ratios.add(referenceReadMBps.getAsDouble() / readMBps.getAsDouble());
+        }
+        if (ratios.isEmpty()) {
+            return 1d;
+        }
+        double logSum = 0d;
+        for (double ratio : ratios) {
+            logSum += Math.log(ratio);
+        }
+        return Math.min(MAX_FACTOR, Math.max(MIN_FACTOR, Math.exp(logSum / ratios.size())));
+    }
+
+    /**
+     * @return the measured values keyed by CSV header, in microseconds to keep the precision in whole numbers
+     */
+    public Map<String, Long> columns() {
+        Map<String, Long> columns = new LinkedHashMap<>();
+        columns.put("spawnUs", Math.round(spawnMs * 1000));
+        columns.put("javaVersionUs", Math.round(javaVersionMs * 1000));
+        columns.put("cpuLoopUs", Math.round(cpuMs * 1000));
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Calibration: spawn %.2f ms (reference %s), java -version %.1f ms (reference %s), " +
+                        "CPU loop %.1f ms (reference %s), artifacts read reference %s MB/s, reference host %s",
+                spawnMs, format(referenceSpawnMs, "%.2f"), javaVersionMs, format(referenceJavaVersionMs, "%.1f"), cpuMs, format(referenceCpuMs, "%.1f"),
+                format(referenceReadMBps, "%.0f"), referenceHost.orElse("none"));
+    }
+
+    private static String format(OptionalDouble value, String format) {
+        return value.isPresent() ? String.format(Locale.ROOT, format, value.getAsDouble()) : "none";
+    }
+
+    private static OptionalDouble getReference(String name) {
+        String key = "start-stop.calibration.reference." + name;
+        String property = System.getProperty(key);
+        if (property == null || property.isBlank()) {
+            return OptionalDouble.empty();
+        }
+        double value = Double.parseDouble(property);
+        if (value <= 0d) {
+            throw new IllegalArgumentException(key + " must be a positive number, was: " + value);
+        }
+        return OptionalDouble.of(value);
+    }
+
+    private static double measureSpawnMs() throws IOException, InterruptedException {
+        List<String> noop = isThisWindows ? List.of("cmd", "/C", "exit") : List.of("true");
+        return medianOfRuns(noop, SPAWN_RUNS);
+    }
+
+    private static double measureJavaVersionMs() throws IOException, InterruptedException {
+        return medianOfRuns(List.of(Commands.JAVA_BIN, "-version"), JAVA_VERSION_RUNS);
+    }
+
+    private static double medianOfRuns(List<String> command, int runs) throws IOException, InterruptedException {
+        double[] timesMs = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            Process p = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .directory(new File(System.getProperty("java.io.tmpdir")))
+                    .start();
+            if (!p.waitFor(1, TimeUnit.MINUTES)) {
+                p.destroyForcibly();
+                throw new IOException(String.join(" ", command) + " did not finish in 1 minute");
+            }
+            timesMs[i] = (System.nanoTime() - start) / 1_000_000d;
+        }
+        return median(timesMs);
+    }
+
+    private static double measureCpuMs() {
+        // Warm-up so that the loop is compiled before it is measured
+        cpuLoop(CPU_LOOP_ITERATIONS / 10);
+        double[] timesMs = new double[CPU_RUNS];
+        for (int i = 0; i < CPU_RUNS; i++) {
+            long start = System.nanoTime();
+            cpuLoop(CPU_LOOP_ITERATIONS);
+            timesMs[i] = (System.nanoTime() - start) / 1_000_000d;
+        }
+        return median(timesMs);
+    }
+
+    /**
+     * xorshift, every iteration depends on the previous one, so it can be neither vectorized nor removed
+     */
+    private static void cpuLoop(long iterations) {
+        long x = 88172645463325252L;
+        for (long i = 0; i < iterations; i++) {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+        }
+        cpuLoopSink = x;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2d;
+    }
+}
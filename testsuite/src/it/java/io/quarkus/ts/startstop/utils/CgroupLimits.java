@@ -0,0 +1,354 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Runs the application in its own cgroup v2 with memory.max and cpu.max, as a pod with limits, and reads what the cgroup
+ * accounted: peak memory, memory by type, CPU usage and throttling, and memory limit and OOM events.
+ * <p>
+ * The cgroup is either a transient systemd scope of the user, or a child of a delegated cgroup v2 directory
+ * the user may write to, see {@code start-stop.cgroup.dir} system property.
+ */
+public final class CgroupLimits {
+
+    private static final Logger LOGGER = Logger.getLogger(CgroupLimits.class.getName());
+
+    public static final Path CGROUP_ROOT = Paths.get("/sys/fs/cgroup");
+    public static final String MAX = "max";
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    public static class Stats {
+        public final long memoryCurrentKb;
+        /**
+         * -1 if the kernel does not provide memory.peak, i.e. before 5.19
+         */
+        public final long memoryPeakKb;
+        public final long anonKb;
+        public final long fileKb;
+        public final long kernelKb;
+        public final long cpuUsageMs;
+        public final long periods;
+        public final long throttledPeriods;
+        public final long throttledMs;
+        /**
+         * Times the memory usage was about to go over memory.max, reclaim or OOM followed
+         */
+        public final long memoryMaxEvents;
+        public final long oomKills;
+
+        public Stats(long memoryCurrentKb, long memoryPeakKb, long anonKb, long fileKb, long kernelKb, long cpuUsageMs,
+                     long periods, long throttledPeriods, long throttledMs, long memoryMaxEvents, long oomKills) {
+            this.memoryCurrentKb = memoryCurrentKb;
+            this.memoryPeakKb = memoryPeakKb;
+            this.anonKb = anonKb;
+            this.fileKb = fileKb;
+            this.kernelKb = kernelKb;
+            this.cpuUsageMs = cpuUsageMs;
+            this.periods = periods;
+            this.throttledPeriods = throttledPeriods;
+            this.throttledMs = throttledMs;
+            this.memoryMaxEvents = memoryMaxEvents;
+            this.oomKills = oomKills;
+        }
+
+        /**
+         * @param suffix of the headers, e.g. "FirstOK" gives cgroupMemoryPeakFirstOKkB, cgroupThrottledFirstOKMs, ...
+         * @return the stats keyed by CSV header
+         */
+        public Map<String, Long> columns(String suffix) {
+            Map<String, Long> columns = new LinkedHashMap<>();
+            columns.put("cgroupMemoryCurrent" + suffix + "kB", memoryCurrentKb);
+            if (memoryPeakKb >= 0) {
+                columns.put("cgroupMemoryPeak" + suffix + "kB", memoryPeakKb);
+            }
+            columns.put("cgroupAnon" + suffix + "kB", anonKb);
+            columns.put("cgroupFile" + suffix + "kB", fileKb);
+            columns.put("cgroupKernel" + suffix + "kB", kernelKb);
+            columns.put("cgroupCpuUsage" + suffix + "Ms", cpuUsageMs);
+            columns.put("cgroupPeriods" + suffix, periods);
+            columns.put("cgroupThrottledPeriods" + suffix, throttledPeriods);
+            columns.put("cgroupThrottled" + suffix + "Ms", throttledMs);
+            columns.put("cgroupMemoryMaxEvents" + suffix, memoryMaxEvents);
+            columns.put("cgroupOOMKills" + suffix, oomKills);
+            return columns;
+        }
+
+        @Override
+        public String toString() {
+            return "memory current " + memoryCurrentKb + " kB, peak " + memoryPeakKb + " kB (anon " + anonKb + " kB, file " + fileKb
+                    + " kB, kernel " + kernelKb + " kB), CPU " + cpuUsageMs + " ms, throttled " + throttledPeriods + " of " + periods
+                    + " periods for " + throttledMs + " ms, memory.max events " + memoryMaxEvents + ", OOM kills " + oomKills;
+        }
+    }
+
+    /**
+     * Bytes or "max"
+     */
+    public final String memoryMax;
+    /**
+     * "$MAX $PERIOD" in microseconds as in the cpu.max file
+     */
+    public final String cpuMax;
+    /**
+     * Delegated cgroup to create the application cgroups in, null for systemd scopes
+     */
+    public final Path parent;
+    /**
+     * Why the cgroup cannot be used, null if it can
+     */
+    public final String unavailable;
+    private final List<Path> created = new ArrayList<>();
+
+    private CgroupLimits(String memoryMax, String cpuMax, Path parent) {
+        this.memoryMax = memoryMax;
+        this.cpuMax = cpuMax;
+        this.parent = parent;
+        this.unavailable = checkAvailable();
+    }
+
+    /**
+     * @return limits if enabled by {@code start-stop.cgroup} system property, configured by {@code start-stop.cgroup.memory.max},
+     * {@code start-stop.cgroup.cpu.max} and {@code start-stop.cgroup.dir}; check {@link #isAvailable()} before use
+     */
+    public static Optional<CgroupLimits> fromSystemProperties() {
+        if (!Boolean.getBoolean("start-stop.cgroup")) {
+            return Optional.empty();
+        }
+        String memoryMax = parseMemoryMax(System.getProperty("start-stop.cgroup.memory.max", MAX));
+        String cpuMax = parseCpuMax(System.getProperty("start-stop.cgroup.cpu.max", MAX));
+        String dir = System.getProperty("start-stop.cgroup.dir");
+        CgroupLimits limits = new CgroupLimits(memoryMax, cpuMax, dir == null || dir.isBlank() ? null : Paths.get(dir));
+        LOGGER.info("cgroup memory.max " + memoryMax + ", cpu.max " + cpuMax + (limits.isAvailable() ? "" : ", unavailable: " + limits.unavailable));
+        return Optional.of(limits);
+    }
+
+    public boolean isAvailable() {
+        return unavailable == null;
+    }
+
+    /**
+     * Creates the cgroup of a delegated directory right away, systemd creates its scope once the command starts
+     *
+     * @return command prefix starting the application in a new cgroup with the limits
+     */
+    public List<String> getCommandPrefix() throws IOException {
+        String name = "start-stop-" + ProcessHandle.current().pid() + "-" + counter.incrementAndGet();
+        if (parent == null) {
+            List<String> prefix = new ArrayList<>(List.of("systemd-run", "--user", "--scope", "--quiet", "--unit=" + name,
+                    "-p", "MemoryMax=" + (memoryMax.equals(MAX) ? "infinity" : memoryMax), "-p", "MemorySwapMax=0"));
+            String[] cpu = cpuMax.split(" ");
+            if (!cpu[0].equals(MAX)) {
+                prefix.addAll(List.of("-p", String.format(Locale.ROOT, "CPUQuota=%d%%", Long.parseLong(cpu[0]) * 100 / Long.parseLong(cpu[1])),
+                        "-p", "CPUQuotaPeriodSec=" + Long.parseLong(cpu[1]) / 1000 + "ms"));
+            }
+            prefix.add("--");
+            return prefix;
+        }
+        Path cgroup = parent.resolve(name);
+        Files.createDirectory(cgroup);
+        created.add(cgroup);
+        Files.writeString(cgroup.resolve("memory.max"), memoryMax, US_ASCII);
+        if (Files.exists(cgroup.resolve("memory.swap.max"))) {
+            Files.writeString(cgroup.resolve("memory.swap.max"), "0", US_ASCII);
+        }
+        Files.writeString(cgroup.resolve("cpu.max"), cpuMax, US_ASCII);
+        // The shell moves itself to the cgroup and becomes the application, so that nothing of the startup is outside of it
+        return List.of("sh", "-c", "echo $$ > " + cgroup.resolve("cgroup.procs") + " && exec \"$@\"", "sh");
+    }
+
+    /**
+     * @return what the cgroup of the process accounted so far, empty if the process is gone with its cgroup
+     */
+    public Optional<Stats> read(long pid) {
+        try {
+            return read(cgroupOf(pid));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to read the cgroup of " + pid, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return the cgroup of the process, to read it after the process exited, see {@link #read(Path)}
+     */
+    public Optional<Path> find(long pid) {
+        try {
+            return Optional.of(cgroupOf(pid));
+        } catch (IOException e) {
+            LOGGER.warn("Unable to find the cgroup of " + pid, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A cgroup in a delegated directory is kept until {@link #release()}, a systemd scope might be gone as soon as its process exited
+     *
+     * @return what the cgroup accounted so far, including the processes that exited, empty if the cgroup is gone
+     */
+    public Optional<Stats> read(Path cgroup) {
+        if (Files.notExists(cgroup)) {
+            return Optional.empty();
+        }
+        try {
+            Map<String, Long> memoryStat = readKeyValues(cgroup.resolve("memory.stat"));
+            Map<String, Long> cpuStat = readKeyValues(cgroup.resolve("cpu.stat"));
+            Map<String, Long> memoryEvents = readKeyValues(cgroup.resolve("memory.events"));
+            Path peak = cgroup.resolve("memory.peak");
+            return Optional.of(new Stats(
+                    readLong(cgroup.resolve("memory.current")) / 1024,
+                    Files.exists(peak) ? readLong(peak) / 1024 : -1L,
+                    memoryStat.getOrDefault("anon", 0L) / 1024,
+                    memoryStat.getOrDefault("file", 0L) / 1024,
+                    memoryStat.getOrDefault("kernel", memoryStat.getOrDefault("kernel_stack", 0L) + memoryStat.getOrDefault("slab", 0L)) / 1024,
+                    cpuStat.getOrDefault("usage_usec", 0L) / 1000,
+                    cpuStat.getOrDefault("nr_periods", 0L),
+                    cpuStat.getOrDefault("nr_throttled", 0L),
+                    cpuStat.getOrDefault("throttled_usec", 0L) / 1000,
+                    memoryEvents.getOrDefault("max", 0L),
+                    memoryEvents.getOrDefault("oom_kill", 0L)));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to read " + cgroup, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Removes the cgroups created in the delegated directory, their processes must have exited
+     */
+    public void release() {
+        for (Path cgroup : created) {
+            try {
+                Files.deleteIfExists(cgroup);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to remove " + cgroup, e);
+            }
+        }
+        created.clear();
+    }
+
+    /**
+     * e.g. "0::/user.slice/user-1000.slice/user@1000.service/app.slice/start-stop-1234-1.scope"
+     */
+    static Path cgroupOf(long pid) throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "cgroup"), US_ASCII)) {
+            if (line.startsWith("0::")) {
+                return CGROUP_ROOT.resolve(line.substring(3).replaceFirst("^/", ""));
+            }
+        }
+        throw new IOException("Process " + pid + " is not in a cgroup v2 hierarchy");
+    }
+
+    private String checkAvailable() {
+        if (!isThisLinux) {
+            return "cgroups are supported only on Linux";
+        }
+        if (Files.notExists(CGROUP_ROOT.resolve("cgroup.controllers"))) {
+            return "there is no cgroup v2 unified hierarchy at " + CGROUP_ROOT;
+        }
+        try {
+            if (parent != null) {
+                String controllers = Files.readString(parent.resolve("cgroup.subtree_control"), US_ASCII);
+                if (!controllers.contains("memory") || !controllers.contains("cpu")) {
+                    return "memory and cpu controllers are not enabled in " + parent.resolve("cgroup.subtree_control") + ": " + controllers.trim();
+                }
+                if (!Files.isWritable(parent) || !Files.isWritable(parent.resolve("cgroup.procs"))) {
+                    return parent + " is not delegated to the user running the tests";
+                }
+                // Moving a process between cgroups needs write access to their common ancestor
+                if (!cgroupOf(ProcessHandle.current().pid()).startsWith(parent)) {
+                    return "the tests must run in a cgroup below " + parent + ", e.g. in a sibling of the application cgroups";
+                }
+                return null;
+            }
+            // systemd takes the quota as a whole percent and the period in milliseconds, anything finer would be rounded off
+            String[] cpu = cpuMax.split(" ");
+            if (!cpu[0].equals(MAX) && (Long.parseLong(cpu[0]) * 100 % Long.parseLong(cpu[1]) != 0 || Long.parseLong(cpu[1]) % 1000 != 0)) {
+                return "a systemd scope cannot get cpu.max " + cpuMax + ", the quota must be a whole percent of the period and the period "
+                        + "whole milliseconds, e.g. 150000 100000; or use start-stop.cgroup.dir";
+            }
+            // The limits are in place in a scope of the user only if systemd delegates memory and cpu controllers to the user
+            List<String> probe = new ArrayList<>(getCommandPrefix());
+            probe.addAll(List.of("sh", "-c", "d=" + CGROUP_ROOT + "$(sed -n 's/^0:://p' /proc/self/cgroup); cat $d/memory.max $d/cpu.max"));
+            Process p = new ProcessBuilder(probe).redirectErrorStream(true).start();
+            String out = new String(p.getInputStream().readAllBytes(), US_ASCII).trim();
+            if (!p.waitFor(1, TimeUnit.MINUTES) || p.exitValue() != 0) {
+                return "unable to run a user scope with memory and cpu controllers: " + out;
+            }
+            String[] lines = out.split("\n");
+            if (lines.length < 2 || !lines[0].trim().equals(memoryMax) || !lines[1].trim().equals(cpuMax)) {
+                return "the user scope did not get memory.max " + memoryMax + " and cpu.max " + cpuMax + ": " + out;
+            }
+        } catch (IOException | RuntimeException e) {
+            return "unable to check cgroup delegation: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted while checking cgroup delegation";
+        }
+        return null;
+    }
+
+    /**
+     * @param memoryMax e.g. "512M", "1G", bytes or "max"
+     * @return bytes or "max"
+     */
+    static String parseMemoryMax(String memoryMax) {
+        String value = memoryMax.trim().toUpperCase(Locale.ROOT);
+        if (value.equals("MAX") || value.equals("INFINITY")) {
+            return MAX;
+        }
+        int shift = "KMGT".indexOf(value.charAt(value.length() - 1)) + 1;
+        long number = Long.parseLong(shift > 0 ? value.substring(0, value.length() - 1) : value);
+        if (number < 1) {
+            throw new IllegalArgumentException("start-stop.cgroup.memory.max must be positive or max, was: " + memoryMax);
+        }
+        return Long.toString(number << (10 * shift));
+    }
+
+    /**
+     * @param cpuMax e.g. "50000 100000", "50000" with the default period, or "max"
+     * @return "$MAX $PERIOD"
+     */
+    static String parseCpuMax(String cpuMax) {
+        String[] parts = cpuMax.trim().split("\\s+");
+        String period = parts.length > 1 ? parts[1] : "100000";
+        if (Long.parseLong(period) < 1000 || (!parts[0].equals(MAX) && Long.parseLong(parts[0]) < 1000)) {
+            throw new IllegalArgumentException("start-stop.cgroup.cpu.max must be \"$MAX $PERIOD\" in microseconds, 1000 at least, was: " + cpuMax);
+        }
+        return parts[0] + " " + period;
+    }
+
+    private static long readLong(Path file) throws IOException {
+        String value = Files.readString(file, US_ASCII).trim();
+        return value.equals(MAX) ? Long.MAX_VALUE : Long.parseLong(value);
+    }
+
+    /**
+     * e.g. "anon 12345" lines of memory.stat, cpu.stat and memory.events
+     */
+    private static Map<String, Long> readKeyValues(Path file) throws IOException {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, US_ASCII)) {
+            String[] kv = line.trim().split(" ");
+            if (kv.length == 2) {
+                values.put(kv[0], Long.parseLong(kv[1]));
+            }
+        }
+        return values;
+    }
+}
@@ -30,6 +30,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -70,6 +71,7 @@ public class Commands {
     private static final String REDHAT_VERSION_TAG = "redhat-";
     private static final String QUARKUS_MAIN_VERSION = "999-SNAPSHOT";
     public static final String JAVA_BIN = String.format("%s/bin/java", System.getProperty("java.home"));
+    public static final String JCMD_BIN = String.format("%s/bin/jcmd", System.getProperty("java.home"));
 
 
     public static String mvnw() {
@@ -530,6 +532,10 @@ public class Commands {
     }
 
     public static long getRSSkB(long pid) throws IOException, InterruptedException {
+        if (isThisLinux) {
+            // No need to fork ps, the same number is in /proc
+            return ProcSampler.readRssKb(pid);
+        }
         ProcessBuilder pa;
         if (isThisWindows) {
             // Note that PeakWorkingSetSize might be better, but we would need to change it on Linux too...
@@ -561,6 +567,11 @@ public class Commands {
     }
 
     public static long getOpenedFDs(long pid) throws IOException, InterruptedException {
+        Optional<FileDescriptors> fileDescriptors = FileDescriptors.collect(pid);
+        if (fileDescriptors.isPresent()) {
+            // Linux, no need to fork lsof
+            return fileDescriptors.get().total;
+        }
         ProcessBuilder pa;
         long count = 0;
         if (isThisWindows) {
@@ -617,7 +628,7 @@ public class Commands {
     }
 
     /*
-    TODO: CPU cycles used
+    CPU cycles used, see PerfStat and start-stop.perf property
 
     Pros: good data
     Cons: dependency on perf tool; will not translate to Windows data
@@ -713,12 +724,25 @@ public class Commands {
     public static class ProcessRunner implements Runnable {
         final File directory;
         final File log;
+        final LogStream logStream;
         final List<String> command;
         final long timeoutMinutes;
 
         public ProcessRunner(File directory, File log, List<String> command, long timeoutMinutes) {
             this.directory = directory;
             this.log = log;
+            this.logStream = null;
+            this.command = command;
+            this.timeoutMinutes = timeoutMinutes;
+        }
+
+        /**
+         * Output goes through the stream into its log, so that its listeners get the lines with their timestamps as they come
+         */
+        public ProcessRunner(File directory, LogStream logStream, List<String> command, long timeoutMinutes) {
+            this.directory = directory;
+            this.log = logStream.getLog();
+            this.logStream = logStream;
             this.command = command;
             this.timeoutMinutes = timeoutMinutes;
         }
@@ -731,17 +755,30 @@ public class Commands {
             env.put("PATH", System.getenv("PATH"));
             pb.directory(directory);
             pb.redirectErrorStream(true);
-            pb.redirectOutput(ProcessBuilder.Redirect.to(log));
+            if (logStream == null) {
+                pb.redirectOutput(ProcessBuilder.Redirect.to(log));
+            }
             Process p = null;
             try {
                 p = pb.start();
+                if (logStream != null) {
+                    logStream.tee(p);
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
             try {
                 Objects.requireNonNull(p).waitFor(timeoutMinutes, TimeUnit.MINUTES);
+                if (logStream != null) {
+                    logStream.awaitEnd(1, TimeUnit.MINUTES);
+                }
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                // e.g. a build ahead cancelled, Maven and the native image builder must not outlive it
+                if (p != null) {
+                    p.descendants().forEach(ProcessHandle::destroy);
+                    p.destroy();
+                }
+                Thread.currentThread().interrupt();
             }
         }
     }
@@ -0,0 +1,142 @@
+package io.quarkus.ts.startstop.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Opened file descriptors of a process, read from /proc/&lt;pid&gt;/fd and /proc/&lt;pid&gt;/maps
+ * and classified by what they point to. Unlike lsof, nothing is forked.
+ */
+public final class FileDescriptors {
+
+    public enum Kind {
+        JAR("FDjars"),
+        SHARED_LIBRARY("FDlibs"),
+        SOCKET("FDsockets"),
+        PIPE("FDpipes"),
+        ANON_INODE("FDanonInodes"),
+        REGULAR_FILE("FDfiles"),
+        OTHER("FDother");
+
+        public final String header;
+
+        Kind(String header) {
+            this.header = header;
+        }
+    }
+
+    public static final String MMAPPED_JARS_HEADER = "mmappedJars";
+
+    private static final Pattern sharedLibraryPattern = Pattern.compile(".*\\.so(\\.[0-9]+)*$");
+    private static final String DELETED_SUFFIX = " (deleted)";
+
+    public final long total;
+    public final Map<Kind, Long> counts;
+    public final long mmappedJars;
+
+    private FileDescriptors(long total, Map<Kind, Long> counts, long mmappedJars) {
+        this.total = total;
+        this.counts = counts;
+        this.mmappedJars = mmappedJars;
+    }
+
+    /**
+     * @param pid of the process to inspect
+     * @return empty if there is no /proc filesystem to read from
+     */
+    public static Optional<FileDescriptors> collect(long pid) throws IOException {
+        Path fdDir = Paths.get("/proc", Long.toString(pid), "fd");
+        if (!isThisLinux || !Files.isDirectory(fdDir)) {
+            return Optional.empty();
+        }
+        Map<Kind, Long> counts = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            counts.put(kind, 0L);
+        }
+        long total = 0;
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(fdDir)) {
+            for (Path fd : fds) {
+                String target;
+                try {
+                    target = Files.readSymbolicLink(fd).toString();
+                } catch (IOException e) {
+                    // Closed in the meantime
+                    continue;
+                }
+                counts.merge(classify(target), 1L, Long::sum);
+                total++;
+            }
+        }
+        return Optional.of(new FileDescriptors(total, counts, countMmappedJars(pid)));
+    }
+
+    /**
+     * @return FD counts per kind and the number of mmapped jars, keyed by CSV header
+     */
+    public Map<String, Long> columns() {
+        Map<String, Long> columns = new LinkedHashMap<>();
+        for (Map.Entry<Kind, Long> e : counts.entrySet()) {
+            columns.put(e.getKey().header, e.getValue());
+        }
+        columns.put(MMAPPED_JARS_HEADER, mmappedJars);
+        return columns;
+    }
+
+    static Kind classify(String target) {
+        if (target.startsWith("socket:")) {
+            return Kind.SOCKET;
+        }
+        if (target.startsWith("pipe:")) {
+            return Kind.PIPE;
+        }
+        if (target.startsWith("anon_inode:")) {
+            return Kind.ANON_INODE;
+        }
+        if (target.endsWith(DELETED_SUFFIX)) {
+            target = target.substring(0, target.length() - DELETED_SUFFIX.length());
+        }
+        if (target.endsWith(".jar")) {
+            return Kind.JAR;
+        }
+        if (sharedLibraryPattern.matcher(target).matches()) {
+            return Kind.SHARED_LIBRARY;
+        }
+        if (target.startsWith("/") && Files.isRegularFile(Paths.get(target))) {
+            return Kind.REGULAR_FILE;
+        }
+        // Devices, directories, ttys...
+        return Kind.OTHER;
+    }
+
+    private static long countMmappedJars(long pid) {
+        List<String> maps;
+        try {
+            maps = Files.readAllLines(Paths.get("/proc", Long.toString(pid), "maps"), UTF_8);
+        } catch (IOException e) {
+            return 0L;
+        }
+        Set<String> jars = new HashSet<>();
+        for (String line : maps) {
+            // e.g. 7f3c5c000000-7f3c5c010000 r--s 00000000 fd:01 1234 /path/to/lib.jar
+            int pathStart = line.indexOf('/');
+            if (pathStart != -1 && line.endsWith(".jar")) {
+                jars.add(line.substring(pathStart));
+            }
+        }
+        return jars.size();
+    }
+}
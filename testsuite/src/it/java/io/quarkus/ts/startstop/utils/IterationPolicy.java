@@ -0,0 +1,120 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many start-stop iterations to run. Either a fixed count, or, in the adaptive mode, as many as needed
+ * for the confidence intervals of the gated metrics to get narrower than the requested relative precision,
+ * bounded by minimal and maximal iteration counts and by a wall-clock budget.
+ */
+public final class IterationPolicy {
+
+    private static final Logger LOGGER = Logger.getLogger(IterationPolicy.class.getName());
+
+    public static final int DEFAULT_ITERATIONS = 10;
+    public static final int DEFAULT_MIN_ITERATIONS = 5;
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+    public static final double DEFAULT_PRECISION = 0.05;
+    public static final long DEFAULT_BUDGET_S = 900L;
+
+    public final boolean adaptive;
+    public final int minIterations;
+    public final int maxIterations;
+    /**
+     * Maximal {@link Statistics#relativeCIWidth()} of every gated metric
+     */
+    public final double precision;
+    public final long budgetNs;
+    private final Statistics.Estimator estimator;
+    private final long startNs;
+    private String stopReason = "";
+
+    private IterationPolicy(boolean adaptive, int minIterations, int maxIterations, double precision, long budgetS, Statistics.Estimator estimator) {
+        this.adaptive = adaptive;
+        this.minIterations = minIterations;
+        this.maxIterations = maxIterations;
+        this.precision = precision;
+        this.budgetNs = TimeUnit.SECONDS.toNanos(budgetS);
+        this.estimator = estimator;
+        this.startNs = System.nanoTime();
+    }
+
+    /**
+     * Reads {@code start-stop.iterations} or, with {@code start-stop.iterations.adaptive}, {@code start-stop.iterations.min},
+     * {@code start-stop.iterations.max}, {@code start-stop.iterations.precision} and {@code start-stop.iterations.budget.s}.
+     * The budget starts to run now.
+     */
+    public static IterationPolicy fromSystemProperties(Statistics.Estimator estimator) {
+        if (!Boolean.getBoolean("start-stop.iterations.adaptive")) {
+            int iterations = Integer.getInteger("start-stop.iterations", DEFAULT_ITERATIONS);
+            return new IterationPolicy(false, iterations, iterations, 0d, Long.MAX_VALUE / 1_000_000_000L, estimator);
+        }
+        int min = Integer.getInteger("start-stop.iterations.min", DEFAULT_MIN_ITERATIONS);
+        int max = Integer.getInteger("start-stop.iterations.max", DEFAULT_MAX_ITERATIONS);
+        double precision = Double.parseDouble(System.getProperty("start-stop.iterations.precision", Double.toString(DEFAULT_PRECISION)));
+        long budgetS = Long.getLong("start-stop.iterations.budget.s", DEFAULT_BUDGET_S);
+        // A confidence interval needs at least two values
+        if (min < 2 || max < min) {
+            throw new IllegalArgumentException("start-stop.iterations.min must be at least 2 and start-stop.iterations.max at least the min, were: "
+                    + min + ", " + max);
+        }
+        if (precision <= 0d || budgetS <= 0L) {
+            throw new IllegalArgumentException("start-stop.iterations.precision and start-stop.iterations.budget.s must be positive, were: "
+                    + precision + ", " + budgetS);
+        }
+        return new IterationPolicy(true, min, max, precision, budgetS, estimator);
+    }
+
+    /**
+     * @param completed iterations done so far
+     * @param gated     values of the metrics the thresholds are checked against, one per completed iteration, keyed by name
+     * @return true if another iteration should run
+     */
+    public boolean hasNext(int completed, Map<String, List<Long>> gated) {
+        if (!adaptive) {
+            return completed < maxIterations;
+        }
+        if (completed < minIterations) {
+            return true;
+        }
+        if (completed >= maxIterations) {
+            stopReason = "reached start-stop.iterations.max=" + maxIterations + " before the precision of " + precision;
+            LOGGER.warn(stopReason);
+            return false;
+        }
+        long elapsedNs = System.nanoTime() - startNs;
+        if (elapsedNs >= budgetNs) {
+            stopReason = "spent the start-stop.iterations.budget.s=" + TimeUnit.NANOSECONDS.toSeconds(budgetNs)
+                    + " budget after " + completed + " iterations, before the precision of " + precision;
+            LOGGER.warn(stopReason);
+            return false;
+        }
+        List<String> unstable = new ArrayList<>();
+        for (Map.Entry<String, List<Long>> e : gated.entrySet()) {
+            Statistics s = Statistics.of(e.getKey(), e.getValue(), estimator);
+            if (s.relativeCIWidth() > precision) {
+                unstable.add(String.format(Locale.ROOT, "%s %.3f", e.getKey(), s.relativeCIWidth()));
+            }
+        }
+        if (unstable.isEmpty()) {
+            stopReason = "converged to the relative precision of " + precision + " after " + completed + " iterations";
+            LOGGER.info(stopReason);
+            return false;
+        }
+        LOGGER.info("Not converged after " + completed + " iterations, relative CI widths: " + String.join(", ", unstable));
+        return true;
+    }
+
+    /**
+     * @return why the adaptive mode stopped, empty for the fixed count
+     */
+    public String getStopReason() {
+        return stopReason;
+    }
+}
@@ -0,0 +1,252 @@
+package io.quarkus.ts.startstop.utils;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static io.quarkus.ts.startstop.utils.Commands.JCMD_BIN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Flight recording of the JVM mode startup, stopped and dumped at the first OK request and analyzed in-process,
+ * so that a startup regression comes with class loading, GC, allocation and JIT numbers right away.
+ */
+public final class JfrRecording {
+
+    private static final Logger LOGGER = Logger.getLogger(JfrRecording.class.getName());
+
+    public static final String RECORDING_NAME = "start-stop";
+    public static final int TOP = 10;
+
+    /**
+     * Only what the analysis needs; periodic events are emitted once, when the recording is dumped
+     */
+    private static final String SETTINGS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<configuration version=\"2.0\" label=\"StartStopTest\" description=\"Startup analysis\" provider=\"Quarkus\">\n" +
+            event("jdk.ClassLoad", "stackTrace", "false", "threshold", "0 ms") +
+            event("jdk.ClassLoadingStatistics", "period", "endChunk") +
+            event("jdk.GarbageCollection", "threshold", "0 ms") +
+            event("jdk.Compilation", "threshold", "0 ms") +
+            event("jdk.CodeCacheStatistics", "period", "endChunk") +
+            event("jdk.ThreadAllocationStatistics", "period", "endChunk") +
+            event("jdk.ObjectAllocationSample", "stackTrace", "true", "throttle", "1000/s") +
+            "</configuration>\n";
+
+    public static class Summary {
+        public final long classesLoaded;
+        /**
+         * Sum of the class load durations, nested loads are counted in the outer ones too
+         */
+        public final long classLoadTimeMs;
+        public final long gcCount;
+        public final long gcPauseMs;
+        public final long allocatedKb;
+        public final long codeCacheUsedKb;
+        public final long compilations;
+        public final long compilationTimeMs;
+        /**
+         * Bytes allocated by thread name, descending
+         */
+        public final Map<String, Long> allocatedByThread;
+        /**
+         * Sampled allocation weight by the allocating frame, descending
+         */
+        public final Map<String, Long> topAllocatingFrames;
+
+        public Summary(long classesLoaded, long classLoadTimeMs, long gcCount, long gcPauseMs, long allocatedKb, long codeCacheUsedKb,
+                       long compilations, long compilationTimeMs, Map<String, Long> allocatedByThread, Map<String, Long> topAllocatingFrames) {
+            this.classesLoaded = classesLoaded;
+            this.classLoadTimeMs = classLoadTimeMs;
+            this.gcCount = gcCount;
+            this.gcPauseMs = gcPauseMs;
+            this.allocatedKb = allocatedKb;
+            this.codeCacheUsedKb = codeCacheUsedKb;
+            this.compilations = compilations;
+            this.compilationTimeMs = compilationTimeMs;
+            this.allocatedByThread = allocatedByThread;
+            this.topAllocatingFrames = topAllocatingFrames;
+        }
+
+        /**
+         * @return the totals keyed by CSV header
+         */
+        public Map<String, Long> columns() {
+            Map<String, Long> columns = new LinkedHashMap<>();
+            columns.put("jfrClassesLoaded", classesLoaded);
+            columns.put("jfrClassLoadMs", classLoadTimeMs);
+            columns.put("jfrGCs", gcCount);
+            columns.put("jfrGCPauseMs", gcPauseMs);
+            columns.put("jfrAllocatedkB", allocatedKb);
+            columns.put("jfrCodeCachekB", codeCacheUsedKb);
+            columns.put("jfrCompilations", compilations);
+            columns.put("jfrCompilationMs", compilationTimeMs);
+            return columns;
+        }
+
+        /**
+         * @return the top allocating threads and frames as markdown tables
+         */
+        public String toMarkdown() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("|Thread|Allocated kB|\n|---|---|\n");
+            allocatedByThread.entrySet().stream().filter(e -> e.getValue() > 0).limit(TOP)
+                    .forEach(e -> sb.append('|').append(e.getKey()).append('|').append(e.getValue() / 1024).append("|\n"));
+            long totalWeight = topAllocatingFrames.values().stream().mapToLong(Long::longValue).sum();
+            sb.append("\n|Allocating frame|Sampled kB|Share|\n|---|---|---|\n");
+            topAllocatingFrames.entrySet().stream().limit(TOP)
+                    .forEach(e -> sb.append('|').append(e.getKey()).append('|').append(e.getValue() / 1024).append('|')
+                            .append(String.format(Locale.ROOT, "%.1f %%", totalWeight == 0 ? 0d : e.getValue() * 100d / totalWeight)).append("|\n"));
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "classes loaded " + classesLoaded + " in " + classLoadTimeMs + " ms, GCs " + gcCount + " pausing " + gcPauseMs + " ms, allocated "
+                    + allocatedKb + " kB, code cache " + codeCacheUsedKb + " kB, compilations " + compilations + " in " + compilationTimeMs + " ms";
+        }
+    }
+
+    private final Path settings;
+
+    private JfrRecording(Path settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * @param dir to write the recording settings to
+     * @return recording if enabled by {@code start-stop.jfr} system property, JVM mode only
+     */
+    public static Optional<JfrRecording> create(boolean isNative, Path dir) throws IOException {
+        if (!Boolean.getBoolean("start-stop.jfr")) {
+            return Optional.empty();
+        }
+        if (isNative) {
+            LOGGER.info("start-stop.jfr is supported only in JVM mode");
+            return Optional.empty();
+        }
+        Path settings = dir.resolve("start-stop.jfc");
+        Files.write(settings, SETTINGS.getBytes(UTF_8));
+        return Optional.of(new JfrRecording(settings));
+    }
+
+    public List<String> getJvmOptions() {
+        return List.of("-XX:StartFlightRecording=name=" + RECORDING_NAME + ",settings=" + settings.toAbsolutePath());
+    }
+
+    /**
+     * Stops the recording, so that the rest of the run is not affected, and writes it to the file
+     */
+    public void dump(long pid, Path file) throws IOException, InterruptedException {
+        Process jcmd = new ProcessBuilder(JCMD_BIN, Long.toString(pid), "JFR.stop", "name=" + RECORDING_NAME, "filename=" + file.toAbsolutePath())
+                .redirectErrorStream(true)
+                .start();
+        String out = new String(jcmd.getInputStream().readAllBytes(), UTF_8);
+        if (!jcmd.waitFor(1, TimeUnit.MINUTES) || jcmd.exitValue() != 0 || Files.notExists(file)) {
+            throw new IOException("Unable to dump the flight recording of " + pid + ": " + out);
+        }
+    }
+
+    public static Summary analyze(Path recording) throws IOException {
+        long classesLoaded = 0L;
+        long classLoadedStatistics = 0L;
+        Duration classLoadTime = Duration.ZERO;
+        long gcCount = 0L;
+        Duration gcPause = Duration.ZERO;
+        long compilations = 0L;
+        Duration compilationTime = Duration.ZERO;
+        // Cumulative per thread and per code heap, the last value counts
+        Map<String, Long> allocatedByThread = new HashMap<>();
+        Map<String, Long> codeCacheUsed = new HashMap<>();
+        Map<String, Long> frameWeights = new HashMap<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent e = file.readEvent();
+                switch (e.getEventType().getName()) {
+                    case "jdk.ClassLoad":
+                        classesLoaded++;
+                        classLoadTime = classLoadTime.plus(e.getDuration());
+                        break;
+                    case "jdk.ClassLoadingStatistics":
+                        classLoadedStatistics = Math.max(classLoadedStatistics, e.getLong("loadedClassCount"));
+                        break;
+                    case "jdk.GarbageCollection":
+                        gcCount++;
+                        gcPause = gcPause.plus(e.getDuration("sumOfPauses"));
+                        break;
+                    case "jdk.Compilation":
+                        compilations++;
+                        compilationTime = compilationTime.plus(e.getDuration());
+                        break;
+                    case "jdk.CodeCacheStatistics":
+                        codeCacheUsed.put(e.getString("codeBlobType"),
+                                e.getLong("reservedTopAddress") - e.getLong("startAddress") - e.getLong("unallocatedCapacity"));
+                        break;
+                    case "jdk.ThreadAllocationStatistics":
+                        RecordedThread thread = e.getThread("thread");
+                        String name = thread == null ? "unknown" : thread.getJavaName() == null ? thread.getOSName() : thread.getJavaName();
+                        allocatedByThread.merge(name, e.getLong("allocated"), Math::max);
+                        break;
+                    case "jdk.ObjectAllocationSample":
+                        RecordedStackTrace stackTrace = e.getStackTrace();
+                        if (stackTrace != null && !stackTrace.getFrames().isEmpty()) {
+                            frameWeights.merge(frame(stackTrace.getFrames().get(0)), e.getLong("weight"), Long::sum);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return new Summary(
+                // Classes loaded before the recording started are only in the statistics
+                Math.max(classesLoaded, classLoadedStatistics),
+                classLoadTime.toMillis(),
+                gcCount,
+                gcPause.toMillis(),
+                allocatedByThread.values().stream().mapToLong(Long::longValue).sum() / 1024,
+                codeCacheUsed.values().stream().mapToLong(Long::longValue).sum() / 1024,
+                compilations,
+                compilationTime.toMillis(),
+                sortedDescending(allocatedByThread),
+                sortedDescending(frameWeights));
+    }
+
+    /**
+     * e.g. java.util.Arrays.copyOf:3481
+     */
+    private static String frame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    private static Map<String, Long> sortedDescending(Map<String, Long> map) {
+        return map.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    private static String event(String name, String... settings) {
+        StringBuilder sb = new StringBuilder("  <event name=\"").append(name).append("\">\n")
+                .append("    <setting name=\"enabled\">true</setting>\n");
+        for (int i = 0; i < settings.length; i += 2) {
+            sb.append("    <setting name=\"").append(settings[i]).append("\">").append(settings[i + 1]).append("</setting>\n");
+        }
+        return sb.append("  </event>\n").toString();
+    }
+}
@@ -0,0 +1,331 @@
+package io.quarkus.ts.startstop.utils;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * HTTP load on a started application, to get steady-state throughput and tail latency after the functional checks.
+ * <ul>
+ *     <li>closed loop - a fixed number of connections, each sends the next request once the previous one completed,
+ *     i.e. the throughput the application can sustain</li>
+ *     <li>open loop - requests sent at a fixed rate regardless of completions; latency is measured from when the request
+ *     was due, so that a stalled application is not hidden by the load generator waiting for it (coordinated omission)</li>
+ * </ul>
+ * Requests cycle through the {@link LoadMix} of the application. Nothing is recorded during the warm-up.
+ */
+public final class LoadGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadGenerator.class.getName());
+
+    public static final int DEFAULT_CONNECTIONS = 16;
+    public static final int DEFAULT_RATE = 1000;
+    public static final long DEFAULT_WARMUP_S = 5L;
+    public static final long DEFAULT_DURATION_S = 20L;
+    private static final int REQUEST_TIMEOUT_MS = 10_000;
+    /**
+     * Open loop requests still waiting for a response above this count are not sent and counted as errors
+     */
+    private static final int MAX_OUTSTANDING = 10_000;
+
+    public enum Mode {
+        CLOSED, OPEN
+    }
+
+    public static class Result {
+        public final Mode mode;
+        public final long durationMs;
+        public final long requests;
+        public final long errors;
+        /**
+         * Latencies of the successful requests in microseconds
+         */
+        public final Histogram histogram;
+
+        public Result(Mode mode, long durationMs, long requests, long errors, Histogram histogram) {
+            this.mode = mode;
+            this.durationMs = durationMs;
+            this.requests = requests;
+            this.errors = errors;
+            this.histogram = histogram;
+        }
+
+        public double throughput() {
+            return (requests - errors) * 1000d / durationMs;
+        }
+
+        /**
+         * @return the results keyed by CSV header
+         */
+        public Map<String, Long> columns() {
+            Map<String, Long> columns = new LinkedHashMap<>();
+            columns.put("loadRequests", requests);
+            columns.put("loadErrors", errors);
+            columns.put("loadRps", Math.round(throughput()));
+            columns.put("loadP50Us", histogram.getValueAtPercentile(50d));
+            columns.put("loadP99Us", histogram.getValueAtPercentile(99d));
+            columns.put("loadP999Us", histogram.getValueAtPercentile(99.9d));
+            columns.put("loadMaxUs", histogram.getMaxValue());
+            return columns;
+        }
+
+        /**
+         * Writes the full latency distribution in the HdrHistogram percentile format, values in milliseconds
+         */
+        public void writeHistogram(Path file) throws IOException {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, UTF_8)) {
+                histogram.outputPercentileDistribution(out, 1000d);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s loop: %d requests, %d errors, %.1f req/s, p50 %d us, p99 %d us, p99.9 %d us, max %d us",
+                    mode.name().toLowerCase(), requests, errors, throughput(), histogram.getValueAtPercentile(50d),
+                    histogram.getValueAtPercentile(99d), histogram.getValueAtPercentile(99.9d), histogram.getMaxValue());
+        }
+    }
+
+    public final Mode mode;
+    public final int connections;
+    /**
+     * Requests per second in the open loop mode
+     */
+    public final int rate;
+    public final long warmupNs;
+    public final long durationNs;
+    /**
+     * CPUs the event loops sending the requests are pinned to, empty if they are not pinned
+     */
+    public final Set<Integer> cpus;
+
+    private LoadGenerator(Mode mode, int connections, int rate, long warmupNs, long durationNs, Set<Integer> cpus) {
+        this.mode = mode;
+        this.connections = connections;
+        this.rate = rate;
+        this.warmupNs = warmupNs;
+        this.durationNs = durationNs;
+        this.cpus = Collections.unmodifiableSet(new TreeSet<>(cpus));
+    }
+
+    /**
+     * @return load generator if enabled by {@code start-stop.load} system property, configured by {@code start-stop.load.mode},
+     * {@code start-stop.load.connections}, {@code start-stop.load.rate}, {@code start-stop.load.warmup.s} and {@code start-stop.load.duration.s}
+     */
+    public static Optional<LoadGenerator> fromSystemProperties() {
+        if (!Boolean.getBoolean("start-stop.load")) {
+            return Optional.empty();
+        }
+        return Optional.of(fromSystemProperties(Integer.getInteger("start-stop.load.connections", DEFAULT_CONNECTIONS)));
+    }
+
+    /**
+     * @param connections of the closed loop, for tests that need a different default than the start-stop one
+     * @return load generator configured by the {@code start-stop.load.*} system properties, regardless of {@code start-stop.load}
+     */
+    public static LoadGenerator fromSystemProperties(int connections) {
+        Mode mode = Mode.valueOf(System.getProperty("start-stop.load.mode", Mode.CLOSED.name()).toUpperCase(Locale.ROOT));
+        int rate = Integer.getInteger("start-stop.load.rate", DEFAULT_RATE);
+        long warmupS = Long.getLong("start-stop.load.warmup.s", DEFAULT_WARMUP_S);
+        long durationS = Long.getLong("start-stop.load.duration.s", DEFAULT_DURATION_S);
+        if (connections < 1 || rate < 1 || warmupS < 0 || durationS < 1) {
+            throw new IllegalArgumentException("start-stop.load.connections, start-stop.load.rate and start-stop.load.duration.s must be positive " +
+                    "and start-stop.load.warmup.s not negative, were: " + connections + ", " + rate + ", " + durationS + ", " + warmupS);
+        }
+        return new LoadGenerator(mode, connections, rate, TimeUnit.SECONDS.toNanos(warmupS), TimeUnit.SECONDS.toNanos(durationS), Set.of());
+    }
+
+    /**
+     * Linux only, see {@link ReadinessProbe#pinCurrentThread(java.util.Collection)}
+     *
+     * @param cpus to keep the load generator on, off the CPUs of the application it measures
+     * @return the same load generator pinned to the CPUs
+     */
+    public LoadGenerator pinnedTo(Set<Integer> cpus) {
+        return new LoadGenerator(mode, connections, rate, warmupNs, durationNs, cpus);
+    }
+
+    /**
+     * Blocks for the warm-up and the duration, plus the time the last requests take.
+     *
+     * @param url   of the application, only the host and the port are used
+     * @param paths to cycle through, see {@link LoadMix#sequence()}
+     */
+    public Result run(String url, List<String> paths) throws InterruptedException {
+        URI base = URI.create(url);
+        Vertx vertx = Vertx.vertx();
+        try {
+            HttpClient client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true),
+                    new PoolOptions().setHttp1MaxSize(connections));
+            Run run = new Run(vertx, client, base.getHost(), base.getPort(), paths);
+            LOGGER.info("Load " + mode.name().toLowerCase() + " loop, " + (mode == Mode.CLOSED ? connections + " connections" : rate + " req/s")
+                    + (cpus.isEmpty() ? "" : ", on CPUs " + cpus) + ", warm-up " + TimeUnit.NANOSECONDS.toSeconds(warmupNs) + " s, measured " + TimeUnit.NANOSECONDS.toSeconds(durationNs) + " s: " + paths);
+            if (mode == Mode.CLOSED) {
+                run.closedLoop();
+            } else {
+                run.openLoop();
+            }
+            Result result = new Result(mode, TimeUnit.NANOSECONDS.toMillis(durationNs), run.requests.get(), run.errors.get(), run.histogram);
+            LOGGER.info(result);
+            return result;
+        } finally {
+            // Event loop threads must not linger into the measurement of the shutdown
+            try {
+                vertx.close().toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                LOGGER.warn("Vert.x of the load generator did not close", e);
+            }
+        }
+    }
+
+    private class Run {
+        private final Vertx vertx;
+        private final HttpClient client;
+        private final String host;
+        private final int port;
+        private final List<String> paths;
+        private final Histogram histogram = new ConcurrentHistogram(3);
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicBoolean errorLogged = new AtomicBoolean();
+        private final Set<Thread> pinned = ConcurrentHashMap.newKeySet();
+        private final long startNs;
+        private final long measureFromNs;
+        private final long endNs;
+
+        Run(Vertx vertx, HttpClient client, String host, int port, List<String> paths) {
+            this.vertx = vertx;
+            this.client = client;
+            this.host = host;
+            this.port = port;
+            this.paths = paths;
+            this.startNs = System.nanoTime();
+            this.measureFromNs = startNs + warmupNs;
+            this.endNs = measureFromNs + durationNs;
+        }
+
+        void closedLoop() throws InterruptedException {
+            CountDownLatch finished = new CountDownLatch(connections);
+            for (int i = 0; i < connections; i++) {
+                vertx.runOnContext(v -> next(finished));
+            }
+            awaitOrWarn(finished);
+        }
+
+        private void next(CountDownLatch finished) {
+            long now = System.nanoTime();
+            if (now >= endNs) {
+                finished.countDown();
+                return;
+            }
+            // On the context again, so that a quickly failing request does not recurse
+            send(now, () -> vertx.runOnContext(v -> next(finished)));
+        }
+
+        void openLoop() throws InterruptedException {
+            long periodNs = TimeUnit.SECONDS.toNanos(1) / rate;
+            long total = (endNs - startNs) / periodNs;
+            AtomicInteger outstanding = new AtomicInteger();
+            CountDownLatch finished = new CountDownLatch(1);
+            AtomicLong issued = new AtomicLong();
+            vertx.setPeriodic(1, id -> {
+                long due = Math.min((System.nanoTime() - startNs) / periodNs + 1, total);
+                while (issued.get() < due) {
+                    long dueNs = startNs + issued.getAndIncrement() * periodNs;
+                    if (outstanding.get() >= MAX_OUTSTANDING) {
+                        if (dueNs >= measureFromNs) {
+                            requests.incrementAndGet();
+                            errors.incrementAndGet();
+                        }
+                        continue;
+                    }
+                    outstanding.incrementAndGet();
+                    send(dueNs, () -> {
+                        if (outstanding.decrementAndGet() == 0 && issued.get() >= total) {
+                            finished.countDown();
+                        }
+                    });
+                }
+                if (issued.get() >= total) {
+                    vertx.cancelTimer(id);
+                    if (outstanding.get() == 0) {
+                        finished.countDown();
+                    }
+                }
+            });
+            awaitOrWarn(finished);
+        }
+
+        /**
+         * @param dueNs latency is measured from, and it is recorded only if it is after the warm-up
+         */
+        private void send(long dueNs, Runnable then) {
+            // Requests are sent from the event loops only, each is pinned the first time it sends one, early in the warm-up
+            if (!cpus.isEmpty() && pinned.add(Thread.currentThread())) {
+                ReadinessProbe.pinCurrentThread(cpus);
+            }
+            String path = paths.get((int) (sent.getAndIncrement() % paths.size()));
+            client.request(new RequestOptions()
+                            .setMethod(HttpMethod.GET)
+                            .setHost(host)
+                            .setPort(port)
+                            .setURI(path)
+                            .setIdleTimeout(REQUEST_TIMEOUT_MS))
+                    .compose(request -> request.send())
+                    .compose(response -> response.body().map(body -> response.statusCode()))
+                    .onComplete(ar -> {
+                        long latencyNs = System.nanoTime() - dueNs;
+                        if (dueNs >= measureFromNs) {
+                            requests.incrementAndGet();
+                            if (ar.succeeded() && ar.result() == 200) {
+                                histogram.recordValue(Math.max(1L, TimeUnit.NANOSECONDS.toMicros(latencyNs)));
+                            } else {
+                                errors.incrementAndGet();
+                                if (errorLogged.compareAndSet(false, true)) {
+                                    LOGGER.warn("Request to " + path + " failed: " + (ar.succeeded() ? "HTTP " + ar.result() : ar.cause()));
+                                }
+                            }
+                        }
+                        then.run();
+                    });
+        }
+
+        private void awaitOrWarn(CountDownLatch finished) throws InterruptedException {
+            long remainingNs = endNs - System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REQUEST_TIMEOUT_MS) * 2;
+            if (!finished.await(remainingNs, TimeUnit.NANOSECONDS)) {
+                LOGGER.warn("Requests of the load generator did not finish in time, the results are incomplete");
+            }
+        }
+    }
+}
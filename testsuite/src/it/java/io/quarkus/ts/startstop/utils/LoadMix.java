@@ -0,0 +1,57 @@
+package io.quarkus.ts.startstop.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Endpoints the load generator sends requests to and their relative weights.
+ */
+public enum LoadMix {
+    JAKARTA_REST_MINIMAL(new String[][]{
+            new String[]{"/data/hello", "1"}
+    }),
+    FULL_MICROPROFILE(new String[][]{
+            new String[]{"/data/hello", "2"},
+            new String[]{"/data/serialization/json/complex-dto", "2"},
+            new String[]{"/data/config/injected", "1"},
+            new String[]{"/data/client/test/parameterValue=xxx", "1"}
+    }),
+    GENERATED_SKELETON(new String[][]{
+            new String[]{"/hello", "1"}
+    });
+
+    public final String[][] pathWeight;
+
+    LoadMix(String[][] pathWeight) {
+        this.pathWeight = pathWeight;
+    }
+
+    /**
+     * @return the mix from {@code start-stop.load.mix} system property, e.g. {@code /data/hello:3,/data/serialization/json/complex-dto:1},
+     * if set, this one otherwise, as a sequence to cycle through, each path repeated by its weight
+     */
+    public List<String> sequence() {
+        String property = System.getProperty("start-stop.load.mix");
+        String[][] mix = pathWeight;
+        if (property != null && !property.isBlank()) {
+            String[] entries = property.split(",");
+            mix = new String[entries.length][];
+            for (int i = 0; i < entries.length; i++) {
+                String entry = entries[i].trim();
+                int colon = entry.lastIndexOf(':');
+                mix[i] = colon > 0 && entry.substring(colon + 1).matches("[0-9]+")
+                        ? new String[]{entry.substring(0, colon), entry.substring(colon + 1)}
+                        : new String[]{entry, "1"};
+            }
+        }
+        List<String> sequence = new ArrayList<>();
+        for (String[] pw : mix) {
+            sequence.addAll(Collections.nCopies(Integer.parseInt(pw[1]), pw[0]));
+        }
+        if (sequence.isEmpty()) {
+            throw new IllegalArgumentException("Load mix must contain at least one path with a positive weight, was: " + property);
+        }
+        return sequence;
+    }
+}
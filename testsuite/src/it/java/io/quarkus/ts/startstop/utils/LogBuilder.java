@@ -1,5 +1,8 @@
 package io.quarkus.ts.startstop.utils;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 public class LogBuilder {
@@ -9,12 +12,21 @@ public class LogBuilder {
         public final String headerMarkdown;
         public final String lineCSV;
         public final String lineMarkdown;
+        /**
+         * Numeric columns keyed by header, in the order of the CSV line
+         */
+        public final Map<String, Long> values;
 
         public Log(String headerCSV, String headerMarkdown, String lineCSV, String lineMarkdown) {
+            this(headerCSV, headerMarkdown, lineCSV, lineMarkdown, Map.of());
+        }
+
+        public Log(String headerCSV, String headerMarkdown, String lineCSV, String lineMarkdown, Map<String, Long> values) {
             this.headerCSV = headerCSV;
             this.headerMarkdown = headerMarkdown;
             this.lineCSV = lineCSV;
             this.lineMarkdown = lineMarkdown;
+            this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
         }
     }
 
@@ -32,6 +44,18 @@ public class LogBuilder {
     private long rssKb = -1L;
     private static final String openedFilesHeader = "FDs";
     private long openedFiles = -1L;
+    private static final String rssFirstOKKbHeader = "RSSFirstOKkB";
+    private long rssFirstOKKb = -1L;
+    private static final String peakStartupRssKbHeader = "peakStartupRSSkB";
+    private long peakStartupRssKb = -1L;
+    private static final String cpuToFirstOKMsHeader = "cpuToFirstOKMs";
+    private long cpuToFirstOKMs = -1L;
+    private static final String cpuShutdownMsHeader = "cpuShutdownMs";
+    private long cpuShutdownMs = -1L;
+    /**
+     * Additional columns supplied by collectors, e.g. FDs by kind, kept in insertion order
+     */
+    private final Map<String, Long> metrics = new LinkedHashMap<>();
     private static final String appHeader = "App";
     private Apps app = null;
     private static final String modeHeader = "Mode";
@@ -92,6 +116,22 @@ public class LogBuilder {
         return this;
     }
 
+    public LogBuilder rssFirstOKKb(long rssFirstOKKb) {
+        if (rssFirstOKKb <= 0) {
+            throw new IllegalArgumentException("rssFirstOKKb must be a positive long, was: " + rssFirstOKKb);
+        }
+        this.rssFirstOKKb = rssFirstOKKb;
+        return this;
+    }
+
+    public LogBuilder peakStartupRssKb(long peakStartupRssKb) {
+        if (peakStartupRssKb <= 0) {
+            throw new IllegalArgumentException("peakStartupRssKb must be a positive long, was: " + peakStartupRssKb);
+        }
+        this.peakStartupRssKb = peakStartupRssKb;
+        return this;
+    }
+
     public LogBuilder openedFiles(long openedFiles) {
         if (openedFiles <= 0) {
             throw new IllegalArgumentException("openedFiles must be a positive long, was: " + openedFiles);
@@ -100,6 +140,39 @@ public class LogBuilder {
         return this;
     }
 
+    public LogBuilder cpuToFirstOKMs(long cpuToFirstOKMs) {
+        if (cpuToFirstOKMs < 0) {
+            throw new IllegalArgumentException("cpuToFirstOKMs must be a positive long or 0, was: " + cpuToFirstOKMs);
+        }
+        this.cpuToFirstOKMs = cpuToFirstOKMs;
+        return this;
+    }
+
+    public LogBuilder cpuShutdownMs(long cpuShutdownMs) {
+        if (cpuShutdownMs < 0) {
+            throw new IllegalArgumentException("cpuShutdownMs must be a positive long or 0, was: " + cpuShutdownMs);
+        }
+        this.cpuShutdownMs = cpuShutdownMs;
+        return this;
+    }
+
+    public LogBuilder metric(String header, long value) {
+        if (header == null || header.isBlank() || header.contains(",")) {
+            throw new IllegalArgumentException("header must be a non-blank string without commas, was: " + header);
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException(header + " must be a positive long or 0, was: " + value);
+        }
+        this.metrics.put(header, value);
+        return this;
+    }
+
+    public LogBuilder metrics(Map<String, Long> metrics) {
+        Objects.requireNonNull(metrics, "Valid metrics must be provided");
+        metrics.forEach(this::metric);
+        return this;
+    }
+
     public LogBuilder app(Apps app) {
         Objects.requireNonNull(app, "Valid app flavour must be provided");
         this.app = app;
@@ -115,6 +188,7 @@ public class LogBuilder {
     public Log build() {
         StringBuilder h = new StringBuilder(512);
         StringBuilder l = new StringBuilder(512);
+        Map<String, Long> values = new LinkedHashMap<>();
         int sections = 0;
         if (app != null) {
             h.append(appHeader);
@@ -134,6 +208,7 @@ public class LogBuilder {
             h.append(buildTimeMsHeader);
             h.append(',');
             l.append(buildTimeMs);
+            values.put(buildTimeMsHeader, buildTimeMs);
             l.append(',');
             sections++;
         }
@@ -141,6 +216,7 @@ public class LogBuilder {
             h.append(timeToFirstOKRequestMsHeader);
             h.append(',');
             l.append(timeToFirstOKRequestMs);
+            values.put(timeToFirstOKRequestMsHeader, timeToFirstOKRequestMs);
             l.append(',');
             sections++;
         }
@@ -148,6 +224,7 @@ public class LogBuilder {
             h.append(timeToReloadedOKRequestHeader);
             h.append(',');
             l.append(timeToReloadedOKRequest);
+            values.put(timeToReloadedOKRequestHeader, timeToReloadedOKRequest);
             l.append(',');
             sections++;
         }
@@ -155,6 +232,7 @@ public class LogBuilder {
             h.append(startedInMsHeader);
             h.append(',');
             l.append(startedInMs);
+            values.put(startedInMsHeader, startedInMs);
             l.append(',');
             sections++;
         }
@@ -162,6 +240,7 @@ public class LogBuilder {
             h.append(stoppedInMsHeader);
             h.append(',');
             l.append(stoppedInMs);
+            values.put(stoppedInMsHeader, stoppedInMs);
             l.append(',');
             sections++;
         }
@@ -169,6 +248,7 @@ public class LogBuilder {
             h.append(rssKbHeader);
             h.append(',');
             l.append(rssKb);
+            values.put(rssKbHeader, rssKb);
             l.append(',');
             sections++;
         }
@@ -176,6 +256,47 @@ public class LogBuilder {
             h.append(openedFilesHeader);
             h.append(',');
             l.append(openedFiles);
+            values.put(openedFilesHeader, openedFiles);
+            l.append(',');
+            sections++;
+        }
+        if (rssFirstOKKb != -1L) {
+            h.append(rssFirstOKKbHeader);
+            h.append(',');
+            l.append(rssFirstOKKb);
+            values.put(rssFirstOKKbHeader, rssFirstOKKb);
+            l.append(',');
+            sections++;
+        }
+        if (peakStartupRssKb != -1L) {
+            h.append(peakStartupRssKbHeader);
+            h.append(',');
+            l.append(peakStartupRssKb);
+            values.put(peakStartupRssKbHeader, peakStartupRssKb);
+            l.append(',');
+            sections++;
+        }
+        if (cpuToFirstOKMs != -1L) {
+            h.append(cpuToFirstOKMsHeader);
+            h.append(',');
+            l.append(cpuToFirstOKMs);
+            values.put(cpuToFirstOKMsHeader, cpuToFirstOKMs);
+            l.append(',');
+            sections++;
+        }
+        if (cpuShutdownMs != -1L) {
+            h.append(cpuShutdownMsHeader);
+            h.append(',');
+            l.append(cpuShutdownMs);
+            values.put(cpuShutdownMsHeader, cpuShutdownMs);
+            l.append(',');
+            sections++;
+        }
+        for (Map.Entry<String, Long> metric : metrics.entrySet()) {
+            h.append(metric.getKey());
+            h.append(',');
+            l.append(metric.getValue());
+            values.put(metric.getKey(), metric.getValue());
             l.append(',');
             sections++;
         }
@@ -186,6 +307,6 @@ public class LogBuilder {
         String line = l.toString();
         String lineCSV = line.substring(0, line.length() - 1);
         String lineMarkdown = "|" + line.replaceAll(",", "|");
-        return new Log(headerCSV, headerMarkdown, lineCSV, lineMarkdown);
+        return new Log(headerCSV, headerMarkdown, lineCSV, lineMarkdown, values);
     }
 }
@@ -0,0 +1,222 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Tees output of a process into its log file and, line by line as they arrive, into listeners of interesting events.
+ * Every line is tagged with a {@link System#nanoTime()} timestamp, so the events share one monotonic clock
+ * with the rest of the measurements.
+ * <p>
+ * Lines needed for the log checks are kept, so {@link Logs} does not have to rescan the file once the process stopped.
+ */
+public final class LogStream implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(LogStream.class.getName());
+
+    public enum Event {
+        /**
+         * JVM finished its initialization, needs -Xlog:startuptime, see {@link RunCommandAugmentor#setJvmOptions}
+         */
+        JVM_READY,
+        STARTED,
+        LISTENING,
+        STOPPED,
+        ERROR,
+        /**
+         * Any line, including the ones of the events above
+         */
+        LINE
+    }
+
+    public static class LogLine {
+        public final long timestampNs;
+        public final String line;
+
+        public LogLine(long timestampNs, String line) {
+            this.timestampNs = timestampNs;
+            this.line = line;
+        }
+    }
+
+    private final File log;
+    private final Map<Event, List<Consumer<LogLine>>> listeners = new EnumMap<>(Event.class);
+    private final Map<Event, LogLine> firstOccurrences = Collections.synchronizedMap(new EnumMap<>(Event.class));
+    private final Map<Event, CountDownLatch> firstOccurrenceLatches = new EnumMap<>(Event.class);
+    private final List<String> errorLines = new CopyOnWriteArrayList<>();
+    private final List<String> listeningLines = new CopyOnWriteArrayList<>();
+    private final CountDownLatch end = new CountDownLatch(1);
+    private volatile float startedInS = -1f;
+    private volatile float stoppedInS = -1f;
+    private volatile boolean jvmReady = false;
+    private Thread pump;
+
+    public LogStream(File log) {
+        this.log = log;
+        for (Event event : Event.values()) {
+            listeners.put(event, new CopyOnWriteArrayList<>());
+            firstOccurrenceLatches.put(event, new CountDownLatch(1));
+        }
+    }
+
+    /**
+     * Listeners are called on the pumping thread, keep them short.
+     */
+    public LogStream on(Event event, Consumer<LogLine> listener) {
+        listeners.get(event).add(listener);
+        return this;
+    }
+
+    /**
+     * Starts pumping output of the process, which must not have its output redirected, see {@link Commands#runCommand}.
+     */
+    public LogStream tee(Process process) throws IOException {
+        if (pump != null) {
+            throw new IllegalStateException("Already pumping output of a process into " + log.getName());
+        }
+        Writer writer = Files.newBufferedWriter(log.toPath(), UTF_8);
+        pump = new Thread(() -> pump(process, writer), "log-stream-" + process.pid());
+        pump.setDaemon(true);
+        pump.start();
+        return this;
+    }
+
+    private void pump(Process process, Writer writer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8));
+             BufferedWriter out = new BufferedWriter(writer)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LogLine logLine = new LogLine(System.nanoTime(), line);
+                out.write(line);
+                out.newLine();
+                out.flush();
+                dispatch(logLine);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Reading output of process " + process.pid() + " failed", e);
+        } finally {
+            end.countDown();
+        }
+    }
+
+    private void dispatch(LogLine logLine) {
+        if (!jvmReady && Logs.isJvmReadyLine(logLine.line)) {
+            jvmReady = true;
+            fire(Event.JVM_READY, logLine);
+        }
+        if (startedInS == -1f) {
+            float started = Logs.parseStartedIn(logLine.line);
+            if (started != -1f) {
+                startedInS = started;
+                fire(Event.STARTED, logLine);
+            }
+        }
+        if (stoppedInS == -1f) {
+            float stopped = Logs.parseStoppedIn(logLine.line);
+            if (stopped != -1f) {
+                stoppedInS = stopped;
+                fire(Event.STOPPED, logLine);
+            }
+        }
+        if (Logs.isListeningLine(logLine.line)) {
+            listeningLines.add(logLine.line);
+            fire(Event.LISTENING, logLine);
+        }
+        if (Logs.isErrorLine(logLine.line)) {
+            errorLines.add(logLine.line);
+            fire(Event.ERROR, logLine);
+        }
+        fire(Event.LINE, logLine);
+    }
+
+    private void fire(Event event, LogLine logLine) {
+        if (firstOccurrences.putIfAbsent(event, logLine) == null) {
+            firstOccurrenceLatches.get(event).countDown();
+        }
+        for (Consumer<LogLine> listener : listeners.get(event)) {
+            try {
+                listener.accept(logLine);
+            } catch (RuntimeException e) {
+                LOGGER.error("Listener of " + event + " failed on line: " + logLine.line, e);
+            }
+        }
+    }
+
+    /**
+     * @return the first line of the event, empty if it did not come in time
+     */
+    public Optional<LogLine> await(Event event, long timeout, TimeUnit unit) throws InterruptedException {
+        firstOccurrenceLatches.get(event).await(timeout, unit);
+        return getFirst(event);
+    }
+
+    public Optional<LogLine> getFirst(Event event) {
+        return Optional.ofNullable(firstOccurrences.get(event));
+    }
+
+    /**
+     * Waits until the process closed its output, i.e. everything it printed is in the log file.
+     *
+     * @return false on timeout
+     */
+    public boolean awaitEnd(long timeout, TimeUnit unit) throws InterruptedException {
+        return end.await(timeout, unit);
+    }
+
+    public File getLog() {
+        return log;
+    }
+
+    /**
+     * @return warning and error lines, whitelisting is up to {@link Logs#checkLog}
+     */
+    public List<String> getErrorLines() {
+        return new ArrayList<>(errorLines);
+    }
+
+    public List<String> getListeningLines() {
+        return new ArrayList<>(listeningLines);
+    }
+
+    /**
+     * @return same as {@link Logs#parseStartStopTimestamps(File)}, -1 for what did not appear
+     */
+    public float[] getStartedStopped() {
+        return new float[]{startedInS, stoppedInS};
+    }
+
+    @Override
+    public void close() {
+        if (pump == null) {
+            return;
+        }
+        try {
+            if (!end.await(10, TimeUnit.SECONDS)) {
+                LOGGER.warn("Output of the process is still open, " + log.getName() + " might be incomplete");
+                pump.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
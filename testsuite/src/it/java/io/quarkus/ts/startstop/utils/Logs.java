@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -55,63 +56,110 @@ public class Logs {
     private static final Pattern listeningOnDetectionPattern = Pattern.compile("(?i:.*Listening on:.*)");
     private static final Pattern devExpectedHostPattern = Pattern.compile("(?i:.*localhost:.*)");
     private static final Pattern defaultExpectedHostPattern = Pattern.compile("(?i:.*0.0.0.0:.*)");
+    // e.g. [0.077s][info][startuptime] Create VM, 0.0760181 secs
+    private static final Pattern jvmReadyPattern = Pattern.compile(".*\\[startuptime\\] *Create VM.*");
 
     public static final long SKIP = -1L;
 
     public static void checkLog(String testClass, String testMethod, Apps app, MvnCmds cmd, File log) throws IOException {
+        List<String> errorLines = new ArrayList<>();
         try (Scanner sc = new Scanner(log, UTF_8)) {
-            Set<String> offendingLines = new HashSet<>();
             while (sc.hasNextLine()) {
                 String line = sc.nextLine();
-                boolean error = warnErrorDetectionPattern.matcher(line).matches();
-                if (error) {
-                    if (isWhiteListed(app.whitelistLogLines.errs, line)) {
-                        LOGGER.info(cmd.name() + " log for " + testMethod + " contains whitelisted error: `" + line + "'");
-                    } else  if (isWhiteListed(app.whitelistLogLines.platformErrs(), line)) {
-                        LOGGER.info(cmd.name() + " log for " + testMethod + " contains platform specific whitelisted error: `" + line + "'");
-                    } else {
-                        offendingLines.add(line);
-                    }
+                if (isErrorLine(line)) {
+                    errorLines.add(line);
                 }
             }
+        }
+        checkErrorLines(testClass, testMethod, app, cmd, log.getName(), errorLines);
+    }
+
+    /**
+     * Same as {@link #checkLog(String, String, Apps, MvnCmds, File)}, using lines collected while the log was written
+     */
+    public static void checkLog(String testClass, String testMethod, Apps app, MvnCmds cmd, LogStream log) {
+        checkErrorLines(testClass, testMethod, app, cmd, log.getLog().getName(), log.getErrorLines());
+    }
 
-            // Randomly fails when vertx-cache temporary directory exists. Related to https://github.com/quarkusio/quarkus/issues/7678
-            // And https://github.com/quarkusio/quarkus/pull/15541/files#diff-a38e0d86cf6a637c19b6e0a0e23959f644886bdcc0f0e5615ce7cfa0e6bc9909R244
-            if (Commands.isThisWindows && isDevModeError(offendingLines)) {
-            	Stream.of(WhitelistLogLines.WINDOWS_DEV_MODE_ERRORS.errs).forEach(lineToIgnore -> offendingLines.removeIf(line -> lineToIgnore.matcher(line).matches()));
+    private static void checkErrorLines(String testClass, String testMethod, Apps app, MvnCmds cmd, String logName, List<String> errorLines) {
+        Set<String> offendingLines = new HashSet<>();
+        for (String line : errorLines) {
+            if (BuildStepMetrics.isStartupStepLine(line)) {
+                // Names of the steps, e.g. ErrorHandlerProcessor.setupHandlers, are not errors
+                continue;
             }
+            if (isWhiteListed(app.whitelistLogLines.errs, line)) {
+                LOGGER.info(cmd.name() + " log for " + testMethod + " contains whitelisted error: `" + line + "'");
+            } else  if (isWhiteListed(app.whitelistLogLines.platformErrs(), line)) {
+                LOGGER.info(cmd.name() + " log for " + testMethod + " contains platform specific whitelisted error: `" + line + "'");
+            } else {
+                offendingLines.add(line);
+            }
+        }
 
-            assertTrue(offendingLines.isEmpty(),
-                    cmd.name() + " log should not contain error or warning lines that are not whitelisted. " +
-                            "See testsuite" + File.separator + "target" + File.separator + "archived-logs" +
-                            File.separator + testClass + File.separator + testMethod + File.separator + log.getName() +
-                            " and check these offending lines: \n" + String.join("\n", offendingLines));
+        // Randomly fails when vertx-cache temporary directory exists. Related to https://github.com/quarkusio/quarkus/issues/7678
+        // And https://github.com/quarkusio/quarkus/pull/15541/files#diff-a38e0d86cf6a637c19b6e0a0e23959f644886bdcc0f0e5615ce7cfa0e6bc9909R244
+        if (Commands.isThisWindows && isDevModeError(offendingLines)) {
+        	Stream.of(WhitelistLogLines.WINDOWS_DEV_MODE_ERRORS.errs).forEach(lineToIgnore -> offendingLines.removeIf(line -> lineToIgnore.matcher(line).matches()));
         }
+
+        assertTrue(offendingLines.isEmpty(),
+                cmd.name() + " log should not contain error or warning lines that are not whitelisted. " +
+                        "See testsuite" + File.separator + "target" + File.separator + "archived-logs" +
+                        File.separator + testClass + File.separator + testMethod + File.separator + logName +
+                        " and check these offending lines: \n" + String.join("\n", offendingLines));
     }
-    
+
     public static void checkListeningHost(String testClass, String testMethod, MvnCmds cmd, File log) throws IOException {
-    	boolean isOffending = true;
+    	List<String> listeningLines = new ArrayList<>();
     	try (Scanner sc = new Scanner(log, UTF_8)) {
     		while (sc.hasNextLine()) {
     			String line = sc.nextLine();
-    			if (listeningOnDetectionPattern.matcher(line).matches()) { 
-    				Pattern expectedHostPattern = defaultExpectedHostPattern;
-    				if (cmd == MvnCmds.DEV || cmd == MvnCmds.MVNW_DEV) {
-    					expectedHostPattern = devExpectedHostPattern;
-    				}
-    				
-    				isOffending = !expectedHostPattern.matcher(line).matches();
+    			if (isListeningLine(line)) {
+    				listeningLines.add(line);
     			}
     		}
     	}
-    	
+    	checkListeningLines(testClass, testMethod, cmd, log.getName(), listeningLines);
+    }
+
+    /**
+     * Same as {@link #checkListeningHost(String, String, MvnCmds, File)}, using lines collected while the log was written
+     */
+    public static void checkListeningHost(String testClass, String testMethod, MvnCmds cmd, LogStream log) {
+    	checkListeningLines(testClass, testMethod, cmd, log.getLog().getName(), log.getListeningLines());
+    }
+
+    private static void checkListeningLines(String testClass, String testMethod, MvnCmds cmd, String logName, List<String> listeningLines) {
+    	boolean isOffending = true;
+    	for (String line : listeningLines) {
+    		Pattern expectedHostPattern = defaultExpectedHostPattern;
+    		if (cmd == MvnCmds.DEV || cmd == MvnCmds.MVNW_DEV) {
+    			expectedHostPattern = devExpectedHostPattern;
+    		}
+
+    		isOffending = !expectedHostPattern.matcher(line).matches();
+    	}
+
     	assertFalse(isOffending,
                 cmd.name() + " log should contain expected listening host. " +
                         "See testsuite" + File.separator + "target" + File.separator + "archived-logs" +
-                        File.separator + testClass + File.separator + testMethod + File.separator + log.getName() +
+                        File.separator + testClass + File.separator + testMethod + File.separator + logName +
                         " and check the listening host.");
     }
 
+    static boolean isErrorLine(String line) {
+        return warnErrorDetectionPattern.matcher(line).matches();
+    }
+
+    static boolean isListeningLine(String line) {
+        return listeningOnDetectionPattern.matcher(line).matches();
+    }
+
+    static boolean isJvmReadyLine(String line) {
+        return jvmReadyPattern.matcher(line).matches();
+    }
+
     private static boolean isDevModeError(Set<String> offendingLines) {
         return offendingLines.stream().anyMatch(line -> devModeError.matcher(line).matches());
     }
@@ -158,6 +206,37 @@ public class Logs {
     }
 
     public static void checkThreshold(Apps app, MvnCmds cmd, long rssKb, long timeToFirstOKRequest, long timeToReloadedOKRequest) {
+        checkThreshold(app, cmd, rssKb, timeToFirstOKRequest, timeToReloadedOKRequest, 1d);
+    }
+
+    /**
+     * @param timeFactor time thresholds are multiplied by, see {@link Calibration#timeFactor}
+     */
+    public static void checkThreshold(Apps app, MvnCmds cmd, long rssKb, long timeToFirstOKRequest, long timeToReloadedOKRequest, double timeFactor) {
+        checkThreshold(app, cmd, rssKb, "", timeToFirstOKRequest, "", timeToReloadedOKRequest, timeFactor);
+    }
+
+    /**
+     * Checks {@link Statistics#estimate} of the iterations against the thresholds, null skips the check.
+     */
+    public static void checkThreshold(Apps app, MvnCmds cmd, Statistics rssKb, Statistics timeToFirstOKRequest) {
+        checkThreshold(app, cmd, rssKb, timeToFirstOKRequest, 1d);
+    }
+
+    /**
+     * @param timeFactor time thresholds are multiplied by, see {@link Calibration#timeFactor}
+     */
+    public static void checkThreshold(Apps app, MvnCmds cmd, Statistics rssKb, Statistics timeToFirstOKRequest, double timeFactor) {
+        checkThreshold(app, cmd,
+                rssKb == null ? SKIP : rssKb.estimateAsLong(), rssKb == null ? "" : " (" + rssKb + ")",
+                timeToFirstOKRequest == null ? SKIP : timeToFirstOKRequest.estimateAsLong(),
+                timeToFirstOKRequest == null ? "" : " (" + timeToFirstOKRequest + ")",
+                SKIP, timeFactor);
+    }
+
+    private static void checkThreshold(Apps app, MvnCmds cmd, long rssKb, String rssKbDetails,
+                                       long timeToFirstOKRequest, String timeToFirstOKRequestDetails, long timeToReloadedOKRequest,
+                                       double timeFactor) {
         String propPrefix = isThisWindows ? "windows" : "linux";
         if (cmd == MvnCmds.JVM) {
             propPrefix += ".jvm";
@@ -171,27 +250,35 @@ public class Logs {
             throw new IllegalArgumentException("Unexpected mode. Check MvnCmds.java.");
         }
         if (timeToFirstOKRequest != SKIP) {
-            long timeToFirstOKRequestThresholdMs = app.thresholdProperties.get(propPrefix + ".time.to.first.ok.request.threshold.ms");
+            long timeToFirstOKRequestThresholdMs = scaleThreshold(app.thresholdProperties.get(propPrefix + ".time.to.first.ok.request.threshold.ms"), timeFactor);
             assertTrue(timeToFirstOKRequest <= timeToFirstOKRequestThresholdMs,
                     "Application " + app + " in " + cmd + " mode took " + timeToFirstOKRequest
-                            + " ms to get the first OK request, which is over " +
-                            timeToFirstOKRequestThresholdMs + " ms threshold.");
+                            + " ms" + timeToFirstOKRequestDetails + " to get the first OK request, which is over " +
+                            timeToFirstOKRequestThresholdMs + " ms threshold" + scaledBy(timeFactor) + ".");
         }
         if (rssKb != SKIP) {
             long rssThresholdKb = app.thresholdProperties.get(propPrefix + ".RSS.threshold.kB");
             assertTrue(rssKb <= rssThresholdKb,
-                    "Application " + app + " in " + cmd + " consumed " + rssKb + " kB of RSS memory, which is over " +
+                    "Application " + app + " in " + cmd + " consumed " + rssKb + " kB" + rssKbDetails + " of RSS memory, which is over " +
                             rssThresholdKb + " kB threshold.");
         }
         if (timeToReloadedOKRequest != SKIP) {
-            long timeToReloadedOKRequestThresholdMs = app.thresholdProperties.get(propPrefix + ".time.to.reload.threshold.ms");
+            long timeToReloadedOKRequestThresholdMs = scaleThreshold(app.thresholdProperties.get(propPrefix + ".time.to.reload.threshold.ms"), timeFactor);
             assertTrue(timeToReloadedOKRequest <= timeToReloadedOKRequestThresholdMs,
                     "Application " + app + " in " + cmd + " mode took " + timeToReloadedOKRequest
                             + " ms to get the first OK request after dev mode reload, which is over " +
-                            timeToReloadedOKRequestThresholdMs + " ms threshold.");
+                            timeToReloadedOKRequestThresholdMs + " ms threshold" + scaledBy(timeFactor) + ".");
         }
     }
 
+    private static long scaleThreshold(long threshold, double factor) {
+        return factor == 1d ? threshold : Math.round(threshold * factor);
+    }
+
+    private static String scaledBy(double factor) {
+        return factor == 1d ? "" : String.format(Locale.ROOT, " (scaled by calibration factor %.3f)", factor);
+    }
+
     public static void archiveLog(String testClass, String testMethod, File log) throws IOException {
         if (log == null || !log.exists()) {
             LOGGER.warn("log must be a valid, existing file. Skipping operation.");
@@ -270,14 +357,109 @@ public class Logs {
         return destDir;
     }
 
+    /**
+     * Appends the line of the log. The columns depend on what was measured, so when they differ from those already in the file,
+     * the file is rewritten with the columns of both, the values a line does not have are -1.
+     */
     public static void logMeasurements(LogBuilder.Log log, Path path) throws IOException {
         if (Files.notExists(path)) {
             Files.write(path, (log.headerCSV + "\n").getBytes(UTF_8), StandardOpenOption.CREATE);
+        } else {
+            List<String> lines = Files.readAllLines(path, UTF_8);
+            if (!lines.isEmpty() && !lines.get(0).equals(log.headerCSV)) {
+                List<String> columns = new ArrayList<>(Arrays.asList(lines.get(0).split(",")));
+                for (String column : log.headerCSV.split(",")) {
+                    if (!columns.contains(column)) {
+                        columns.add(column);
+                    }
+                }
+                String header = String.join(",", columns);
+                StringBuilder csv = new StringBuilder(header).append('\n');
+                for (String line : lines.subList(1, lines.size())) {
+                    if (!line.isBlank()) {
+                        csv.append(toColumns(lines.get(0), line, columns)).append('\n');
+                    }
+                }
+                csv.append(toColumns(log.headerCSV, log.lineCSV, columns)).append('\n');
+                Files.write(path, csv.toString().getBytes(UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+                LOGGER.info("\n" + header + "\n" + toColumns(log.headerCSV, log.lineCSV, columns));
+                return;
+            }
         }
         Files.write(path, (log.lineCSV + "\n").getBytes(UTF_8), StandardOpenOption.APPEND);
         LOGGER.info("\n" + log.headerCSV + "\n" + log.lineCSV);
     }
 
+    private static String toColumns(String headerCSV, String lineCSV, List<String> columns) {
+        List<String> header = Arrays.asList(headerCSV.split(","));
+        String[] values = lineCSV.split(",");
+        List<String> line = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            int index = header.indexOf(column);
+            line.add(index >= 0 && index < values.length ? values[index] : "-1");
+        }
+        return String.join(",", line);
+    }
+
+    /**
+     * Appends statistics of the iterations next to the measurements
+     *
+     * @return the same as a Markdown table for the report
+     */
+    public static String logSummary(Apps app, MvnCmds cmd, List<Statistics> statistics, Path path) throws IOException {
+        String headerCSV = "App,Mode," + Statistics.HEADER_CSV;
+        StringBuilder csv = new StringBuilder();
+        StringBuilder markdown = new StringBuilder();
+        markdown.append('|').append(headerCSV.replaceAll(",", "|")).append("|\n|")
+                .append(" --- |".repeat(headerCSV.split(",").length)).append('\n');
+        for (Statistics s : statistics) {
+            String lineCSV = app + "," + cmd + "," + s.lineCSV();
+            csv.append(lineCSV).append('\n');
+            markdown.append('|').append(lineCSV.replaceAll(",", "|")).append("|\n");
+        }
+        if (Files.notExists(path)) {
+            Files.write(path, (headerCSV + "\n").getBytes(UTF_8), StandardOpenOption.CREATE);
+        }
+        Files.write(path, csv.toString().getBytes(UTF_8), StandardOpenOption.APPEND);
+        LOGGER.info("\n" + headerCSV + "\n" + csv);
+        return markdown.toString();
+    }
+
+    /**
+     * Appends comparison with the baseline next to the measurements
+     *
+     * @return the same as a Markdown table for the report
+     */
+    public static String logBaselineComparison(Apps app, MvnCmds cmd, List<Baseline.Comparison> comparisons, Path path) throws IOException {
+        String headerCSV = "App,Mode," + Baseline.HEADER_CSV;
+        StringBuilder csv = new StringBuilder();
+        StringBuilder markdown = new StringBuilder();
+        markdown.append('|').append(headerCSV.replaceAll(",", "|")).append("|\n|")
+                .append(" --- |".repeat(headerCSV.split(",").length)).append('\n');
+        for (Baseline.Comparison c : comparisons) {
+            String lineCSV = app + "," + cmd + "," + c.lineCSV();
+            csv.append(lineCSV).append('\n');
+            markdown.append('|').append(lineCSV.replaceAll(",", "|")).append("|\n");
+        }
+        if (Files.notExists(path)) {
+            Files.write(path, (headerCSV + "\n").getBytes(UTF_8), StandardOpenOption.CREATE);
+        }
+        Files.write(path, csv.toString().getBytes(UTF_8), StandardOpenOption.APPEND);
+        LOGGER.info("\n" + headerCSV + "\n" + csv);
+        return markdown.toString();
+    }
+
+    public static void checkBaseline(Apps app, MvnCmds cmd, Baseline baseline, List<Baseline.Comparison> comparisons) {
+        List<String> regressions = comparisons.stream()
+                .filter(c -> c.regression)
+                .map(Baseline.Comparison::toString)
+                .collect(Collectors.toList());
+        assertTrue(regressions.isEmpty(),
+                "Application " + app + " in " + cmd + " mode regressed compared to the baseline in " + baseline.dir +
+                        " (Mann-Whitney U p < " + baseline.alpha + ", Cliff's delta >= " + baseline.minEffect + "): " +
+                        String.join("; ", regressions));
+    }
+
     /**
      * List Jar file names failing regexp pattern check
      *
@@ -300,40 +482,65 @@ public class Logs {
             while (sc.hasNextLine()) {
                 String line = sc.nextLine();
 
-                Matcher m = startedPatternControlSymbols.matcher(line);
-                if (startedStopped[0] == -1f && m.matches()) {
-                    startedStopped[0] = Float.parseFloat(m.group(1));
-                    continue;
+                if (startedStopped[0] == -1f) {
+                    startedStopped[0] = parseStartedIn(line);
+                    if (startedStopped[0] != -1f) {
+                        continue;
+                    }
                 }
 
-                m = startedPattern.matcher(line);
-                if (startedStopped[0] == -1f && m.matches()) {
-                    startedStopped[0] = Float.parseFloat(m.group(1));
-                    continue;
+                if (startedStopped[1] == -1f) {
+                    startedStopped[1] = parseStoppedIn(line);
                 }
+            }
+        }
+        reportMissingStartStopTimestamps(startedStopped, log.getName());
+        return startedStopped;
+    }
 
-                m = stoppedPatternControlSymbols.matcher(line);
-                if (startedStopped[1] == -1f && m.matches()) {
-                    startedStopped[1] = Float.parseFloat(m.group(1));
-                    continue;
-                }
+    /**
+     * Same as {@link #parseStartStopTimestamps(File)}, using values caught while the log was written
+     */
+    public static float[] parseStartStopTimestamps(LogStream log) {
+        float[] startedStopped = log.getStartedStopped();
+        reportMissingStartStopTimestamps(startedStopped, log.getLog().getName());
+        return startedStopped;
+    }
 
-                m = stoppedPattern.matcher(line);
-                if (startedStopped[1] == -1f && m.matches()) {
-                    startedStopped[1] = Float.parseFloat(m.group(1));
-                }
+    /**
+     * @return seconds from "started in" line or -1
+     */
+    static float parseStartedIn(String line) {
+        return parseSeconds(line, startedPatternControlSymbols, startedPattern);
+    }
+
+    /**
+     * @return seconds from "stopped in" line or -1
+     */
+    static float parseStoppedIn(String line) {
+        return parseSeconds(line, stoppedPatternControlSymbols, stoppedPattern);
+    }
+
+    private static float parseSeconds(String line, Pattern... patterns) {
+        for (Pattern p : patterns) {
+            Matcher m = p.matcher(line);
+            if (m.matches()) {
+                return Float.parseFloat(m.group(1));
             }
         }
+        return -1f;
+    }
+
+    private static void reportMissingStartStopTimestamps(float[] startedStopped, String logName) {
         if (startedStopped[0] == -1f) {
             LOGGER.error("Parsing start time from log failed. " +
                     "Might not be the right time to call this method. The process might have ben killed before it wrote to log." +
-                    "Find " + log.getName() + " in your target dir.");
+                    "Find " + logName + " in your target dir.");
         }
         if (startedStopped[1] == -1f) {
             LOGGER.error("Parsing stop time from log failed. " +
                     "Might not be the right time to call this method. The process might have been killed before it wrote to log." +
-                    "Find " + log.getName() + " in your target dir.");
+                    "Find " + logName + " in your target dir.");
         }
-        return startedStopped;
     }
 }
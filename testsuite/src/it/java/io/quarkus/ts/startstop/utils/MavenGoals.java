@@ -0,0 +1,261 @@
+package io.quarkus.ts.startstop.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Wall time of every goal of a Maven build, from the timestamps {@link LogStream} gives to the lines Maven prints
+ * when it starts a goal, e.g. {@code [INFO] --- compiler:3.13.0:compile (default-compile) @ app ---}.
+ * A goal lasts until the next one starts or the build ends, so the time Maven spends between goals counts into the former.
+ * <p>
+ * The goals are summed up by the {@link Phase} of the build they belong to. Maven resolves project dependencies right before
+ * the first goal that needs them, so resolution is the time until the first goal, i.e. reading the POM and resolving plugins,
+ * plus the time spent downloading artifacts during the goals.
+ */
+public final class MavenGoals implements Consumer<LogStream.LogLine> {
+
+    public static final String COLUMN_PREFIX = "mvn";
+    public static final String DEFAULT_DIAGNOSTIC_GOALS = "dependency:tree,quarkus:dependency-tree";
+
+    // e.g. "[INFO] --- compiler:3.13.0:compile (default-compile) @ app ---", Maven before 3.9 prints the plugin artifactId
+    private static final Pattern goalPattern = Pattern.compile("^\\[INFO] --- ([\\w.-]+):[\\w.-]+:([\\w.-]+) \\(([^)]*)\\) @ \\S+ ---");
+    // e.g. "[INFO] Downloading from central: https://..." or "[INFO] Downloaded from central: ... (12 kB at 40 kB/s)"
+    private static final Pattern downloadPattern = Pattern.compile("^\\[INFO] Download(?:ing|ed) from ");
+    private static final Pattern endPattern = Pattern.compile("^\\[INFO] BUILD (?:SUCCESS|FAILURE)");
+    private static final Pattern ansiPattern = Pattern.compile("\u001B\\[[;\\d]*m");
+
+    public enum Phase {
+        RESOLUTION("Resolution"),
+        CLEAN("Clean"),
+        COMPILE("Compile"),
+        /**
+         * quarkus:build, in native mode including the native image build
+         */
+        AUGMENTATION("Augmentation"),
+        PACKAGING("Packaging"),
+        /**
+         * Goals that only print information about the build, see {@code start-stop.build.diagnostic-goals}
+         */
+        DIAGNOSTICS("Diagnostics"),
+        OTHER("Other");
+
+        public final String column;
+
+        Phase(String column) {
+            this.column = COLUMN_PREFIX + column + "Ms";
+        }
+    }
+
+    public static class Goal {
+        /**
+         * Plugin prefix and goal, e.g. compiler:compile
+         */
+        public final String goal;
+        public final String execution;
+        public final Phase phase;
+        public final long startNs;
+        long endNs = -1L;
+        long downloadNs = 0L;
+
+        Goal(String goal, String execution, Phase phase, long startNs) {
+            this.goal = goal;
+            this.execution = execution;
+            this.phase = phase;
+            this.startNs = startNs;
+        }
+
+        public long ms() {
+            return TimeUnit.NANOSECONDS.toMillis(endNs - startNs);
+        }
+
+        public long downloadMs() {
+            return TimeUnit.NANOSECONDS.toMillis(downloadNs);
+        }
+    }
+
+    private final long startNs;
+    private final Set<String> diagnosticGoals;
+    private final List<Goal> goals = new ArrayList<>();
+    private long downloadStartNs = -1L;
+    private long downloadEndNs = -1L;
+    private long lastNs;
+    private boolean ended = false;
+
+    private MavenGoals(long startNs, Set<String> diagnosticGoals) {
+        this.startNs = startNs;
+        this.lastNs = startNs;
+        this.diagnosticGoals = diagnosticGoals;
+    }
+
+    /**
+     * Call right before the build starts, as the resolution is measured from now
+     *
+     * @return goals with the diagnostic ones from {@code start-stop.build.diagnostic-goals} system property
+     */
+    public static MavenGoals start() {
+        Set<String> diagnosticGoals = Arrays.stream(System.getProperty("start-stop.build.diagnostic-goals", DEFAULT_DIAGNOSTIC_GOALS).split(","))
+                .map(String::trim)
+                .filter(goal -> !goal.isEmpty())
+                .collect(Collectors.toSet());
+        return new MavenGoals(System.nanoTime(), diagnosticGoals);
+    }
+
+    /**
+     * Called by {@link LogStream} on its pumping thread for every line of the build
+     */
+    @Override
+    public synchronized void accept(LogStream.LogLine logLine) {
+        if (ended) {
+            return;
+        }
+        String line = ansiPattern.matcher(logLine.line).replaceAll("");
+        lastNs = logLine.timestampNs;
+        if (downloadPattern.matcher(line).find()) {
+            if (downloadStartNs == -1L) {
+                downloadStartNs = logLine.timestampNs;
+            }
+            downloadEndNs = logLine.timestampNs;
+        } else {
+            endDownload();
+        }
+        Matcher m = goalPattern.matcher(line);
+        if (m.find()) {
+            endGoal(logLine.timestampNs);
+            String goal = prefix(m.group(1)) + ":" + m.group(2);
+            goals.add(new Goal(goal, m.group(3), phase(goal), logLine.timestampNs));
+        } else if (endPattern.matcher(line).find()) {
+            endGoal(logLine.timestampNs);
+            ended = true;
+        }
+    }
+
+    /**
+     * Downloads come in bursts of lines, a burst ends with its last line
+     */
+    private void endDownload() {
+        if (downloadStartNs != -1L && !goals.isEmpty()) {
+            goals.get(goals.size() - 1).downloadNs += downloadEndNs - downloadStartNs;
+        }
+        downloadStartNs = -1L;
+    }
+
+    private void endGoal(long ns) {
+        if (!goals.isEmpty() && goals.get(goals.size() - 1).endNs == -1L) {
+            goals.get(goals.size() - 1).endNs = ns;
+        }
+    }
+
+    /**
+     * e.g. maven-compiler-plugin to compiler, quarkus-maven-plugin to quarkus
+     */
+    static String prefix(String plugin) {
+        if (plugin.startsWith("maven-") && plugin.endsWith("-plugin")) {
+            return plugin.substring("maven-".length(), plugin.length() - "-plugin".length());
+        }
+        if (plugin.endsWith("-maven-plugin")) {
+            return plugin.substring(0, plugin.length() - "-maven-plugin".length());
+        }
+        return plugin;
+    }
+
+    Phase phase(String goal) {
+        if (diagnosticGoals.contains(goal)) {
+            return Phase.DIAGNOSTICS;
+        }
+        String plugin = goal.substring(0, goal.indexOf(':'));
+        switch (plugin) {
+            case "clean":
+                return Phase.CLEAN;
+            case "resources":
+            case "compiler":
+                return Phase.COMPILE;
+            case "jar":
+            case "install":
+            case "deploy":
+            case "assembly":
+            case "war":
+            case "shade":
+                return Phase.PACKAGING;
+            case "quarkus":
+                if (goal.startsWith("quarkus:generate-code")) {
+                    return Phase.COMPILE;
+                }
+                return goal.equals("quarkus:build") ? Phase.AUGMENTATION : Phase.OTHER;
+            default:
+                return Phase.OTHER;
+        }
+    }
+
+    /**
+     * @return goals in the order they ran, the last one ends with the last line if the build did not end
+     */
+    public synchronized List<Goal> getGoals() {
+        endDownload();
+        endGoal(lastNs);
+        return new ArrayList<>(goals);
+    }
+
+    /**
+     * @return milliseconds by phase, downloads during goals count into {@link Phase#RESOLUTION} rather than their phase
+     */
+    public Map<Phase, Long> phases() {
+        List<Goal> goals = getGoals();
+        Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, 0L);
+        }
+        phases.put(Phase.RESOLUTION, TimeUnit.NANOSECONDS.toMillis((goals.isEmpty() ? lastNs : goals.get(0).startNs) - startNs));
+        for (Goal goal : goals) {
+            phases.merge(goal.phase, goal.ms() - goal.downloadMs(), Long::sum);
+            phases.merge(Phase.RESOLUTION, goal.downloadMs(), Long::sum);
+        }
+        return phases;
+    }
+
+    /**
+     * @return e.g. mvnResolutionMs, mvnCompileMs or mvnAugmentationMs
+     */
+    public Map<String, Long> columns() {
+        Map<String, Long> columns = new LinkedHashMap<>();
+        phases().forEach((phase, ms) -> columns.put(phase.column, ms));
+        return columns;
+    }
+
+    public long getDiagnosticsMs() {
+        return phases().get(Phase.DIAGNOSTICS);
+    }
+
+    public void write(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder("goal,execution,phase,ms,downloadMs\n");
+        for (Goal goal : getGoals()) {
+            sb.append(goal.goal).append(',').append(goal.execution).append(',').append(goal.phase).append(',')
+                    .append(goal.ms()).append(',').append(goal.downloadMs()).append('\n');
+        }
+        Files.write(file, sb.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * e.g. "resolution 3021 ms, clean 120 ms, compile 2310 ms, augmentation 5230 ms, packaging 0 ms, diagnostics 800 ms, other 0 ms"
+     */
+    @Override
+    public String toString() {
+        return phases().entrySet().stream()
+                .map(e -> e.getKey().name().toLowerCase() + " " + e.getValue() + " ms")
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,295 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * RSS, PSS and dirty memory of a process grouped by where the mappings come from, read from /proc/&lt;pid&gt;/smaps,
+ * i.e. whether RSS went to the binary, the native image heap, anonymous memory, thread stacks or shared libraries.
+ * Anonymous memory is not told apart any further, the Java heap, malloc arenas and metaspace all end up there.
+ */
+public final class MemoryMaps {
+
+    private static final Logger LOGGER = Logger.getLogger(MemoryMaps.class.getName());
+
+    public static final String IMAGE_HEAP_SECTION = ".svm_heap";
+    /**
+     * glibc guard page plus the JVM stack guard zones are well below this, reserved Java heap and metaspace above
+     */
+    private static final long MAX_STACK_GUARD_KB = 1024L;
+
+    // e.g. "7f2c4a021000-7f2c4a022000 rw-p 00021000 fd:01 1835027                    /usr/lib64/libc.so.6"
+    private static final Pattern mappingPattern = Pattern.compile("^([0-9a-f]+)-([0-9a-f]+) (\\S{4}) ([0-9a-f]+) \\S+ \\d+\\s*(.*)$");
+    // e.g. "Private_Dirty:        12 kB"
+    private static final Pattern fieldPattern = Pattern.compile("^(\\w+):\\s+(\\d+) kB$");
+
+    public enum Group {
+        BINARY_TEXT("BinaryText", "Executable code of the binary"),
+        BINARY_DATA("BinaryData", "Other mappings of the binary"),
+        IMAGE_HEAP("ImageHeap", "Native image heap mapped from the binary"),
+        BRK_HEAP("BrkHeap", "[heap], the main malloc arena"),
+        ANONYMOUS("Anonymous", "Anonymous, Java heap, other malloc arenas, metaspace, code cache"),
+        THREAD_STACKS("ThreadStacks", "Thread stacks"),
+        SHARED_LIBRARIES("SharedLibraries", "Shared libraries"),
+        JARS("Jars", "Jars, JDK modules and CDS archive"),
+        OTHER("Other", "Other files and kernel mappings");
+
+        public final String column;
+        public final String description;
+
+        Group(String column, String description) {
+            this.column = column;
+            this.description = description;
+        }
+    }
+
+    public static class Usage {
+        public final long mappings;
+        public final long rssKb;
+        public final long pssKb;
+        public final long dirtyKb;
+
+        public Usage(long mappings, long rssKb, long pssKb, long dirtyKb) {
+            this.mappings = mappings;
+            this.rssKb = rssKb;
+            this.pssKb = pssKb;
+            this.dirtyKb = dirtyKb;
+        }
+
+        public Usage plus(Usage other) {
+            return new Usage(mappings + other.mappings, rssKb + other.rssKb, pssKb + other.pssKb, dirtyKb + other.dirtyKb);
+        }
+    }
+
+    public static class Breakdown {
+        /**
+         * Every group, in the order of {@link Group}, empty ones included
+         */
+        public final Map<Group, Usage> groups;
+
+        public Breakdown(Map<Group, Usage> groups) {
+            this.groups = groups;
+        }
+
+        public Usage total() {
+            return groups.values().stream().reduce(new Usage(0L, 0L, 0L, 0L), Usage::plus);
+        }
+
+        /**
+         * @param suffix of the headers, e.g. "FirstOK" gives smapsImageHeapRssFirstOKkB, smapsImageHeapPssFirstOKkB, ...
+         * @return RSS, PSS and dirty kB of every group keyed by CSV header
+         */
+        public Map<String, Long> columns(String suffix) {
+            Map<String, Long> columns = new LinkedHashMap<>();
+            groups.forEach((group, usage) -> {
+                columns.put("smaps" + group.column + "Rss" + suffix + "kB", usage.rssKb);
+                columns.put("smaps" + group.column + "Pss" + suffix + "kB", usage.pssKb);
+                columns.put("smaps" + group.column + "Dirty" + suffix + "kB", usage.dirtyKb);
+            });
+            return columns;
+        }
+
+        public String toMarkdown() {
+            StringBuilder sb = new StringBuilder("|Group|Mappings|RSS kB|PSS kB|Dirty kB|\n|---|---|---|---|---|\n");
+            groups.forEach((group, usage) -> row(sb, group.description, usage));
+            row(sb, "Total", total());
+            return sb.toString();
+        }
+
+        private static void row(StringBuilder sb, String name, Usage usage) {
+            sb.append('|').append(name).append('|').append(usage.mappings).append('|').append(usage.rssKb).append('|')
+                    .append(usage.pssKb).append('|').append(usage.dirtyKb).append("|\n");
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            groups.forEach((group, usage) -> {
+                if (usage.rssKb > 0) {
+                    sb.append(sb.length() == 0 ? "" : ", ").append(group.column).append(' ').append(usage.rssKb).append(" kB");
+                }
+            });
+            return "RSS " + total().rssKb + " kB: " + sb;
+        }
+    }
+
+    private MemoryMaps() {
+    }
+
+    /**
+     * @return memory maps reader if enabled by {@code start-stop.smaps} system property and there is /proc to read from
+     */
+    public static Optional<MemoryMaps> create() {
+        if (!Boolean.getBoolean("start-stop.smaps")) {
+            return Optional.empty();
+        }
+        if (!isThisLinux) {
+            LOGGER.info("start-stop.smaps is supported only on Linux");
+            return Optional.empty();
+        }
+        return Optional.of(new MemoryMaps());
+    }
+
+    public Breakdown read(long pid) throws IOException {
+        Path proc = Paths.get("/proc", Long.toString(pid));
+        String binary = Files.readSymbolicLink(proc.resolve("exe")).toString();
+        long[] imageHeap = sectionFileRange(Paths.get(binary), IMAGE_HEAP_SECTION);
+        return parse(Files.readAllLines(proc.resolve("smaps"), US_ASCII), binary, imageHeap);
+    }
+
+    /**
+     * @param binary    path of the executable, its mappings are the binary text and data
+     * @param imageHeap file offset range of the image heap in the binary, its mappings are the image heap, null if none
+     */
+    static Breakdown parse(List<String> lines, String binary, long[] imageHeap) {
+        Map<Group, Usage> groups = new EnumMap<>(Group.class);
+        for (Group group : Group.values()) {
+            groups.put(group, new Usage(0L, 0L, 0L, 0L));
+        }
+        Mapping previous = null;
+        Mapping current = null;
+        for (String line : lines) {
+            Matcher m = mappingPattern.matcher(line);
+            if (m.matches()) {
+                if (current != null) {
+                    groups.merge(current.group(binary, imageHeap, previous), current.usage(), Usage::plus);
+                }
+                previous = current;
+                current = new Mapping(Long.parseUnsignedLong(m.group(1), 16), Long.parseUnsignedLong(m.group(2), 16), m.group(3),
+                        Long.parseUnsignedLong(m.group(4), 16), m.group(5).replace(" (deleted)", "").trim());
+                continue;
+            }
+            m = fieldPattern.matcher(line);
+            if (m.matches() && current != null) {
+                current.fields.put(m.group(1), Long.parseLong(m.group(2)));
+            }
+        }
+        if (current != null) {
+            groups.merge(current.group(binary, imageHeap, previous), current.usage(), Usage::plus);
+        }
+        return new Breakdown(groups);
+    }
+
+    private static class Mapping {
+        final long start;
+        final long end;
+        final String permissions;
+        final long offset;
+        final String path;
+        final Map<String, Long> fields = new LinkedHashMap<>();
+
+        Mapping(long start, long end, String permissions, long offset, String path) {
+            this.start = start;
+            this.end = end;
+            this.permissions = permissions;
+            this.offset = offset;
+            this.path = path;
+        }
+
+        Usage usage() {
+            return new Usage(1L, fields.getOrDefault("Rss", 0L), fields.getOrDefault("Pss", 0L),
+                    fields.getOrDefault("Shared_Dirty", 0L) + fields.getOrDefault("Private_Dirty", 0L));
+        }
+
+        Group group(String binary, long[] imageHeap, Mapping previous) {
+            if (path.equals(binary)) {
+                if (imageHeap != null && offset >= imageHeap[0] && offset < imageHeap[1]) {
+                    return Group.IMAGE_HEAP;
+                }
+                return permissions.charAt(2) == 'x' ? Group.BINARY_TEXT : Group.BINARY_DATA;
+            }
+            if (path.isEmpty()) {
+                // Threads other than the main one have anonymous stacks right above their guard pages
+                boolean guarded = previous != null && previous.path.isEmpty() && previous.end == start
+                        && previous.permissions.startsWith("---") && (previous.end - previous.start) / 1024 <= MAX_STACK_GUARD_KB;
+                return guarded && permissions.startsWith("rw") ? Group.THREAD_STACKS : Group.ANONYMOUS;
+            }
+            if (path.equals("[heap]")) {
+                return Group.BRK_HEAP;
+            }
+            if (path.startsWith("[stack")) {
+                return Group.THREAD_STACKS;
+            }
+            if (path.startsWith("[anon")) {
+                // Named by prctl(PR_SET_VMA_ANON_NAME), e.g. "[anon:glibc.pthread_stack]"
+                return path.contains("stack") ? Group.THREAD_STACKS : Group.ANONYMOUS;
+            }
+            if (path.endsWith(".so") || path.contains(".so.")) {
+                return Group.SHARED_LIBRARIES;
+            }
+            if (path.endsWith(".jar") || path.endsWith(".jmod") || path.endsWith("/lib/modules") || path.endsWith(".jsa")) {
+                return Group.JARS;
+            }
+            return Group.OTHER;
+        }
+    }
+
+    /**
+     * @return start and end file offset of the section of a 64-bit ELF binary, null if it is not an ELF binary or there is no such section
+     */
+    static long[] sectionFileRange(Path elf, String name) {
+        try (FileChannel channel = FileChannel.open(elf, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0L, 64, ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != 0x464c457f || header.get(4) != 2) {
+                return null;
+            }
+            ByteOrder order = header.get(5) == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            header.order(order);
+            long sectionHeadersOffset = header.getLong(0x28);
+            int sectionHeaderSize = Short.toUnsignedInt(header.getShort(0x3A));
+            int sections = Short.toUnsignedInt(header.getShort(0x3C));
+            int namesIndex = Short.toUnsignedInt(header.getShort(0x3E));
+            if (sectionHeadersOffset == 0L || sections == 0 || namesIndex >= sections) {
+                return null;
+            }
+            ByteBuffer sectionHeaders = read(channel, sectionHeadersOffset, sections * sectionHeaderSize, order);
+            long namesOffset = sectionHeaders.getLong(namesIndex * sectionHeaderSize + 0x18);
+            int namesSize = (int) sectionHeaders.getLong(namesIndex * sectionHeaderSize + 0x20);
+            ByteBuffer names = read(channel, namesOffset, namesSize, order);
+            for (int i = 0; i < sections; i++) {
+                int sectionHeader = i * sectionHeaderSize;
+                if (name.equals(cString(names, sectionHeaders.getInt(sectionHeader)))) {
+                    long offset = sectionHeaders.getLong(sectionHeader + 0x18);
+                    return new long[]{offset, offset + sectionHeaders.getLong(sectionHeader + 0x20)};
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to read the sections of " + elf + ", its mappings are not split into text, data and image heap", e);
+        }
+        return null;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size, ByteOrder order) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(order);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+            // Read until full or at the end of the file
+        }
+        return buffer.flip();
+    }
+
+    private static String cString(ByteBuffer buffer, int offset) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = offset; i < buffer.limit() && buffer.get(i) != 0; i++) {
+            sb.append((char) buffer.get(i));
+        }
+        return sb.toString();
+    }
+}
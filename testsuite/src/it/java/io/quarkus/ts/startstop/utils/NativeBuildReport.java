@@ -0,0 +1,209 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * What GraalVM native-image reported about the build: time of each build stage from the progress lines of the build log,
+ * and reachable types and methods, code area and image heap size, peak RSS and GC time of the builder from
+ * the build output JSON Quarkus asks for with {@code -H:BuildOutputJSONFile}, i.e. {@code <name>-build-output-stats.json}.
+ */
+public final class NativeBuildReport {
+
+    private static final Logger LOGGER = Logger.getLogger(NativeBuildReport.class.getName());
+
+    public static final String COLUMN_PREFIX = "native";
+    public static final String BUILD_OUTPUT_SUFFIX = "-build-output-stats.json";
+
+    // e.g. "[2/8] Performing analysis...  [*****]        (24.6s @ 1.28GB)", the time might come on a later line
+    private static final Pattern stagePattern = Pattern.compile("\\[\\d+/\\d+] ([A-Za-z ]+?)\\.\\.\\.");
+    private static final Pattern stageTimePattern = Pattern.compile("\\((\\d+(?:\\.\\d+)?)s @ \\d+(?:\\.\\d+)?GB\\)");
+
+    /**
+     * Column names of the stages, the rest is camel cased, e.g. "Initializing" or "Generating debug info"
+     */
+    private static final Map<String, String> STAGES = Map.of(
+            "Performing analysis", "Analysis",
+            "Building universe", "Universe",
+            "Parsing methods", "Parse",
+            "Inlining methods", "Inline",
+            "Compiling methods", "Compile",
+            "Layouting methods", "Layout",
+            "Laying out methods", "Layout",
+            "Creating image", "ImageCreation");
+
+    /**
+     * Milliseconds by stage in the order of the build
+     */
+    public final Map<String, Long> stageMs;
+    /**
+     * -1 for all of the below if there is no build output JSON
+     */
+    public final long reachableTypes;
+    public final long reachableMethods;
+    public final long codeAreaBytes;
+    public final long imageHeapBytes;
+    public final long imageBytes;
+    public final long builderPeakRssBytes;
+    public final long builderGCs;
+    public final long builderGCMs;
+    public final long totalMs;
+
+    public NativeBuildReport(Map<String, Long> stageMs, long reachableTypes, long reachableMethods, long codeAreaBytes,
+                             long imageHeapBytes, long imageBytes, long builderPeakRssBytes, long builderGCs, long builderGCMs, long totalMs) {
+        this.stageMs = stageMs;
+        this.reachableTypes = reachableTypes;
+        this.reachableMethods = reachableMethods;
+        this.codeAreaBytes = codeAreaBytes;
+        this.imageHeapBytes = imageHeapBytes;
+        this.imageBytes = imageBytes;
+        this.builderPeakRssBytes = builderPeakRssBytes;
+        this.builderGCs = builderGCs;
+        this.builderGCMs = builderGCMs;
+        this.totalMs = totalMs;
+    }
+
+    /**
+     * @return report of the native build in the app dir, empty if neither the build output JSON nor stage times were found,
+     * e.g. with a GraalVM older than 22.3
+     */
+    public static Optional<NativeBuildReport> read(File appDir, File buildLog) throws IOException {
+        Map<String, Long> stageMs = parseStages(Files.readAllLines(buildLog.toPath(), UTF_8));
+        Optional<Path> json = findBuildOutput(appDir);
+        if (json.isEmpty()) {
+            LOGGER.warn("No *" + BUILD_OUTPUT_SUFFIX + " found in " + appDir + File.separator + "target");
+            return stageMs.isEmpty() ? Optional.empty() : Optional.of(new NativeBuildReport(stageMs, -1L, -1L, -1L, -1L, -1L, -1L, -1L, -1L, -1L));
+        }
+        return Optional.of(parse(stageMs, Files.readString(json.get(), UTF_8)));
+    }
+
+    /**
+     * @return the build output JSON, it is in the native image sources directory, e.g. {@code target/quarkus-native-image-source-jar}
+     */
+    public static Optional<Path> findBuildOutput(File appDir) throws IOException {
+        Path target = appDir.toPath().resolve("target");
+        if (Files.notExists(target)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.walk(target, 2)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(BUILD_OUTPUT_SUFFIX)).findFirst();
+        }
+    }
+
+    static Map<String, Long> parseStages(List<String> lines) {
+        Map<String, Long> stageMs = new LinkedHashMap<>();
+        String stage = null;
+        for (String line : lines) {
+            Matcher m = stagePattern.matcher(line);
+            if (m.find()) {
+                stage = STAGES.getOrDefault(m.group(1), camelCase(m.group(1)));
+            }
+            Matcher t = stageTimePattern.matcher(line);
+            if (stage != null && t.find()) {
+                stageMs.merge(stage, Math.round(Double.parseDouble(t.group(1)) * 1000d), Long::sum);
+                stage = null;
+            }
+        }
+        return stageMs;
+    }
+
+    /**
+     * JSON is YAML too, so the build output is read with the YAML parser the testsuite already has
+     */
+    @SuppressWarnings("unchecked")
+    static NativeBuildReport parse(Map<String, Long> stageMs, String json) {
+        Map<String, Object> root = new Yaml().load(json);
+        // "classes" until the schema 0.9.1
+        String types = get(root, "analysis_results", "types") != null ? "types" : "classes";
+        return new NativeBuildReport(stageMs,
+                number(root, "analysis_results", types, "reachable"),
+                number(root, "analysis_results", "methods", "reachable"),
+                number(root, "image_details", "code_area", "bytes"),
+                number(root, "image_details", "image_heap", "bytes"),
+                number(root, "image_details", "total_bytes"),
+                number(root, "resource_usage", "memory", "peak_rss_bytes"),
+                number(root, "resource_usage", "garbage_collection", "count"),
+                secondsToMs(root, "resource_usage", "garbage_collection", "total_secs"),
+                secondsToMs(root, "resource_usage", "total_secs"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object get(Map<String, Object> root, String... path) {
+        Object node = root;
+        for (String key : path) {
+            if (!(node instanceof Map)) {
+                return null;
+            }
+            node = ((Map<String, Object>) node).get(key);
+        }
+        return node;
+    }
+
+    private static long number(Map<String, Object> root, String... path) {
+        Object node = get(root, path);
+        return node instanceof Number ? ((Number) node).longValue() : -1L;
+    }
+
+    private static long secondsToMs(Map<String, Object> root, String... path) {
+        Object node = get(root, path);
+        return node instanceof Number ? Math.round(((Number) node).doubleValue() * 1000d) : -1L;
+    }
+
+    private static String camelCase(String stage) {
+        return Stream.of(stage.trim().split(" +"))
+                .map(word -> word.substring(0, 1).toUpperCase(Locale.ROOT) + word.substring(1))
+                .collect(Collectors.joining());
+    }
+
+    /**
+     * @return e.g. nativeStageAnalysisMs, nativeReachableMethods or nativeImageHeapkB, values missing in the report are left out
+     */
+    public Map<String, Long> columns() {
+        Map<String, Long> columns = new LinkedHashMap<>();
+        stageMs.forEach((stage, ms) -> columns.put(COLUMN_PREFIX + "Stage" + stage + "Ms", ms));
+        putIfKnown(columns, "ReachableTypes", reachableTypes);
+        putIfKnown(columns, "ReachableMethods", reachableMethods);
+        putIfKnown(columns, "CodeAreakB", codeAreaBytes < 0 ? -1L : codeAreaBytes / 1024);
+        putIfKnown(columns, "ImageHeapkB", imageHeapBytes < 0 ? -1L : imageHeapBytes / 1024);
+        putIfKnown(columns, "ImagekB", imageBytes < 0 ? -1L : imageBytes / 1024);
+        putIfKnown(columns, "BuilderPeakRSSkB", builderPeakRssBytes < 0 ? -1L : builderPeakRssBytes / 1024);
+        putIfKnown(columns, "BuilderGCs", builderGCs);
+        putIfKnown(columns, "BuilderGCMs", builderGCMs);
+        putIfKnown(columns, "BuildMs", totalMs);
+        return columns;
+    }
+
+    private static void putIfKnown(Map<String, Long> columns, String name, long value) {
+        if (value >= 0) {
+            columns.put(COLUMN_PREFIX + name, value);
+        }
+    }
+
+    /**
+     * e.g. "stages Initializing 4800 ms, Analysis 24600 ms, ..., 11203 reachable types, 54321 reachable methods, code area 31204 kB,
+     * image heap 28000 kB, builder peak RSS 3120000 kB, 12 GCs in 2100 ms"
+     */
+    @Override
+    public String toString() {
+        return "stages " + stageMs.entrySet().stream().map(e -> e.getKey() + " " + e.getValue() + " ms").collect(Collectors.joining(", "))
+                + ", " + reachableTypes + " reachable types, " + reachableMethods + " reachable methods, code area " + codeAreaBytes / 1024
+                + " kB, image heap " + imageHeapBytes / 1024 + " kB, builder peak RSS " + builderPeakRssBytes / 1024 + " kB, "
+                + builderGCs + " GCs in " + builderGCMs + " ms";
+    }
+}
@@ -0,0 +1,142 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.quarkus.ts.startstop.utils.Commands.JCMD_BIN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Committed memory of the JVM by Native Memory Tracking category, i.e. whether RSS went to heap, metaspace, code cache,
+ * thread stacks or malloc. Tracking costs some memory and CPU itself, so it is opt-in.
+ */
+public final class NativeMemoryTracking {
+
+    private static final Logger LOGGER = Logger.getLogger(NativeMemoryTracking.class.getName());
+
+    public static final String COLUMN_PREFIX = "nmt";
+
+    // e.g. "Total: reserved=2940287KB, committed=122303KB"
+    private static final Pattern totalPattern = Pattern.compile("^Total: reserved=(\\d+)KB, committed=(\\d+)KB.*");
+    // e.g. "-                 Java Heap (reserved=1538048KB, committed=96256KB)"
+    private static final Pattern categoryPattern = Pattern.compile("^-\\s+(.+?) \\(reserved=(\\d+)KB, committed=(\\d+)KB\\).*");
+
+    private NativeMemoryTracking() {
+    }
+
+    /**
+     * @return tracking if enabled by {@code start-stop.nmt} system property, JVM mode only
+     */
+    public static Optional<NativeMemoryTracking> create(boolean isNative) {
+        if (!Boolean.getBoolean("start-stop.nmt")) {
+            return Optional.empty();
+        }
+        if (isNative) {
+            LOGGER.info("start-stop.nmt is supported only in JVM mode");
+            return Optional.empty();
+        }
+        return Optional.of(new NativeMemoryTracking());
+    }
+
+    public List<String> getJvmOptions() {
+        return List.of("-XX:NativeMemoryTracking=summary");
+    }
+
+    /**
+     * @return committed kB by category, Total first, from {@code jcmd <pid> VM.native_memory summary}
+     */
+    public Map<String, Long> summary(long pid) throws IOException, InterruptedException {
+        Process jcmd = new ProcessBuilder(JCMD_BIN, Long.toString(pid), "VM.native_memory", "summary", "scale=KB")
+                .redirectErrorStream(true)
+                .start();
+        String out = new String(jcmd.getInputStream().readAllBytes(), UTF_8);
+        if (!jcmd.waitFor(1, TimeUnit.MINUTES) || jcmd.exitValue() != 0) {
+            throw new IOException("Unable to get the native memory summary of " + pid + ": " + out);
+        }
+        Map<String, Long> committed = parse(out.lines().toArray(String[]::new));
+        if (committed.isEmpty()) {
+            throw new IOException("No native memory summary of " + pid + ", is it running with -XX:NativeMemoryTracking? " + out);
+        }
+        return committed;
+    }
+
+    static Map<String, Long> parse(String[] lines) {
+        Map<String, Long> committed = new LinkedHashMap<>();
+        for (String line : lines) {
+            Matcher m = totalPattern.matcher(line);
+            if (m.matches()) {
+                committed.put("Total", Long.parseLong(m.group(2)));
+                continue;
+            }
+            m = categoryPattern.matcher(line);
+            if (m.matches()) {
+                committed.put(m.group(1).trim(), Long.parseLong(m.group(3)));
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * @param suffix of the headers, e.g. "FirstOK" gives nmtJavaHeapFirstOKkB, nmtThreadFirstOKkB, ...
+     * @return committed kB by CSV header
+     */
+    public static Map<String, Long> columns(Map<String, Long> committed, String suffix) {
+        Map<String, Long> columns = new LinkedHashMap<>();
+        committed.forEach((category, kb) -> columns.put(COLUMN_PREFIX + camelCase(category) + suffix + "kB", kb));
+        return columns;
+    }
+
+    /**
+     * @return category, first OK and after checks columns as a markdown table, the largest growth first
+     */
+    public static String toMarkdown(Map<String, Long> firstOK, Map<String, Long> checked) {
+        StringBuilder sb = new StringBuilder("|Category|First OK|After checks|Growth|\n|---|---|---|---|\n");
+        Set<String> categories = new LinkedHashSet<>(firstOK.keySet());
+        categories.addAll(checked.keySet());
+        categories.stream()
+                .sorted(Comparator.comparingLong((String c) -> checked.getOrDefault(c, 0L) - firstOK.getOrDefault(c, 0L)).reversed())
+                .forEach(c -> sb.append('|').append(c).append('|').append(firstOK.getOrDefault(c, 0L)).append('|')
+                        .append(checked.getOrDefault(c, 0L)).append('|').append(checked.getOrDefault(c, 0L) - firstOK.getOrDefault(c, 0L)).append("|\n"));
+        return sb.toString();
+    }
+
+    /**
+     * @return headers of the NMT columns present in any of the measurements
+     */
+    public static List<String> metrics(List<LogBuilder.Log> measurements) {
+        Set<String> metrics = new LinkedHashSet<>();
+        for (LogBuilder.Log log : measurements) {
+            for (String header : log.values.keySet()) {
+                if (header.startsWith(COLUMN_PREFIX)) {
+                    metrics.add(header);
+                }
+            }
+        }
+        return new ArrayList<>(metrics);
+    }
+
+    /**
+     * e.g. "Native Memory Tracking" to "NativeMemoryTracking"
+     */
+    private static String camelCase(String category) {
+        StringBuilder sb = new StringBuilder(category.length());
+        for (String word : category.split("[^A-Za-z0-9]+")) {
+            if (!word.isEmpty()) {
+                sb.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+            }
+        }
+        return sb.toString();
+    }
+}
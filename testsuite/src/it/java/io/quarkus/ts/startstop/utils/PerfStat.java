@@ -0,0 +1,229 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Counts events of the application with {@code perf stat -x, -I <interval>}, so that e.g. instructions until the first OK request
+ * are known, which is far less noisy than wall time. Hardware events are used only if the host exposes them,
+ * i.e. typically not in a VM, software events are always counted.
+ * <p>
+ * perf becomes the parent of the application, see {@link #awaitWorkloadPid(Process)} for the pid to measure.
+ */
+public final class PerfStat {
+
+    private static final Logger LOGGER = Logger.getLogger(PerfStat.class.getName());
+
+    public static final List<String> SOFTWARE_EVENTS = List.of("task-clock", "page-faults", "context-switches", "cpu-migrations");
+    public static final List<String> HARDWARE_EVENTS = List.of("cycles", "instructions", "branch-misses");
+    public static final long DEFAULT_INTERVAL_MS = 10L;
+
+    // e.g. instructions:u when perf_event_paranoid allows user space only
+    private static final Pattern modifierPattern = Pattern.compile(":[ukhHGp]+$");
+    private static List<String> supportedEvents;
+
+    private final Path output;
+    private final long intervalMs;
+    private final List<String> events;
+    private long countingStartNs = -1L;
+
+    private PerfStat(Path output, long intervalMs, List<String> events) {
+        this.output = output;
+        this.intervalMs = intervalMs;
+        this.events = events;
+    }
+
+    /**
+     * @param output file perf writes the counters to
+     * @return perf stat for one run of the application if enabled by {@code start-stop.perf} system property
+     * and perf is available, empty otherwise
+     */
+    public static Optional<PerfStat> create(Path output) {
+        if (!Boolean.getBoolean("start-stop.perf")) {
+            return Optional.empty();
+        }
+        List<String> events = getSupportedEvents();
+        if (events.isEmpty()) {
+            return Optional.empty();
+        }
+        long intervalMs = Long.getLong("start-stop.perf.interval.ms", DEFAULT_INTERVAL_MS);
+        if (intervalMs < 10) {
+            throw new IllegalArgumentException("start-stop.perf.interval.ms must be at least 10, perf does not support shorter intervals, was: " + intervalMs);
+        }
+        return Optional.of(new PerfStat(output, intervalMs, events));
+    }
+
+    public List<String> getCommandPrefix() {
+        return List.of("perf", "stat", "-x", ",", "-I", Long.toString(intervalMs), "-o", output.toString(),
+                "-e", String.join(",", events), "--");
+    }
+
+    /**
+     * perf forks the application and starts counting when it execs, the child appearing is taken for the start of counting.
+     *
+     * @param perf process started with {@link #getCommandPrefix()}
+     * @return pid of the application
+     */
+    public long awaitWorkloadPid(Process perf) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Optional<ProcessHandle> child = perf.children().findFirst();
+            if (child.isPresent()) {
+                countingStartNs = System.nanoTime();
+                return child.get().pid();
+            }
+            if (!perf.isAlive()) {
+                break;
+            }
+            LockSupport.parkNanos(100_000L);
+        }
+        throw new IllegalStateException("perf did not start the application in 10 s, see " + output);
+    }
+
+    /**
+     * Reads the counters once perf exited.
+     *
+     * @param firstOKNs {@link System#nanoTime()} of the first OK request
+     * @return counters until the first OK request, rounded up to the interval, and for the whole run, keyed by CSV header
+     */
+    public Map<String, Long> columns(long firstOKNs) throws IOException {
+        if (countingStartNs == -1L) {
+            throw new IllegalStateException("The application pid was not resolved, see awaitWorkloadPid");
+        }
+        return parse(Files.readAllLines(output, UTF_8), intervalMs, firstOKNs - countingStartNs);
+    }
+
+    /**
+     * @param lines      of {@code perf stat -x, -I} output: interval end,value,unit,event,run time,percentage,...
+     * @param intervalMs of the output
+     * @param firstOKNs  since the start of counting
+     */
+    static Map<String, Long> parse(List<String> lines, long intervalMs, long firstOKNs) {
+        Map<String, Double> toFirstOK = new LinkedHashMap<>();
+        Map<String, Double> total = new LinkedHashMap<>();
+        List<String> unsupported = new ArrayList<>();
+        double firstOKS = firstOKNs / 1_000_000_000d;
+        double intervalS = intervalMs / 1000d;
+        for (String line : lines) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.trim().split(",", -1);
+            if (fields.length < 4) {
+                continue;
+            }
+            String event = modifierPattern.matcher(fields[3].trim()).replaceAll("");
+            String value = fields[1].trim();
+            if (value.startsWith("<")) {
+                // <not counted> or <not supported>
+                if (!unsupported.contains(event)) {
+                    unsupported.add(event);
+                }
+                continue;
+            }
+            double intervalEndS = Double.parseDouble(fields[0].trim());
+            double count = Double.parseDouble(value);
+            total.merge(event, count, Double::sum);
+            // The interval in which the first OK request came is counted in
+            if (intervalEndS - intervalS < firstOKS) {
+                toFirstOK.merge(event, count, Double::sum);
+            }
+        }
+        if (!unsupported.isEmpty()) {
+            LOGGER.warn("perf could not count " + unsupported);
+        }
+        Map<String, Long> columns = new LinkedHashMap<>();
+        toFirstOK.forEach((event, count) -> columns.put(header(event) + "ToFirstOK" + unit(event), Math.round(count)));
+        total.forEach((event, count) -> columns.put(header(event) + "Total" + unit(event), Math.round(count)));
+        return columns;
+    }
+
+    /**
+     * e.g. branch-misses to perfBranchMisses
+     */
+    private static String header(String event) {
+        StringBuilder sb = new StringBuilder(event.length());
+        boolean upper = false;
+        for (char c : event.toCharArray()) {
+            if (c == '-' || c == '_') {
+                upper = true;
+            } else {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return "perf" + Character.toUpperCase(sb.charAt(0)) + sb.substring(1);
+    }
+
+    /**
+     * task-clock is counted in milliseconds, the rest are plain counts
+     */
+    private static String unit(String event) {
+        return "task-clock".equals(event) ? "Ms" : "";
+    }
+
+    /**
+     * Probes perf once per JVM: software events if perf works at all, hardware ones if the host counts them
+     */
+    private static synchronized List<String> getSupportedEvents() {
+        if (supportedEvents != null) {
+            return supportedEvents;
+        }
+        supportedEvents = List.of();
+        if (!isThisLinux) {
+            LOGGER.warn("start-stop.perf is supported only on Linux, events are not counted");
+            return supportedEvents;
+        }
+        List<String> events = new ArrayList<>(SOFTWARE_EVENTS);
+        try {
+            String software = probe(SOFTWARE_EVENTS);
+            if (software == null) {
+                return supportedEvents;
+            }
+            String hardware = probe(HARDWARE_EVENTS);
+            if (hardware != null && !hardware.contains("<not supported>") && !hardware.contains("<not counted>")) {
+                events.addAll(HARDWARE_EVENTS);
+            } else {
+                LOGGER.warn("Hardware events are not available, e.g. in a VM, perf counts only software events");
+            }
+        } catch (IOException e) {
+            LOGGER.warn("perf is not available, events are not counted", e);
+            return supportedEvents;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return supportedEvents;
+        }
+        supportedEvents = List.copyOf(events);
+        LOGGER.info("perf counts " + supportedEvents);
+        return supportedEvents;
+    }
+
+    /**
+     * @return perf output of counting the events of a no-op, null if perf failed
+     */
+    private static String probe(List<String> events) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder("perf", "stat", "-x", ",", "-e", String.join(",", events), "true")
+                .redirectErrorStream(true)
+                .start();
+        String out = new String(p.getInputStream().readAllBytes(), UTF_8);
+        if (!p.waitFor(30, TimeUnit.SECONDS) || p.exitValue() != 0) {
+            LOGGER.warn("perf stat failed, is perf installed and is kernel.perf_event_paranoid permissive enough? " + out);
+            return null;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,228 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Samples memory of a running process straight from /proc/&lt;pid&gt;/status and /proc/&lt;pid&gt;/smaps_rollup
+ * at a fixed cadence, from spawn to stop, without forking any helper process.
+ * CPU counters are read along, so the last ones before the process exited are known, see {@link #getLastStat()}.
+ * <p>
+ * Linux only, see {@link #start(long)}.
+ */
+public final class ProcSampler implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ProcSampler.class.getName());
+
+    public static final long DEFAULT_INTERVAL_MS = 10L;
+
+    public static class MemorySample {
+        /**
+         * Nanoseconds since the sampler was started
+         */
+        public final long timestampNs;
+        public final long rssKb;
+        public final long pssKb;
+        public final long ussKb;
+        public final long hwmKb;
+        public final long anonKb;
+        public final long fileKb;
+
+        public MemorySample(long timestampNs, long rssKb, long pssKb, long ussKb, long hwmKb, long anonKb, long fileKb) {
+            this.timestampNs = timestampNs;
+            this.rssKb = rssKb;
+            this.pssKb = pssKb;
+            this.ussKb = ussKb;
+            this.hwmKb = hwmKb;
+            this.anonKb = anonKb;
+            this.fileKb = fileKb;
+        }
+    }
+
+    private final long pid;
+    private final Path status;
+    private final Path smapsRollup;
+    private final long originNs;
+    private final List<MemorySample> timeline = new ArrayList<>(1024);
+    private final ScheduledExecutorService executor;
+    private volatile ProcStat lastStat;
+
+    private ProcSampler(long pid, long intervalMs) {
+        this.pid = pid;
+        this.status = Paths.get("/proc", Long.toString(pid), "status");
+        this.smapsRollup = Paths.get("/proc", Long.toString(pid), "smaps_rollup");
+        this.originNs = System.nanoTime();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "proc-sampler-" + pid);
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.scheduleAtFixedRate(this::sample, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts sampling with the cadence from {@code start-stop.memory.sampling.interval.ms} system property.
+     *
+     * @param pid of the process to watch
+     * @return empty if there is no /proc filesystem to read from
+     */
+    public static Optional<ProcSampler> start(long pid) {
+        return start(pid, Long.getLong("start-stop.memory.sampling.interval.ms", DEFAULT_INTERVAL_MS));
+    }
+
+    public static Optional<ProcSampler> start(long pid, long intervalMs) {
+        if (!isThisLinux || !Files.isReadable(Paths.get("/proc", Long.toString(pid), "status"))) {
+            return Optional.empty();
+        }
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("intervalMs must be a positive long, was: " + intervalMs);
+        }
+        return Optional.of(new ProcSampler(pid, intervalMs));
+    }
+
+    /**
+     * Takes a sample right now and adds it to the timeline.
+     *
+     * @return the sample or null if the process is gone
+     */
+    public MemorySample sample() {
+        MemorySample sample = readMemory(status, smapsRollup, System.nanoTime() - originNs);
+        if (sample != null) {
+            synchronized (timeline) {
+                timeline.add(sample);
+            }
+            ProcStat.read(pid).ifPresent(stat -> lastStat = stat);
+        }
+        return sample;
+    }
+
+    /**
+     * @return samples ordered by their timestamps
+     */
+    public List<MemorySample> getTimeline() {
+        List<MemorySample> copy;
+        synchronized (timeline) {
+            copy = new ArrayList<>(timeline);
+        }
+        copy.sort(Comparator.comparingLong(s -> s.timestampNs));
+        return copy;
+    }
+
+    /**
+     * @return CPU counters of the last sample, i.e. at most one interval before the process exited once it is gone
+     */
+    public Optional<ProcStat> getLastStat() {
+        return Optional.ofNullable(lastStat);
+    }
+
+    public void writeTimeline(Path csv) throws IOException {
+        List<MemorySample> samples = getTimeline();
+        StringBuilder sb = new StringBuilder(64 * (samples.size() + 1));
+        sb.append("timeMs,RSSkB,PSSkB,USSkB,peakRSSkB,anonRSSkB,fileRSSkB\n");
+        for (MemorySample s : samples) {
+            sb.append(String.format(Locale.ROOT, "%.3f", s.timestampNs / 1_000_000d)).append(',')
+                    .append(s.rssKb).append(',')
+                    .append(s.pssKb).append(',')
+                    .append(s.ussKb).append(',')
+                    .append(s.hwmKb).append(',')
+                    .append(s.anonKb).append(',')
+                    .append(s.fileKb).append('\n');
+        }
+        Files.write(csv, sb.toString().getBytes(UTF_8));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                LOGGER.warn("Sampler of process " + pid + " did not stop in 1 second");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One-off read of the current RSS, no sampling thread involved.
+     *
+     * @return RSS in kB or -1 if the process is gone
+     */
+    public static long readRssKb(long pid) {
+        MemorySample sample = readMemory(Paths.get("/proc", Long.toString(pid), "status"), null, 0L);
+        return sample == null ? -1L : sample.rssKb;
+    }
+
+    private static MemorySample readMemory(Path status, Path smapsRollup, long timestampNs) {
+        long rss = -1L, hwm = -1L, anon = -1L, file = -1L, pss = -1L, uss = -1L;
+        try {
+            for (String line : Files.readAllLines(status, UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    rss = parseKb(line);
+                } else if (line.startsWith("VmHWM:")) {
+                    hwm = parseKb(line);
+                } else if (line.startsWith("RssAnon:")) {
+                    anon = parseKb(line);
+                } else if (line.startsWith("RssFile:")) {
+                    file = parseKb(line);
+                }
+            }
+        } catch (IOException e) {
+            // The process has exited in the meantime
+            return null;
+        }
+        if (rss == -1L) {
+            // Zombie, the kernel already dropped its memory
+            return null;
+        }
+        if (smapsRollup != null) {
+            try {
+                long privateClean = 0L, privateDirty = 0L;
+                for (String line : Files.readAllLines(smapsRollup, UTF_8)) {
+                    if (line.startsWith("Pss:")) {
+                        pss = parseKb(line);
+                    } else if (line.startsWith("Private_Clean:")) {
+                        privateClean = parseKb(line);
+                    } else if (line.startsWith("Private_Dirty:")) {
+                        privateDirty = parseKb(line);
+                    }
+                }
+                uss = privateClean + privateDirty;
+            } catch (IOException e) {
+                // Older kernels do not have smaps_rollup, keep PSS and USS unknown
+            }
+        }
+        return new MemorySample(timestampNs, rss, pss, uss, hwm, anon, file);
+    }
+
+    /**
+     * e.g. "VmRSS:	    1668 kB"
+     */
+    private static long parseKb(String line) {
+        int start = line.indexOf(':') + 1;
+        while (start < line.length() && !Character.isDigit(line.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < line.length() && Character.isDigit(line.charAt(end))) {
+            end++;
+        }
+        return start == end ? -1L : Long.parseLong(line.substring(start, end));
+    }
+}
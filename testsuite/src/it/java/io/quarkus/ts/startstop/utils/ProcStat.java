@@ -0,0 +1,169 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * CPU time, page faults and context switches of a process, read from /proc/&lt;pid&gt;/stat and /proc/&lt;pid&gt;/status.
+ * Counters are cumulative since the process start, use {@link #minus(ProcStat)} for a period.
+ * CPU time has the resolution of the kernel clock tick, usually 10 ms.
+ */
+public final class ProcStat {
+
+    private static final Logger LOGGER = Logger.getLogger(ProcStat.class.getName());
+
+    private static final long AT_CLKTCK = 17L;
+    private static long clockTicksPerSecond = -1L;
+
+    public final long userMs;
+    public final long systemMs;
+    public final long minorFaults;
+    public final long majorFaults;
+    public final long voluntaryContextSwitches;
+    public final long involuntaryContextSwitches;
+
+    public ProcStat(long userMs, long systemMs, long minorFaults, long majorFaults, long voluntaryContextSwitches, long involuntaryContextSwitches) {
+        this.userMs = userMs;
+        this.systemMs = systemMs;
+        this.minorFaults = minorFaults;
+        this.majorFaults = majorFaults;
+        this.voluntaryContextSwitches = voluntaryContextSwitches;
+        this.involuntaryContextSwitches = involuntaryContextSwitches;
+    }
+
+    /**
+     * @param pid of the process to inspect
+     * @return empty if there is no /proc filesystem to read from or the process is gone
+     */
+    public static Optional<ProcStat> read(long pid) {
+        if (!isThisLinux) {
+            return Optional.empty();
+        }
+        Path proc = Paths.get("/proc", Long.toString(pid));
+        String stat;
+        try {
+            stat = Files.readString(proc.resolve("stat"), US_ASCII);
+        } catch (IOException e) {
+            // The process has exited in the meantime
+            return Optional.empty();
+        }
+        // e.g. "1234 (java) S 1 ...", the command in parentheses might contain spaces, fields are counted after it
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+        long ticks = getClockTicksPerSecond();
+        long minorFaults = Long.parseLong(fields[7]);
+        long majorFaults = Long.parseLong(fields[9]);
+        long userMs = Long.parseLong(fields[11]) * 1000L / ticks;
+        long systemMs = Long.parseLong(fields[12]) * 1000L / ticks;
+        long voluntary = 0L;
+        long involuntary = 0L;
+        try {
+            for (String line : Files.readAllLines(proc.resolve("status"), US_ASCII)) {
+                if (line.startsWith("voluntary_ctxt_switches:")) {
+                    voluntary = Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                } else if (line.startsWith("nonvoluntary_ctxt_switches:")) {
+                    involuntary = Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                }
+            }
+        } catch (IOException e) {
+            // Exited between the two reads, the CPU time is still valid
+        }
+        return Optional.of(new ProcStat(userMs, systemMs, minorFaults, majorFaults, voluntary, involuntary));
+    }
+
+    /**
+     * Counters of the children of this JVM that exited and were waited for, summed up by the kernel at the moment a child is reaped.
+     * The difference of two reads is what the children reaped in between consumed in their whole life, including the last
+     * moments before exit, which no read of /proc/&lt;pid&gt;/stat of the child itself can see. Context switches are not provided, they are 0.
+     *
+     * @return empty if there is no /proc filesystem to read from
+     */
+    public static Optional<ProcStat> readReapedChildren() {
+        if (!isThisLinux) {
+            return Optional.empty();
+        }
+        String stat;
+        try {
+            stat = Files.readString(Paths.get("/proc", "self", "stat"), US_ASCII);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read /proc/self/stat", e);
+            return Optional.empty();
+        }
+        // cminflt, cmajflt, cutime and cstime follow the counters of the process itself
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+        long ticks = getClockTicksPerSecond();
+        return Optional.of(new ProcStat(Long.parseLong(fields[13]) * 1000L / ticks, Long.parseLong(fields[14]) * 1000L / ticks,
+                Long.parseLong(fields[8]), Long.parseLong(fields[10]), 0L, 0L));
+    }
+
+    public long cpuMs() {
+        return userMs + systemMs;
+    }
+
+    /**
+     * @return difference of the counters, i.e. what the process consumed since the earlier read
+     */
+    public ProcStat minus(ProcStat earlier) {
+        return new ProcStat(userMs - earlier.userMs, systemMs - earlier.systemMs,
+                minorFaults - earlier.minorFaults, majorFaults - earlier.majorFaults,
+                voluntaryContextSwitches - earlier.voluntaryContextSwitches,
+                involuntaryContextSwitches - earlier.involuntaryContextSwitches);
+    }
+
+    /**
+     * @param suffix of the headers, e.g. "ToFirstOK" gives userToFirstOKMs, systemToFirstOKMs, ...
+     * @return the counters keyed by CSV header
+     */
+    public Map<String, Long> columns(String suffix) {
+        Map<String, Long> columns = new LinkedHashMap<>();
+        columns.put("user" + suffix + "Ms", userMs);
+        columns.put("system" + suffix + "Ms", systemMs);
+        columns.put("minorFaults" + suffix, minorFaults);
+        columns.put("majorFaults" + suffix, majorFaults);
+        columns.put("voluntaryCtxSwitches" + suffix, voluntaryContextSwitches);
+        columns.put("involuntaryCtxSwitches" + suffix, involuntaryContextSwitches);
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        return "user " + userMs + " ms, system " + systemMs + " ms, minor faults " + minorFaults + ", major faults " + majorFaults +
+                ", voluntary context switches " + voluntaryContextSwitches + ", involuntary context switches " + involuntaryContextSwitches;
+    }
+
+    /**
+     * USER_HZ the stat times are in, from the AT_CLKTCK entry of the auxiliary vector, i.e. what getconf CLK_TCK
+     * prints, without forking getconf right when the measured process starts. 100 if it cannot be found out.
+     */
+    private static synchronized long getClockTicksPerSecond() {
+        if (clockTicksPerSecond == -1L) {
+            clockTicksPerSecond = 100L;
+            try {
+                // Pairs of native longs: type, value; 64-bit JVM assumed
+                ByteBuffer auxv = ByteBuffer.wrap(Files.readAllBytes(Paths.get("/proc/self/auxv"))).order(ByteOrder.nativeOrder());
+                while (auxv.remaining() >= 16) {
+                    long type = auxv.getLong();
+                    long value = auxv.getLong();
+                    if (type == AT_CLKTCK && value > 0) {
+                        clockTicksPerSecond = value;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read /proc/self/auxv, assuming 100 clock ticks per second", e);
+            }
+        }
+        return clockTicksPerSecond;
+    }
+}
@@ -0,0 +1,362 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Measures time to the first OK request with as little interference with the started application as possible:
+ * a single dedicated thread, non-blocking connect, raw HTTP/1.1 request written from a reused buffer and,
+ * optionally, the probe thread pinned to a CPU the application is not allowed to use.
+ * <p>
+ * See {@code start-stop.probe.cpu} system property.
+ */
+public final class ReadinessProbe implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ReadinessProbe.class.getName());
+
+    private static final long RETRY_PAUSE_NS = 100_000L;
+    private static final byte[] CRLF = "\r\n".getBytes(US_ASCII);
+    private static final byte[] HEADERS_END = "\r\n\r\n".getBytes(US_ASCII);
+
+    public static class Result {
+        /**
+         * Nanoseconds since origin when the TCP connection was accepted for the first time
+         */
+        public final long connectedNs;
+        /**
+         * Nanoseconds since origin when the first byte of any response arrived
+         */
+        public final long firstByteNs;
+        /**
+         * Nanoseconds since origin when the full response with the expected content arrived
+         */
+        public final long okNs;
+
+        public Result(long connectedNs, long firstByteNs, long okNs) {
+            this.connectedNs = connectedNs;
+            this.firstByteNs = firstByteNs;
+            this.okNs = okNs;
+        }
+
+        public long timeToFirstOKRequestMs() {
+            return TimeUnit.NANOSECONDS.toMillis(okNs);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * 1024);
+    private final ByteArrayOutputStream response = new ByteArrayOutputStream(16 * 1024);
+    private final Integer probeCpu;
+
+    private ReadinessProbe(Integer probeCpu) {
+        this.probeCpu = probeCpu;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "readiness-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        if (probeCpu != null) {
+            executor.submit(() -> pinCurrentThread(probeCpu));
+        }
+    }
+
+    /**
+     * @return probe pinned to the CPU from {@code start-stop.probe.cpu} system property, if set and supported
+     */
+    public static ReadinessProbe create() {
+        Integer probeCpu = Integer.getInteger("start-stop.probe.cpu");
+        if (probeCpu != null && (!isThisLinux || getAllowedCpus().size() < 2)) {
+            LOGGER.warn("start-stop.probe.cpu is supported only on Linux with at least 2 CPUs available, the probe is not pinned");
+            probeCpu = null;
+        }
+        return new ReadinessProbe(probeCpu);
+    }
+
+    /**
+     * @return CPU the probe is pinned to, empty if it is not pinned
+     */
+    public OptionalInt getProbeCpu() {
+        return probeCpu == null ? OptionalInt.empty() : OptionalInt.of(probeCpu);
+    }
+
+    /**
+     * @return taskset prefix keeping the application off the probe CPU and the CPUs of the {@link BuildPipeline},
+     * or empty if neither is in use
+     */
+    public List<String> getAppCommandPrefix() {
+        if (probeCpu == null && BuildPipeline.getBuildCpus().isEmpty()) {
+            return List.of();
+        }
+        return List.of("taskset", "-c", getAppCpus().stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * @return CPUs the application may use, i.e. the allowed ones except the probe CPU and those building ahead,
+     * empty if they cannot be found out
+     */
+    public TreeSet<Integer> getAppCpus() {
+        TreeSet<Integer> appCpus = isThisLinux ? getAllowedCpus() : new TreeSet<>();
+        if (probeCpu != null) {
+            appCpus.remove(probeCpu);
+        }
+        appCpus.removeAll(BuildPipeline.getBuildCpus());
+        return appCpus;
+    }
+
+    /**
+     * Patiently try to get the expected content, measuring from the given origin
+     *
+     * @param url             plain http address
+     * @param timeoutS        in seconds
+     * @param stringToLookFor string must be present in the response body
+     * @param originNs        {@link System#nanoTime()} the result is relative to
+     */
+    public Result probe(String url, long timeoutS, String stringToLookFor, long originNs) throws InterruptedException {
+        return probe(url, timeoutS, stringToLookFor, originNs, null);
+    }
+
+    /**
+     * Patiently try to get the expected content, measuring from the given origin, but give up once the application exited
+     *
+     * @param app application process, null to wait for the whole timeout
+     */
+    public Result probe(String url, long timeoutS, String stringToLookFor, long originNs, ProcessHandle app) throws InterruptedException {
+        if (StringUtils.isBlank(url) || !url.startsWith("http://")) {
+            throw new IllegalArgumentException("url must be a plain http address, was: " + url);
+        }
+        if (timeoutS < 0) {
+            throw new IllegalArgumentException("timeoutS must be positive");
+        }
+        if (StringUtils.isBlank(stringToLookFor)) {
+            throw new IllegalArgumentException("stringToLookFor must contain a non-empty string");
+        }
+        try {
+            return executor.submit(() -> doProbe(URI.create(url), timeoutS, stringToLookFor, originNs, app)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private Result doProbe(URI uri, long timeoutS, String stringToLookFor, long originNs, ProcessHandle app) throws IOException {
+        String path = StringUtils.defaultIfEmpty(uri.getRawPath(), "/") + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        int port = uri.getPort() == -1 ? 80 : uri.getPort();
+        ByteBuffer request = ByteBuffer.wrap(("GET " + path + " HTTP/1.1\r\n" +
+                "Host: " + uri.getHost() + ":" + port + "\r\n" +
+                "Accept: */*\r\n" +
+                "Connection: close\r\n\r\n").getBytes(US_ASCII));
+        InetSocketAddress address = new InetSocketAddress(uri.getHost(), port);
+
+        long connectedNs = -1L;
+        long firstByteNs = -1L;
+        String body = "";
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutS);
+        try (Selector selector = Selector.open()) {
+            while (System.nanoTime() < deadline && (app == null || app.isAlive())) {
+                response.reset();
+                try (SocketChannel channel = SocketChannel.open()) {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    if (!channel.connect(address)) {
+                        channel.register(selector, SelectionKey.OP_CONNECT);
+                        if (!awaitReady(selector, deadline) || !channel.finishConnect()) {
+                            continue;
+                        }
+                    }
+                    if (connectedNs == -1L) {
+                        connectedNs = System.nanoTime() - originNs;
+                    }
+                    request.rewind();
+                    while (request.hasRemaining()) {
+                        channel.write(request);
+                    }
+                    channel.register(selector, SelectionKey.OP_READ);
+                    int read = 0;
+                    while (read != -1 && awaitReady(selector, deadline)) {
+                        readBuffer.clear();
+                        read = channel.read(readBuffer);
+                        if (read > 0) {
+                            if (firstByteNs == -1L) {
+                                firstByteNs = System.nanoTime() - originNs;
+                            }
+                            readBuffer.flip();
+                            while (readBuffer.hasRemaining()) {
+                                response.write(readBuffer.get());
+                            }
+                        }
+                    }
+                    body = parseOKBody(response.toByteArray());
+                    if (read == -1 && body.contains(stringToLookFor)) {
+                        return new Result(connectedNs, firstByteNs, System.nanoTime() - originNs);
+                    }
+                } catch (IOException e) {
+                    LOGGER.debug("Waiting `" + stringToLookFor + "' to appear on " + uri);
+                }
+                LockSupport.parkNanos(RETRY_PAUSE_NS);
+            }
+        }
+        String failureMessage = (app != null && !app.isAlive() ? "Application exited. " : "Timeout " + timeoutS + "s was reached. ") +
+                (StringUtils.isNotBlank(body) ? body + " must contain string: " : "Empty webpage does not contain string: ") +
+                "`" + stringToLookFor + "'";
+        LOGGER.info(failureMessage);
+        return fail(failureMessage);
+    }
+
+    private static boolean awaitReady(Selector selector, long deadline) throws IOException {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMs <= 0) {
+            return false;
+        }
+        boolean ready = selector.select(remainingMs) > 0;
+        selector.selectedKeys().clear();
+        return ready;
+    }
+
+    /**
+     * @return body of a 2xx response, chunked transfer encoding decoded, or empty string
+     */
+    static String parseOKBody(byte[] response) {
+        int headersEnd = indexOf(response, HEADERS_END, 0);
+        if (headersEnd == -1) {
+            return "";
+        }
+        String headers = new String(response, 0, headersEnd, US_ASCII);
+        // e.g. HTTP/1.1 200 OK
+        if (!headers.startsWith("HTTP/1.") || headers.length() < 12 || headers.charAt(9) != '2') {
+            return "";
+        }
+        int bodyStart = headersEnd + HEADERS_END.length;
+        if (!headers.toLowerCase().contains("transfer-encoding: chunked")) {
+            return new String(response, bodyStart, response.length - bodyStart, UTF_8);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(response.length - bodyStart);
+        int pos = bodyStart;
+        while (pos < response.length) {
+            int sizeEnd = indexOf(response, CRLF, pos);
+            if (sizeEnd == -1) {
+                break;
+            }
+            String sizeLine = new String(response, pos, sizeEnd - pos, US_ASCII);
+            int extension = sizeLine.indexOf(';');
+            int size = Integer.parseInt((extension == -1 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+            if (size == 0) {
+                break;
+            }
+            int chunkStart = sizeEnd + 2;
+            body.write(response, chunkStart, Math.min(size, response.length - chunkStart));
+            pos = chunkStart + size + 2;
+        }
+        return body.toString(UTF_8);
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * e.g. Cpus_allowed_list:	0-3,6
+     */
+    static TreeSet<Integer> getAllowedCpus() {
+        try {
+            Optional<String> allowed = Files.readAllLines(Paths.get("/proc/self/status"), UTF_8).stream()
+                    .filter(l -> l.startsWith("Cpus_allowed_list:"))
+                    .findFirst();
+            if (allowed.isPresent()) {
+                return parseCpuList(allowed.get().substring("Cpus_allowed_list:".length()));
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Unable to read allowed CPUs from /proc/self/status", e);
+        }
+        return new TreeSet<>();
+    }
+
+    /**
+     * e.g. 0-3,6 as taskset and cpusets take it
+     */
+    static TreeSet<Integer> parseCpuList(String list) {
+        TreeSet<Integer> cpus = new TreeSet<>();
+        for (String range : list.trim().split(",")) {
+            if (range.isBlank()) {
+                continue;
+            }
+            String[] bounds = range.split("-");
+            int from = Integer.parseInt(bounds[0].trim());
+            int to = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : from;
+            for (int cpu = from; cpu <= to; cpu++) {
+                cpus.add(cpu);
+            }
+        }
+        return cpus;
+    }
+
+    /**
+     * Java has no API for thread affinity, so taskset is given the native id of the current thread.
+     */
+    static void pinCurrentThread(int cpu) {
+        pinCurrentThread(List.of(cpu));
+    }
+
+    static void pinCurrentThread(Collection<Integer> cpus) {
+        String cpuList = cpus.stream().map(String::valueOf).collect(Collectors.joining(","));
+        try {
+            // e.g. 12345/task/12346
+            String threadSelf = Files.readSymbolicLink(Paths.get("/proc/thread-self")).toString();
+            String tid = threadSelf.substring(threadSelf.lastIndexOf('/') + 1);
+            Process p = new ProcessBuilder("taskset", "-p", "-c", cpuList, tid).redirectErrorStream(true).start();
+            if (!p.waitFor(10, TimeUnit.SECONDS) || p.exitValue() != 0) {
+                LOGGER.warn("Unable to pin " + Thread.currentThread().getName() + " to CPUs " + cpuList + ": " + new String(p.getInputStream().readAllBytes(), UTF_8));
+            } else {
+                LOGGER.info(Thread.currentThread().getName() + " pinned to CPUs " + cpuList);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to pin " + Thread.currentThread().getName() + " to CPUs " + cpuList, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
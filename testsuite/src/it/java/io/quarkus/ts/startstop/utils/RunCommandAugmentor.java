@@ -1,8 +1,10 @@
 package io.quarkus.ts.startstop.utils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class RunCommandAugmentor {
 
@@ -35,4 +37,33 @@ public class RunCommandAugmentor {
         }
         return Collections.unmodifiableList(runCmd);
     }
+
+    /**
+     * Adds options right after the java executable, native commands are returned untouched.
+     */
+    public static List<String> setJvmOptions(List<String> baseCommand, List<String> jvmOptions) {
+        if (jvmOptions == null || jvmOptions.isEmpty()) {
+            return baseCommand;
+        }
+        List<String> runCmd = new ArrayList<>(baseCommand.size() + jvmOptions.size());
+        for (String cmdPart : baseCommand) {
+            runCmd.add(cmdPart);
+            if (cmdPart.equals(Commands.JAVA_BIN)) {
+                runCmd.addAll(jvmOptions);
+            }
+        }
+        return Collections.unmodifiableList(runCmd);
+    }
+
+    /**
+     * Pins the command to the CPUs with taskset and makes the JVM or the native image size its thread pools and GC
+     * for as many processors, the option is added the same way as memory limits.
+     */
+    public static List<String> setCpus(List<String> baseCommand, Collection<Integer> cpus, boolean isNative) {
+        if (cpus == null || cpus.isEmpty()) {
+            return baseCommand;
+        }
+        List<String> runCmd = setMemoryLimits(baseCommand, List.of("-XX:ActiveProcessorCount=" + cpus.size()), isNative);
+        return setCommandPrefix(runCmd, List.of("taskset", "-c", cpus.stream().map(String::valueOf).collect(Collectors.joining(","))));
+    }
 }
@@ -0,0 +1,109 @@
+package io.quarkus.ts.startstop.utils;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instants of one application start, all taken with {@link System#nanoTime()} and reported relative to the process spawn.
+ * Phases may be recorded from different threads, only the first occurrence of each phase counts.
+ */
+public final class StartupTimeline {
+
+    public enum Phase {
+        /**
+         * "Create VM" line of -Xlog:startuptime, JVM mode only
+         */
+        JVM_READY("jvmReadyUs"),
+        /**
+         * Quarkus "started in" line
+         */
+        QUARKUS_STARTED("quarkusStartedUs"),
+        /**
+         * Socket in LISTEN state on the application port in /proc/net/tcp
+         */
+        PORT_BOUND("portBoundUs"),
+        FIRST_CONNECT("firstConnectUs"),
+        FIRST_BYTE("firstByteUs"),
+        FIRST_OK("firstOKUs");
+
+        public final String header;
+
+        Phase(String header) {
+            this.header = header;
+        }
+    }
+
+    private final long spawnNs;
+    private final Map<Phase, Long> instants = Collections.synchronizedMap(new EnumMap<>(Phase.class));
+
+    /**
+     * @param spawnNs {@link System#nanoTime()} taken right before the process was started
+     */
+    public StartupTimeline(long spawnNs) {
+        this.spawnNs = spawnNs;
+    }
+
+    public long getSpawnNs() {
+        return spawnNs;
+    }
+
+    /**
+     * @param timestampNs {@link System#nanoTime()} of the phase
+     */
+    public void record(Phase phase, long timestampNs) {
+        instants.putIfAbsent(phase, timestampNs);
+    }
+
+    public void record(ReadinessProbe.Result firstOK) {
+        // The probe measures relative to the spawn, see ReadinessProbe#probe
+        record(Phase.FIRST_CONNECT, spawnNs + firstOK.connectedNs);
+        record(Phase.FIRST_BYTE, spawnNs + firstOK.firstByteNs);
+        record(Phase.FIRST_OK, spawnNs + firstOK.okNs);
+    }
+
+    /**
+     * @return nanoseconds since spawn, empty if the phase was not recorded
+     */
+    public OptionalLong sinceSpawnNs(Phase phase) {
+        Long instant = instants.get(phase);
+        return instant == null ? OptionalLong.empty() : OptionalLong.of(instant - spawnNs);
+    }
+
+    /**
+     * @return microseconds since spawn of the recorded phases, keyed by CSV header
+     */
+    public Map<String, Long> columns() {
+        Map<String, Long> columns = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            sinceSpawnNs(phase).ifPresent(ns -> columns.put(phase.header, TimeUnit.NANOSECONDS.toMicros(ns)));
+        }
+        return columns;
+    }
+
+    /**
+     * e.g. "JVM_READY +41.2 ms, PORT_BOUND +650.3 ms, QUARKUS_STARTED +12.1 ms, ..." in the order the phases happened,
+     * each with the time elapsed since the previous one.
+     */
+    @Override
+    public String toString() {
+        Map<Phase, Long> copy;
+        synchronized (instants) {
+            copy = new EnumMap<>(instants);
+        }
+        StringBuilder sb = new StringBuilder();
+        long previous = spawnNs;
+        for (Map.Entry<Phase, Long> e : copy.entrySet().stream().sorted(Map.Entry.comparingByValue()).toList()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(e.getKey()).append(String.format(Locale.ROOT, " +%.1f ms", (e.getValue() - previous) / 1_000_000d));
+            previous = e.getValue();
+        }
+        return sb.toString();
+    }
+}
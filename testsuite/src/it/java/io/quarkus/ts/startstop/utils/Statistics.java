@@ -0,0 +1,339 @@
+package io.quarkus.ts.startstop.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Summary of one metric over the iterations of a test: robust location estimates, spread, outliers
+ * and a bootstrap confidence interval of the estimator used for the threshold checks.
+ * <p>
+ * Input values are never modified.
+ */
+public final class Statistics {
+
+    public enum Estimator {
+        MEDIAN("median"),
+        /**
+         * Mean without {@link #TRIM_RATIO} of the smallest and of the largest values, at least one of each
+         */
+        TRIMMED_MEAN("trimmed-mean");
+
+        public final String label;
+
+        Estimator(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return estimator from {@code start-stop.estimator} system property, median by default
+         */
+        public static Estimator fromSystemProperty() {
+            String label = System.getProperty("start-stop.estimator", MEDIAN.label).trim();
+            for (Estimator e : values()) {
+                if (e.label.equalsIgnoreCase(label)) {
+                    return e;
+                }
+            }
+            throw new IllegalArgumentException("start-stop.estimator must be one of " + Arrays.toString(
+                    Arrays.stream(values()).map(e -> e.label).toArray()) + ", was: " + label);
+        }
+    }
+
+    public static final double TRIM_RATIO = 0.1;
+    /**
+     * Iglewicz and Hoaglin: modified z-score above 3.5 marks a potential outlier
+     */
+    public static final double OUTLIER_MODIFIED_Z_SCORE = 3.5;
+    public static final int BOOTSTRAP_RESAMPLES = 2000;
+    public static final double CONFIDENCE_LEVEL = 0.95;
+    /**
+     * Fixed, so that the same samples always give the same interval
+     */
+    private static final long BOOTSTRAP_SEED = 42L;
+
+    public static final String HEADER_CSV = "metric,n,min,max,mean,stddev,median,p90,p99,trimmedMean,MAD,outliers,estimator,estimate,ciLow,ciHigh";
+
+    public final String metric;
+    public final int n;
+    public final long min;
+    public final long max;
+    public final double mean;
+    /**
+     * Sample standard deviation, 0 for a single value
+     */
+    public final double stddev;
+    public final double median;
+    public final double p90;
+    public final double p99;
+    public final double trimmedMean;
+    /**
+     * Median absolute deviation from the median
+     */
+    public final double mad;
+    /**
+     * Values with modified z-score over {@link #OUTLIER_MODIFIED_Z_SCORE}, in iteration order
+     */
+    public final List<Long> outliers;
+    public final Estimator estimator;
+    public final double estimate;
+    public final double ciLow;
+    public final double ciHigh;
+
+    private Statistics(String metric, List<Long> values, Estimator estimator) {
+        this.metric = metric;
+        this.estimator = estimator;
+        long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+        this.n = sorted.length;
+        this.min = sorted[0];
+        this.max = sorted[n - 1];
+        this.mean = mean(sorted, 0, n);
+        double sumOfSquares = 0d;
+        for (long v : sorted) {
+            sumOfSquares += (v - mean) * (v - mean);
+        }
+        this.stddev = n > 1 ? Math.sqrt(sumOfSquares / (n - 1)) : 0d;
+        this.median = percentile(sorted, 0.5);
+        this.p90 = percentile(sorted, 0.9);
+        this.p99 = percentile(sorted, 0.99);
+        this.trimmedMean = trimmedMean(sorted);
+        double[] deviations = new double[n];
+        for (int i = 0; i < n; i++) {
+            deviations[i] = Math.abs(sorted[i] - median);
+        }
+        Arrays.sort(deviations);
+        this.mad = percentile(deviations, 0.5);
+        this.outliers = Collections.unmodifiableList(outliers(values, median, mad, Arrays.stream(deviations).average().orElse(0d)));
+        this.estimate = estimate(sorted, estimator);
+        double[] ci = bootstrap(sorted, estimator);
+        this.ciLow = ci[0];
+        this.ciHigh = ci[1];
+    }
+
+    /**
+     * @param metric    name, e.g. CSV header of the measurement
+     * @param values    one per iteration
+     * @param estimator used for {@link #estimate} and the confidence interval
+     */
+    public static Statistics of(String metric, List<Long> values, Estimator estimator) {
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("values of " + metric + " must contain at least one value");
+        }
+        return new Statistics(metric, values, estimator);
+    }
+
+    /**
+     * @return statistics of every numeric column of the given measurements, in the order the columns first appeared
+     */
+    public static List<Statistics> of(List<LogBuilder.Log> measurements, Estimator estimator) {
+        Map<String, List<Long>> columns = new LinkedHashMap<>();
+        for (LogBuilder.Log log : measurements) {
+            log.values.forEach((header, value) -> columns.computeIfAbsent(header, k -> new ArrayList<>()).add(value));
+        }
+        List<Statistics> statistics = new ArrayList<>(columns.size());
+        columns.forEach((header, values) -> statistics.add(of(header, values, estimator)));
+        return statistics;
+    }
+
+    /**
+     * @return the estimate rounded for threshold checks
+     */
+    public long estimateAsLong() {
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return width of the confidence interval relative to the estimate, e.g. 0.05 for an interval spanning 5 % of it
+     */
+    public double relativeCIWidth() {
+        double width = ciHigh - ciLow;
+        if (width == 0d) {
+            return 0d;
+        }
+        return estimate == 0d ? Double.POSITIVE_INFINITY : width / Math.abs(estimate);
+    }
+
+    public String lineCSV() {
+        return String.join(",", metric, Integer.toString(n), Long.toString(min), Long.toString(max),
+                format(mean), format(stddev), format(median), format(p90), format(p99), format(trimmedMean), format(mad),
+                Integer.toString(outliers.size()), estimator.label, format(estimate), format(ciLow), format(ciHigh));
+    }
+
+    /**
+     * e.g. "median 1893.0 of 10 iterations, 95% CI [1850.5, 1920.0], 1 outlier(s) [2750]"
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s %.1f of %d iterations, %.0f%% CI [%.1f, %.1f], %d outlier(s) %s",
+                estimator.label, estimate, n, CONFIDENCE_LEVEL * 100, ciLow, ciHigh, outliers.size(), outliers);
+    }
+
+    /**
+     * One-sided Mann-Whitney U test, normal approximation with tie and continuity corrections.
+     *
+     * @return p-value of the hypothesis that values of current tend to be greater than values of baseline
+     */
+    public static double mannWhitneyGreaterPValue(List<Long> baseline, List<Long> current) {
+        int n1 = baseline.size();
+        int n2 = current.size();
+        if (n1 == 0 || n2 == 0) {
+            throw new IllegalArgumentException("Both samples must contain at least one value, were: " + n1 + ", " + n2);
+        }
+        int total = n1 + n2;
+        long[][] pooled = new long[total][];
+        for (int i = 0; i < n1; i++) {
+            pooled[i] = new long[]{baseline.get(i), 0};
+        }
+        for (int i = 0; i < n2; i++) {
+            pooled[n1 + i] = new long[]{current.get(i), 1};
+        }
+        Arrays.sort(pooled, (a, b) -> Long.compare(a[0], b[0]));
+        double rankSumOfCurrent = 0d;
+        double tieCorrection = 0d;
+        for (int i = 0; i < total; ) {
+            int j = i;
+            while (j + 1 < total && pooled[j + 1][0] == pooled[i][0]) {
+                j++;
+            }
+            // Ranks are 1 based, ties get the average rank
+            double rank = (i + j + 2) / 2d;
+            for (int k = i; k <= j; k++) {
+                if (pooled[k][1] == 1) {
+                    rankSumOfCurrent += rank;
+                }
+            }
+            double ties = j - i + 1;
+            tieCorrection += ties * ties * ties - ties;
+            i = j + 1;
+        }
+        double u = rankSumOfCurrent - n2 * (n2 + 1) / 2d;
+        double mean = n1 * (double) n2 / 2d;
+        double variance = n1 * (double) n2 / 12d * ((total + 1) - tieCorrection / (total * (double) (total - 1)));
+        if (variance <= 0d) {
+            return 1d;
+        }
+        double z = (u - mean - 0.5d) / Math.sqrt(variance);
+        return 1d - normalCdf(z);
+    }
+
+    /**
+     * Cliff's delta effect size, from -1 (current always smaller) to 1 (current always greater).
+     * By convention |delta| of 0.147, 0.33 and 0.474 is a small, medium and large effect.
+     */
+    public static double cliffsDelta(List<Long> baseline, List<Long> current) {
+        if (baseline.isEmpty() || current.isEmpty()) {
+            throw new IllegalArgumentException("Both samples must contain at least one value");
+        }
+        long greater = 0L;
+        long smaller = 0L;
+        for (long c : current) {
+            for (long b : baseline) {
+                if (c > b) {
+                    greater++;
+                } else if (c < b) {
+                    smaller++;
+                }
+            }
+        }
+        return (greater - smaller) / ((double) baseline.size() * current.size());
+    }
+
+    /**
+     * Abramowitz and Stegun 7.1.26, absolute error under 1.5e-7
+     */
+    private static double normalCdf(double z) {
+        double x = Math.abs(z) / Math.sqrt(2d);
+        double t = 1d / (1d + 0.3275911 * x);
+        double erf = 1d - (((((1.061405429 * t - 1.453152027) * t) + 1.421413741) * t - 0.284496736) * t + 0.254829592) * t * Math.exp(-x * x);
+        return z >= 0 ? 0.5d * (1d + erf) : 0.5d * (1d - erf);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static double estimate(long[] sorted, Estimator estimator) {
+        return estimator == Estimator.MEDIAN ? percentile(sorted, 0.5) : trimmedMean(sorted);
+    }
+
+    private static double mean(long[] values, int from, int to) {
+        double sum = 0d;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum / (to - from);
+    }
+
+    private static double trimmedMean(long[] sorted) {
+        if (sorted.length < 3) {
+            return mean(sorted, 0, sorted.length);
+        }
+        int trim = Math.max(1, (int) (sorted.length * TRIM_RATIO));
+        return mean(sorted, trim, sorted.length - trim);
+    }
+
+    /**
+     * Linear interpolation between closest ranks
+     *
+     * @param p e.g. 0.99
+     */
+    static double percentile(long[] sorted, double p) {
+        double rank = p * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        double rank = p * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private static List<Long> outliers(List<Long> values, double median, double mad, double meanAbsoluteDeviation) {
+        List<Long> outliers = new ArrayList<>();
+        for (long v : values) {
+            double z;
+            if (mad > 0d) {
+                z = 0.6745 * (v - median) / mad;
+            } else if (meanAbsoluteDeviation > 0d) {
+                // More than half of the values are equal, MAD is 0
+                z = (v - median) / (1.253314 * meanAbsoluteDeviation);
+            } else {
+                z = 0d;
+            }
+            if (Math.abs(z) > OUTLIER_MODIFIED_Z_SCORE) {
+                outliers.add(v);
+            }
+        }
+        return outliers;
+    }
+
+    /**
+     * Percentile bootstrap interval of the estimator
+     */
+    private static double[] bootstrap(long[] sorted, Estimator estimator) {
+        if (sorted.length == 1) {
+            return new double[]{sorted[0], sorted[0]};
+        }
+        Random random = new Random(BOOTSTRAP_SEED);
+        long[] resample = new long[sorted.length];
+        double[] estimates = new double[BOOTSTRAP_RESAMPLES];
+        for (int r = 0; r < BOOTSTRAP_RESAMPLES; r++) {
+            for (int i = 0; i < resample.length; i++) {
+                resample[i] = sorted[random.nextInt(sorted.length)];
+            }
+            Arrays.sort(resample);
+            estimates[r] = estimate(resample, estimator);
+        }
+        Arrays.sort(estimates);
+        double alpha = (1d - CONFIDENCE_LEVEL) / 2d;
+        return new double[]{percentile(estimates, alpha), percentile(estimates, 1d - alpha)};
+    }
+}
@@ -0,0 +1,91 @@
+package io.quarkus.ts.startstop.utils;
+
+import org.jboss.logging.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+import static io.quarkus.ts.startstop.utils.Commands.isThisLinux;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Watches /proc/net/tcp and /proc/net/tcp6 until a socket in LISTEN state on the given port shows up,
+ * i.e. the moment the application bound its port, regardless of whether it already serves requests.
+ */
+public final class TcpListenWatcher implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(TcpListenWatcher.class.getName());
+
+    /**
+     * Each poll reads both tables, the interval bounds the precision and how much CPU the watcher takes from the application
+     */
+    private static final long POLL_INTERVAL_NS = 5_000_000L;
+    private static final String TCP_LISTEN = "0A";
+    private static final List<Path> TCP_TABLES = List.of(Paths.get("/proc/net/tcp"), Paths.get("/proc/net/tcp6"));
+
+    private final Thread watcher;
+    private volatile boolean running = true;
+
+    private TcpListenWatcher(int port, OptionalInt cpu, LongConsumer onListening) {
+        // e.g. "   0: 00000000:1F90 00000000:0000 0A ...", local address and port in hex
+        String localPort = ":" + String.format(Locale.ROOT, "%04X", port);
+        watcher = new Thread(() -> {
+            // Unpinned, it shares the CPUs of the application
+            cpu.ifPresent(ReadinessProbe::pinCurrentThread);
+            while (running) {
+                if (isListening(localPort)) {
+                    onListening.accept(System.nanoTime());
+                    return;
+                }
+                LockSupport.parkNanos(POLL_INTERVAL_NS);
+            }
+        }, "tcp-listen-watcher-" + port);
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * @param port        to watch
+     * @param cpu         to pin the polling thread to, so it stays off the CPUs of the application, see {@link ReadinessProbe#getProbeCpu()}
+     * @param onListening gets {@link System#nanoTime()} when the port was seen listening for the first time
+     * @return empty if there is no /proc filesystem to read from
+     */
+    public static Optional<TcpListenWatcher> start(int port, OptionalInt cpu, LongConsumer onListening) {
+        if (!isThisLinux || !Files.isReadable(TCP_TABLES.get(0))) {
+            return Optional.empty();
+        }
+        return Optional.of(new TcpListenWatcher(port, cpu, onListening));
+    }
+
+    private static boolean isListening(String localPort) {
+        for (Path table : TCP_TABLES) {
+            try {
+                for (String line : Files.readAllLines(table, US_ASCII)) {
+                    // sl local_address rem_address st ...
+                    String[] columns = line.trim().split("\\s+", 5);
+                    if (columns.length > 3 && columns[1].endsWith(localPort) && TCP_LISTEN.equals(columns[3])) {
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                // tcp6 might be missing when IPv6 is disabled
+                LOGGER.debug("Unable to read " + table, e);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+    }
+}
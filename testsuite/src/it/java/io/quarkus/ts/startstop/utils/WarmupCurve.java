@@ -0,0 +1,415 @@
+package io.quarkus.ts.startstop.utils;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Latency of every request of a fixed sequence sent one by one right after the first OK request, i.e. how fast
+ * a freshly started application gets to its steady-state latency, JIT compilation included in JVM mode.
+ * <p>
+ * The curve is the median latency of windows of requests getting longer with the request count: 10 requests up to
+ * the 100th, 100 up to the 1000th and so on. The steady state is the median of the last window and it is reached
+ * after the last window slower than the steady state by more than the tolerance.
+ */
+public final class WarmupCurve {
+
+    private static final Logger LOGGER = Logger.getLogger(WarmupCurve.class.getName());
+
+    public static final int DEFAULT_REQUESTS = 10_000;
+    public static final double DEFAULT_TOLERANCE = 0.1;
+    /**
+     * Requests 1 - 10, 11 - 100, ... are reported as buckets
+     */
+    public static final int[] BUCKET_ENDS = {10, 100, 1_000, 10_000};
+    private static final int REQUEST_TIMEOUT_MS = 10_000;
+
+    public static class Result {
+        /**
+         * Latency of every request in microseconds, -1 for failed ones
+         */
+        public final long[] latencyUs;
+        /**
+         * Completion of every request in microseconds since the first one was sent
+         */
+        public final long[] completedUs;
+        public final String[] paths;
+
+        public Result(long[] latencyUs, long[] completedUs, String[] paths) {
+            this.latencyUs = latencyUs;
+            this.completedUs = completedUs;
+            this.paths = paths;
+        }
+
+        public long errors() {
+            return Arrays.stream(latencyUs).filter(l -> l < 0).count();
+        }
+
+        /**
+         * @return median latency of every window of {@link WarmupCurve#windowEnds(int)}
+         */
+        public Curve curve() {
+            int[] ends = windowEnds(latencyUs.length);
+            long[] medianUs = new long[ends.length];
+            int from = 0;
+            for (int w = 0; w < ends.length; w++) {
+                medianUs[w] = percentileUs(from, ends[w], 0.5);
+                from = ends[w];
+            }
+            return new Curve(ends, medianUs);
+        }
+
+        /**
+         * @return the buckets and the steady state keyed by CSV header, e.g. warmupTo100MedianUs for requests 11 - 100;
+         * a bucket, or the steady state, where every request failed is left out, it only counts in warmupErrors
+         */
+        public Map<String, Long> columns(double tolerance) {
+            Map<String, Long> columns = new LinkedHashMap<>();
+            int from = 0;
+            for (int end : BUCKET_ENDS) {
+                if (from >= latencyUs.length) {
+                    break;
+                }
+                int to = Math.min(end, latencyUs.length);
+                long medianUs = percentileUs(from, to, 0.5);
+                if (medianUs >= 0) {
+                    columns.put("warmupTo" + to + "MedianUs", medianUs);
+                    columns.put("warmupTo" + to + "P99Us", percentileUs(from, to, 0.99));
+                }
+                from = to;
+            }
+            Curve curve = curve();
+            if (curve.hasSteadyState()) {
+                int steadyStateRequests = curve.steadyStateRequests(tolerance);
+                columns.put("warmupSteadyStateUs", curve.steadyStateUs());
+                columns.put("warmupSteadyStateRequests", (long) steadyStateRequests);
+                columns.put("warmupSteadyStateMs", steadyStateRequests == 0 ? 0L : TimeUnit.MICROSECONDS.toMillis(completedUs[steadyStateRequests - 1]));
+            }
+            columns.put("warmupErrors", errors());
+            return columns;
+        }
+
+        /**
+         * Writes request,path,latencyUs,completedUs lines
+         */
+        public void writeRequests(Path file) throws IOException {
+            StringBuilder sb = new StringBuilder("request,path,latencyUs,completedUs\n");
+            for (int i = 0; i < latencyUs.length; i++) {
+                sb.append(i + 1).append(',').append(paths[i]).append(',').append(latencyUs[i]).append(',').append(completedUs[i]).append('\n');
+            }
+            Files.write(file, sb.toString().getBytes(UTF_8));
+        }
+
+        /**
+         * @return percentile of the successful requests in the [from, to) range, -1 if all failed
+         */
+        private long percentileUs(int from, int to, double p) {
+            long[] sorted = Arrays.stream(latencyUs, from, to).filter(l -> l >= 0).sorted().toArray();
+            return sorted.length == 0 ? -1L : Math.round(Statistics.percentile(sorted, p));
+        }
+    }
+
+    public static class Curve {
+        /**
+         * End of every window, i.e. request count
+         */
+        public final int[] requests;
+        /**
+         * Median latency of every window, -1 where every request failed
+         */
+        public final long[] medianUs;
+
+        public Curve(int[] requests, long[] medianUs) {
+            this.requests = requests;
+            this.medianUs = medianUs;
+        }
+
+        public int requests() {
+            return requests.length == 0 ? 0 : requests[requests.length - 1];
+        }
+
+        /**
+         * @return whether any request of the last window succeeded, otherwise there is no steady state to compare with
+         */
+        public boolean hasSteadyState() {
+            return medianUs.length > 0 && medianUs[medianUs.length - 1] >= 0;
+        }
+
+        public long steadyStateUs() {
+            return medianUs[medianUs.length - 1];
+        }
+
+        /**
+         * @return end of the last window slower than the steady state by more than the tolerance, or where every request failed,
+         * 0 if there is none
+         */
+        public int steadyStateRequests(double tolerance) {
+            double steady = steadyStateUs() * (1d + tolerance);
+            for (int w = medianUs.length - 1; w >= 0; w--) {
+                if (medianUs[w] < 0 || medianUs[w] > steady) {
+                    return requests[w];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return median of every window over the iterations, the iterations are expected to send the same request count;
+         * an iteration where every request of the window failed is left out of that window
+         */
+        public static Curve median(List<Result> results) {
+            List<Curve> curves = new ArrayList<>(results.size());
+            for (Result r : results) {
+                curves.add(r.curve());
+            }
+            long[] median = new long[curves.get(0).medianUs.length];
+            for (int w = 0; w < median.length; w++) {
+                int window = w;
+                long[] sorted = curves.stream().filter(c -> c.medianUs.length > window).mapToLong(c -> c.medianUs[window]).filter(l -> l >= 0).sorted().toArray();
+                median[w] = sorted.length == 0 ? -1L : Math.round(Statistics.percentile(sorted, 0.5));
+            }
+            return new Curve(curves.get(0).requests, median);
+        }
+
+        /**
+         * Writes requests,medianUs lines
+         */
+        public void write(Path file) throws IOException {
+            StringBuilder sb = new StringBuilder("requests,medianUs\n");
+            for (int w = 0; w < medianUs.length; w++) {
+                sb.append(requests[w]).append(',').append(medianUs[w]).append('\n');
+            }
+            Files.write(file, sb.toString().getBytes(UTF_8));
+        }
+
+        /**
+         * @return curve written by {@link #write(Path)}, empty if there is no such file
+         */
+        public static Optional<Curve> read(Path file) throws IOException {
+            if (Files.notExists(file)) {
+                return Optional.empty();
+            }
+            List<String> lines = Files.readAllLines(file, UTF_8).stream().skip(1).filter(l -> !l.isBlank()).collect(Collectors.toList());
+            int[] requests = new int[lines.size()];
+            long[] medianUs = new long[lines.size()];
+            for (int i = 0; i < lines.size(); i++) {
+                String[] columns = lines.get(i).split(",");
+                requests[i] = Integer.parseInt(columns[0].trim());
+                medianUs[i] = Long.parseLong(columns[1].trim());
+            }
+            return Optional.of(new Curve(requests, medianUs));
+        }
+    }
+
+    private static boolean clientWarmedUp;
+
+    public final int requests;
+    /**
+     * Relative distance from the steady-state latency still considered steady
+     */
+    public final double tolerance;
+
+    private WarmupCurve(int requests, double tolerance) {
+        this.requests = requests;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return warm-up curve measurement if enabled by {@code start-stop.warmup} system property, configured by
+     * {@code start-stop.warmup.requests} and {@code start-stop.warmup.tolerance}
+     */
+    public static Optional<WarmupCurve> fromSystemProperties() {
+        if (!Boolean.getBoolean("start-stop.warmup")) {
+            return Optional.empty();
+        }
+        int requests = Integer.getInteger("start-stop.warmup.requests", DEFAULT_REQUESTS);
+        double tolerance = Double.parseDouble(System.getProperty("start-stop.warmup.tolerance", Double.toString(DEFAULT_TOLERANCE)));
+        if (requests < BUCKET_ENDS[0] || tolerance <= 0d) {
+            throw new IllegalArgumentException("start-stop.warmup.requests must be at least " + BUCKET_ENDS[0] +
+                    " and start-stop.warmup.tolerance positive, were: " + requests + ", " + tolerance);
+        }
+        return Optional.of(new WarmupCurve(requests, tolerance));
+    }
+
+    /**
+     * Sends the requests one by one over a single keep-alive connection.
+     *
+     * @param url   of the application, only the host and the port are used
+     * @param paths to cycle through, see {@link LoadMix#sequence()}
+     */
+    public Result run(String url, List<String> paths) throws InterruptedException {
+        URI base = URI.create(url);
+        Vertx vertx = Vertx.vertx();
+        Result result;
+        try {
+            result = send(vertx, base.getHost(), base.getPort(), paths);
+        } finally {
+            close(vertx);
+        }
+        if (result.errors() > 0) {
+            LOGGER.warn(result.errors() + " of " + requests + " warm-up requests failed");
+        }
+        return result;
+    }
+
+    /**
+     * Sends the requests to a server of its own in this JVM, so that the first requests to the application measure
+     * the application, not class loading and compilation of the client. Once per JVM, before the application starts.
+     */
+    public void warmUpClient() throws InterruptedException {
+        synchronized (WarmupCurve.class) {
+            if (clientWarmedUp) {
+                return;
+            }
+            clientWarmedUp = true;
+        }
+        Vertx vertx = Vertx.vertx();
+        try {
+            HttpServer server = vertx.createHttpServer()
+                    .requestHandler(request -> request.response().end("OK"))
+                    .listen(0, "localhost")
+                    .toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+            long startNs = System.nanoTime();
+            Result result = send(vertx, "localhost", server.actualPort(), List.of("/"));
+            LOGGER.info("Warm-up client warmed up by " + requests + " requests to itself in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs) + " ms, " + result.errors() + " failed");
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.warn("Unable to warm the warm-up client up, its first requests might be slower", e);
+        } finally {
+            close(vertx);
+        }
+    }
+
+    private Result send(Vertx vertx, String host, int port, List<String> paths) throws InterruptedException {
+        long[] latencyUs = new long[requests];
+        long[] completedUs = new long[requests];
+        String[] sentPaths = new String[requests];
+        HttpClient client = vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true), new PoolOptions().setHttp1MaxSize(1));
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        long startNs = System.nanoTime();
+        Runnable[] next = new Runnable[1];
+        int[] index = new int[1];
+        next[0] = () -> {
+            int i = index[0]++;
+            if (i == requests) {
+                finished.complete(null);
+                return;
+            }
+            String path = paths.get(i % paths.size());
+            sentPaths[i] = path;
+            long sentNs = System.nanoTime();
+            client.request(new RequestOptions()
+                            .setMethod(HttpMethod.GET)
+                            .setHost(host)
+                            .setPort(port)
+                            .setURI(path)
+                            .setIdleTimeout(REQUEST_TIMEOUT_MS))
+                    .compose(request -> request.send())
+                    .compose(response -> response.body().map(body -> response.statusCode()))
+                    .onComplete(ar -> {
+                        long now = System.nanoTime();
+                        latencyUs[i] = ar.succeeded() && ar.result() == 200 ? Math.max(1L, TimeUnit.NANOSECONDS.toMicros(now - sentNs)) : -1L;
+                        completedUs[i] = TimeUnit.NANOSECONDS.toMicros(now - startNs);
+                        vertx.runOnContext(v -> next[0].run());
+                    });
+        };
+        vertx.runOnContext(v -> next[0].run());
+        try {
+            finished.get((long) requests * REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new RuntimeException("Warm-up requests did not finish", e);
+        }
+        return new Result(latencyUs, completedUs, sentPaths);
+    }
+
+    private static void close(Vertx vertx) throws InterruptedException {
+        try {
+            vertx.close().toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.warn("Vert.x of the warm-up curve did not close", e);
+        }
+    }
+
+    /**
+     * @return ends of the windows, e.g. 10, 20, ..., 100, 200, ..., 1000, 2000, ... up to the request count
+     */
+    public static int[] windowEnds(int requests) {
+        List<Integer> ends = new ArrayList<>();
+        int step = BUCKET_ENDS[0];
+        int end = 0;
+        while (end < requests) {
+            end = Math.min(end + step, requests);
+            ends.add(end);
+            if (end >= step * 10) {
+                step *= 10;
+            }
+        }
+        return ends.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return end of the window from which the JVM latency is not worse than the native one till the end,
+     * 0 if it never was, empty if JVM is still slower at the end; a window where every JVM request failed counts as slower
+     */
+    public static OptionalInt crossover(Curve jvm, Curve nativeMode) {
+        int windows = Math.min(jvm.medianUs.length, nativeMode.medianUs.length);
+        if (windows == 0 || slower(jvm.medianUs[windows - 1], nativeMode.medianUs[windows - 1])) {
+            return OptionalInt.empty();
+        }
+        for (int w = windows - 2; w >= 0; w--) {
+            if (slower(jvm.medianUs[w], nativeMode.medianUs[w])) {
+                return OptionalInt.of(jvm.requests[w]);
+            }
+        }
+        return OptionalInt.of(0);
+    }
+
+    private static String steadyState(Curve curve) {
+        return curve.hasSteadyState() ? curve.steadyStateUs() + " us" : "none, every request failed";
+    }
+
+    private static boolean slower(long medianUs, long otherMedianUs) {
+        return medianUs < 0 || (otherMedianUs >= 0 && medianUs > otherMedianUs);
+    }
+
+    /**
+     * @return human readable comparison of the JVM and native mode curves
+     */
+    public static String describeCrossover(Curve jvm, Curve nativeMode) {
+        OptionalInt crossover = crossover(jvm, nativeMode);
+        String steady = String.format(Locale.ROOT, "steady-state median latency JVM %s, native %s",
+                steadyState(jvm), steadyState(nativeMode));
+        if (crossover.isEmpty()) {
+            return "JVM mode is still slower than native after " + Math.min(jvm.requests(), nativeMode.requests()) + " requests, " + steady;
+        }
+        if (crossover.getAsInt() == 0) {
+            return "JVM mode is not slower than native from the first request, " + steady;
+        }
+        return "JVM mode catches up with native after " + crossover.getAsInt() + " requests, " + steady;
+    }
+}